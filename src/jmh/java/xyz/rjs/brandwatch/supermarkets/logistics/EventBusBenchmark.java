@@ -0,0 +1,97 @@
+package xyz.rjs.brandwatch.supermarkets.logistics;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import xyz.rjs.brandwatch.supermarkets.model.events.ClockTick;
+import xyz.rjs.brandwatch.supermarkets.model.events.Customer;
+
+import com.google.common.eventbus.EventBus;
+import com.google.common.eventbus.Subscribe;
+
+/**
+ * This measures posting events to subscribers like those of the simulation:
+ * several handlers of ClockTick, one of Customer, and two which are sent every
+ * event like the printers. A ClockTick posted by the benchmark has seven
+ * handlers, and a Customer has three.
+ *
+ * Run with -prof gc to see the allocation of each post.
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class EventBusBenchmark {
+
+    private static final int TICK_HANDLERS = 5;
+
+    @Param({ "guava", "typed" })
+    public String bus;
+
+    private EventBus eventBus;
+
+    private final ClockTick tick = new ClockTick(0);
+
+    private final Customer customer = new Customer();
+
+    public static class TickHandler {
+        private int ticks;
+
+        @Subscribe
+        public void tick(ClockTick tick) {
+            ticks++;
+        }
+    }
+
+    public static class CustomerHandler {
+        private int customers;
+
+        @Subscribe
+        public void customer(Customer customer) {
+            customers++;
+        }
+    }
+
+    public static class EventCounter {
+        private int events;
+
+        @Subscribe
+        public void event(Object event) {
+            events++;
+        }
+    }
+
+    @Setup
+    public void setup() {
+        eventBus = "typed".equals(bus) ? new TypedEventBus() : new EventBus();
+        for (int i = 0; i < TICK_HANDLERS; i++) {
+            eventBus.register(new TickHandler());
+        }
+        eventBus.register(new CustomerHandler());
+        eventBus.register(new EventCounter());
+        eventBus.register(new EventCounter());
+    }
+
+    @Benchmark
+    public void postTick() {
+        eventBus.post(tick);
+    }
+
+    @Benchmark
+    public void postCustomer() {
+        eventBus.post(customer);
+    }
+}
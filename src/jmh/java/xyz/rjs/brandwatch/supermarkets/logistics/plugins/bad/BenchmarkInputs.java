@@ -0,0 +1,59 @@
+package xyz.rjs.brandwatch.supermarkets.logistics.plugins.bad;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * The inputs shared by the benchmarks. Every input is derived from fixed
+ * seeds, so that each run of a benchmark does the same work.
+ *
+ * @author matthew
+ */
+final class BenchmarkInputs {
+
+	/**
+	 * The System.nanoTime that the benchmarked Oracle was created at.
+	 */
+	static final long STARTING_TIME = 1_000_000_000_000L;
+
+	/**
+	 * The Random object that the calls are made on, which was created a
+	 * millisecond before the Oracle by the CustomerService.
+	 */
+	static final long SEED = (STARTING_TIME - 1_000_000) ^ SeedGenerator.uniquifier(SeedCascade.Sibling.CUSTOMER.creationOrdinal());
+
+	private BenchmarkInputs() {
+	}
+
+	/**
+	 * @param count
+	 * @return - the first calls made by the CustomerService on the Random
+	 *         object.
+	 */
+	static List<Constraint> calls(int count) {
+		final Random random = new Random(SEED);
+		final List<Constraint> calls = new ArrayList<>();
+
+		for (int i = 0; i < count; i++) {
+			calls.add(SaleOracle.sale(random.nextInt(SaleOracle.SALE_BOUND) + 1));
+		}
+		return calls;
+	}
+
+	/**
+	 * @param count
+	 * @return - seeds which might have been created around the Oracle, in no
+	 *         particular order. The seed of the Random object is not included.
+	 */
+	static long[] seeds(int count) {
+		final Random random = new Random(count);
+		final long[] seeds = new long[count];
+
+		for (int i = 0; i < count; i++) {
+			final long time = STARTING_TIME - (random.nextLong() & (SeedGenerator.DEFAULT_SEED_TIME_RANGE_NANOS * 4 - 1));
+			seeds[i] = time ^ SeedGenerator.uniquifier(random.nextInt(SeedGenerator.SEED_UNIQUIFIER_VALUE_COUNT));
+		}
+		return seeds;
+	}
+}
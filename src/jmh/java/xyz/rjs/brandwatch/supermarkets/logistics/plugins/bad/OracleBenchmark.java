@@ -0,0 +1,128 @@
+package xyz.rjs.brandwatch.supermarkets.logistics.plugins.bad;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongPredicate;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.google.common.util.concurrent.MoreExecutors;
+
+/**
+ * This measures the work the Oracle does on the event thread: reducing the
+ * seeds that survived a search when calls arrive, and producing the Random
+ * object once it has fixed on a seed.
+ *
+ * @author matthew
+ */
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class OracleBenchmark {
+
+	/**
+	 * The calls recorded by the Oracle.
+	 */
+	private static final int CALLS = 50;
+
+	/**
+	 * The heap budget of the Oracle, so that the larger stores spill in the
+	 * same way.
+	 */
+	private static final int SEED_HEAP_BUDGET = 1 << 24;
+
+	/**
+	 * The seeds which survived a search, with the seed of the Random object
+	 * among them. The store is refilled before each reduction.
+	 */
+	@State(Scope.Thread)
+	public static class Survivors {
+
+		@Param({ "100", "10000", "1000000" })
+		public int survivors;
+
+		private long[] seeds;
+
+		private SeedStore store;
+
+		private LongPredicate test;
+
+		@Setup(Level.Trial)
+		public void setup() {
+			seeds = BenchmarkInputs.seeds(survivors);
+			seeds[survivors / 2] = BenchmarkInputs.SEED;
+			store = new SeedStore(SEED_HEAP_BUDGET);
+			test = new SeedTest(BenchmarkInputs.calls(CALLS)).snapshot();
+		}
+
+		@Setup(Level.Invocation)
+		public void fill() {
+			store.set(seeds);
+		}
+
+		@TearDown(Level.Trial)
+		public void close() {
+			store.close();
+		}
+	}
+
+	/**
+	 * An Oracle which has fixed on the seed of a Random object. The Random
+	 * object is created in the first window that the Oracle searches, so it
+	 * fixes in a single round.
+	 */
+	@State(Scope.Thread)
+	public static class Fixed {
+
+		private Oracle oracle;
+
+		@Setup(Level.Trial)
+		public void setup() {
+			oracle = new Oracle(new SeedSearch(MoreExecutors.newDirectExecutorService()));
+
+			final SeedWindow window = SeedPrior.defaults().rounds(oracle.checkpoint().startingTime()).get(0).get(0);
+			final Random random = new Random((window.to() - 1) ^ window.uniquifier());
+			while (!oracle.isFixed()) {
+				oracle.calledNextInt(random.nextInt(SaleOracle.SALE_BOUND), SaleOracle.SALE_BOUND);
+			}
+		}
+
+		@TearDown(Level.Trial)
+		public void close() {
+			oracle.shutdown();
+		}
+	}
+
+	/**
+	 * The reduction that reduceSeeds performs.
+	 *
+	 * @param survivors
+	 * @return
+	 */
+	@Benchmark
+	@BenchmarkMode(Mode.AverageTime)
+	@OutputTimeUnit(TimeUnit.MICROSECONDS)
+	public int reduceSeeds(Survivors survivors) {
+		survivors.store.reduce(survivors.test);
+		return survivors.store.size();
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.AverageTime)
+	@OutputTimeUnit(TimeUnit.NANOSECONDS)
+	public Random getRandom(Fixed fixed) {
+		return fixed.oracle.getRandom();
+	}
+}
@@ -0,0 +1,87 @@
+package xyz.rjs.brandwatch.supermarkets.logistics.plugins.bad;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * This measures the generation of seeds, and a whole round of the generator
+ * as the Oracle searches it.
+ *
+ * The stream benchmarks report seeds per second on a single thread. The round
+ * runs on the common fork-join pool, like the Oracle, and reports the time of
+ * the whole round.
+ *
+ * @author matthew
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class SeedGeneratorBenchmark {
+
+	/**
+	 * The number of seeds taken from each stream.
+	 */
+	private static final int STREAM_SEEDS = 1 << 22;
+
+	/**
+	 * The calls which the round is filtered with, enough that only the seed
+	 * of the Random object passes.
+	 */
+	private static final int ROUND_CALLS = 20;
+
+	private SeedGenerator generator;
+
+	private List<SeedWindow> windows;
+
+	private SeedKernel kernel;
+
+	@Setup
+	public void setup() {
+		generator = new SeedGenerator(BenchmarkInputs.STARTING_TIME);
+		windows = generator.windows(0);
+		kernel = new SeedTest(BenchmarkInputs.calls(ROUND_CALLS)).kernel();
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.Throughput)
+	@OutputTimeUnit(TimeUnit.SECONDS)
+	@OperationsPerInvocation(STREAM_SEEDS)
+	public long streamBatch() {
+		return generator.stream(0).limit(STREAM_SEEDS).sum();
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.Throughput)
+	@OutputTimeUnit(TimeUnit.SECONDS)
+	@OperationsPerInvocation(STREAM_SEEDS)
+	public long streamWindows() {
+		return SeedGenerator.stream(windows).limit(STREAM_SEEDS).sum();
+	}
+
+	/**
+	 * The round that calculateSeeds submits when the Oracle searches without
+	 * a pipeline, scanner or cluster.
+	 *
+	 * @return
+	 */
+	@Benchmark
+	@BenchmarkMode(Mode.AverageTime)
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	public long[] calculateSeedsRound() {
+		final long size = windows.stream().mapToLong(SeedWindow::size).sum();
+		return generator.filter(windows, kernel, new SearchProgress(size));
+	}
+}
@@ -0,0 +1,68 @@
+package xyz.rjs.brandwatch.supermarkets.logistics.plugins.bad;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import xyz.rjs.brandwatch.supermarkets.logistics.plugins.bad.SeedGenerator.Engine;
+
+/**
+ * This measures the number of seeds each filter engine tests per second on a
+ * single core. The fork runs the common fork-join pool with a single worker,
+ * so the filter tasks run one after another.
+ *
+ * @author matthew
+ */
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgsAppend = "-Djava.util.concurrent.ForkJoinPool.common.parallelism=1")
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class SeedKernelBenchmark {
+
+	/**
+	 * The nanoseconds filtered by each invocation, for every uniquifier.
+	 */
+	private static final long TIME_RANGE = 1L << 16;
+
+	private static final int SEEDS = (int) (TIME_RANGE * SeedGenerator.SEED_UNIQUIFIER_VALUE_COUNT);
+
+	@Param({ "SCALAR", "BATCHED" })
+	public Engine engine;
+
+	private SeedGenerator generator;
+
+	private SeedKernel kernel;
+
+	@Setup
+	public void setup() {
+		generator = new SeedGenerator(BenchmarkInputs.STARTING_TIME, engine);
+
+		final Random random = new Random(1);
+		SeedKernel kernel = SeedKernel.EMPTY;
+		for (int i = 0; i < 12; i++) {
+			kernel = kernel.add(6, SeedKernel.only(random.nextInt(6)));
+		}
+		this.kernel = kernel.add(3, SeedKernel.any(3) & ~SeedKernel.only(0));
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(SEEDS)
+	public int filter() {
+		final long from = BenchmarkInputs.STARTING_TIME - TIME_RANGE;
+		return generator.filter(from, BenchmarkInputs.STARTING_TIME, kernel, new SearchProgress(SEEDS)).length;
+	}
+}
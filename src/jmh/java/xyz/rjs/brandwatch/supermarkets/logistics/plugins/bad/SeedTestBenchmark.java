@@ -0,0 +1,85 @@
+package xyz.rjs.brandwatch.supermarkets.logistics.plugins.bad;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongPredicate;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * This measures the cost of testing a single candidate seed against the
+ * recorded calls, by the kernel and by the snapshot that the reduction uses.
+ *
+ * Most candidates fail one of the first calls, so the cost grows slowly with
+ * the number of calls. The seed of the Random object passes every call and is
+ * tested as well, which gives the cost of a candidate that survives.
+ *
+ * @author matthew
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class SeedTestBenchmark {
+
+	private static final int CANDIDATES = 1 << 12;
+
+	@Param({ "1", "10", "50" })
+	public int constraints;
+
+	private long[] candidates;
+
+	private SeedKernel kernel;
+
+	private LongPredicate snapshot;
+
+	@Setup
+	public void setup() {
+		final SeedTest test = new SeedTest(BenchmarkInputs.calls(constraints));
+
+		candidates = BenchmarkInputs.seeds(CANDIDATES);
+		kernel = test.kernel();
+		snapshot = test.snapshot();
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(CANDIDATES)
+	public int kernel() {
+		int passed = 0;
+		for (long candidate : candidates) {
+			if (kernel.test(candidate)) {
+				passed++;
+			}
+		}
+		return passed;
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(CANDIDATES)
+	public int snapshot() {
+		int passed = 0;
+		for (long candidate : candidates) {
+			if (snapshot.test(candidate)) {
+				passed++;
+			}
+		}
+		return passed;
+	}
+
+	@Benchmark
+	public boolean survivor() {
+		return kernel.test(BenchmarkInputs.SEED);
+	}
+}
@@ -10,6 +10,6 @@ import org.springframework.context.annotation.Configuration;
 public class LogisticsConfiguration {
     @Bean
     public EventBus eventBus() {
-        return new EventBus();
+        return new TypedEventBus();
     }
 }
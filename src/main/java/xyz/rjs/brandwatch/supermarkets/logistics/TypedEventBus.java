@@ -0,0 +1,263 @@
+package xyz.rjs.brandwatch.supermarkets.logistics;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.eventbus.AllowConcurrentEvents;
+import com.google.common.eventbus.DeadEvent;
+import com.google.common.eventbus.EventBus;
+import com.google.common.eventbus.Subscribe;
+import com.google.common.reflect.TypeToken;
+
+/**
+ * An EventBus which finds the @Subscribe methods of an object when it is
+ * registered, and resolves the handlers of each event class to an array of
+ * MethodHandles the first time that class is posted. Posting an event after
+ * that does not allocate.
+ *
+ * Events are delivered as the EventBus delivers them. A handler is sent every
+ * event which is an instance of its parameter type, and events posted by a
+ * handler are queued until the handlers of the current event have returned.
+ * The handlers of a post are those registered when it is made. Handlers
+ * without @AllowConcurrentEvents are sent one event at a time, an exception
+ * thrown by a handler is logged, and an event without handlers is posted
+ * again as a DeadEvent.
+ *
+ * Handlers of the same event are called in the order they were registered,
+ * which the EventBus leaves undefined.
+ */
+public class TypedEventBus extends EventBus {
+
+    private static final Handler[] NO_HANDLERS = new Handler[0];
+
+    private static final MethodType HANDLER_TYPE = MethodType.methodType(void.class, Object.class);
+
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+
+    private final Map<Class<?>, List<Handler>> handlersByType = new HashMap<>();
+    private final Map<Object, List<Handler>> handlersBySubscriber = new IdentityHashMap<>();
+
+    /** Replaced whenever the handlers change, and filled as events are posted */
+    private volatile Map<Class<?>, Handler[]> dispatch = new ConcurrentHashMap<>();
+
+    private final ThreadLocal<DispatchQueue> queues = ThreadLocal.withInitial(DispatchQueue::new);
+
+    private static final class Handler {
+        private final Method method;
+        private final MethodHandle handle;
+        private final boolean concurrent;
+
+        Handler(Object subscriber, Method method) {
+            this.method = method;
+            this.concurrent = method.isAnnotationPresent(AllowConcurrentEvents.class);
+
+            method.setAccessible(true);
+            try {
+                this.handle = MethodHandles.lookup().unreflect(method).bindTo(subscriber).asType(HANDLER_TYPE);
+            } catch (IllegalAccessException e) {
+                throw new IllegalArgumentException("Cannot access " + method, e);
+            }
+        }
+
+        void handle(Object event) throws Throwable {
+            if (concurrent) {
+                handle.invokeExact(event);
+                return;
+            }
+            synchronized (this) {
+                handle.invokeExact(event);
+            }
+        }
+    }
+
+    /**
+     * The events posted on a thread that are waiting for their handlers, as a
+     * ring of event and handler pairs.
+     */
+    private static final class DispatchQueue {
+        private Object[] events = new Object[64];
+        private Handler[] handlers = new Handler[64];
+        private int head = 0;
+        private int size = 0;
+        private boolean dispatching = false;
+
+        void add(Object event, Handler handler) {
+            if (size == events.length) {
+                grow();
+            }
+            int tail = (head + size) & (events.length - 1);
+            events[tail] = event;
+            handlers[tail] = handler;
+            size++;
+        }
+
+        private void grow() {
+            Object[] grownEvents = new Object[events.length * 2];
+            Handler[] grownHandlers = new Handler[events.length * 2];
+            for (int i = 0; i < size; i++) {
+                int index = (head + i) & (events.length - 1);
+                grownEvents[i] = events[index];
+                grownHandlers[i] = handlers[index];
+            }
+            events = grownEvents;
+            handlers = grownHandlers;
+            head = 0;
+        }
+
+        void clear() {
+            Arrays.fill(events, null);
+            Arrays.fill(handlers, null);
+            head = 0;
+            size = 0;
+        }
+    }
+
+    @Override
+    public void register(Object object) {
+        Map<Class<?>, List<Handler>> found = findHandlers(object);
+        synchronized (handlersByType) {
+            if (handlersBySubscriber.containsKey(object)) {
+                return;
+            }
+            List<Handler> all = new ArrayList<>();
+            for (Map.Entry<Class<?>, List<Handler>> entry : found.entrySet()) {
+                handlersByType.computeIfAbsent(entry.getKey(), type -> new ArrayList<>()).addAll(entry.getValue());
+                all.addAll(entry.getValue());
+            }
+            handlersBySubscriber.put(object, all);
+            dispatch = new ConcurrentHashMap<>();
+        }
+    }
+
+    @Override
+    public void unregister(Object object) {
+        synchronized (handlersByType) {
+            List<Handler> handlers = handlersBySubscriber.remove(object);
+            if (handlers == null) {
+                throw new IllegalArgumentException("missing event subscriber for an annotated method. Is " + object + " registered?");
+            }
+            for (Handler handler : handlers) {
+                Class<?> type = handler.method.getParameterTypes()[0];
+                List<Handler> ofType = handlersByType.get(type);
+                ofType.remove(handler);
+                if (ofType.isEmpty()) {
+                    handlersByType.remove(type);
+                }
+            }
+            dispatch = new ConcurrentHashMap<>();
+        }
+    }
+
+    @Override
+    public void post(Object event) {
+        Handler[] handlers = handlers(event.getClass());
+        if (handlers.length == 0) {
+            if (!(event instanceof DeadEvent)) {
+                post(new DeadEvent(this, event));
+            }
+            return;
+        }
+
+        DispatchQueue queue = queues.get();
+        for (Handler handler : handlers) {
+            queue.add(event, handler);
+        }
+        if (queue.dispatching) {
+            return;
+        }
+
+        queue.dispatching = true;
+        try {
+            while (queue.size > 0) {
+                int index = queue.head;
+                Object queued = queue.events[index];
+                Handler handler = queue.handlers[index];
+                queue.events[index] = null;
+                queue.handlers[index] = null;
+                queue.head = (index + 1) & (queue.events.length - 1);
+                queue.size--;
+
+                try {
+                    handler.handle(queued);
+                } catch (Throwable e) {
+                    logger.error("Could not dispatch event: {} to handler {}", queued, handler.method, e);
+                }
+            }
+        } finally {
+            queue.dispatching = false;
+            if (queue.size > 0) {
+                queue.clear();
+            }
+        }
+    }
+
+    /**
+     * @param eventType
+     * @return - the handlers of every supertype of the event class
+     */
+    private Handler[] handlers(Class<?> eventType) {
+        Map<Class<?>, Handler[]> dispatch = this.dispatch;
+        Handler[] handlers = dispatch.get(eventType);
+        if (handlers == null) {
+            handlers = resolve(eventType);
+            dispatch.put(eventType, handlers);
+        }
+        return handlers;
+    }
+
+    private Handler[] resolve(Class<?> eventType) {
+        List<Handler> resolved = new ArrayList<>();
+        synchronized (handlersByType) {
+            for (Class<?> type : TypeToken.of(eventType).getTypes().rawTypes()) {
+                List<Handler> ofType = handlersByType.get(type);
+                if (ofType != null) {
+                    resolved.addAll(ofType);
+                }
+            }
+        }
+        return resolved.isEmpty() ? NO_HANDLERS : resolved.toArray(new Handler[resolved.size()]);
+    }
+
+    /**
+     * Finds the public @Subscribe methods of the object, including those
+     * annotated only where they are declared in a supertype.
+     *
+     * @param object
+     * @return - the handlers of the object by event type
+     */
+    private static Map<Class<?>, List<Handler>> findHandlers(Object object) {
+        Map<String, Method> methods = new LinkedHashMap<>();
+        for (Class<?> type : TypeToken.of(object.getClass()).getTypes().rawTypes()) {
+            for (Method method : type.getMethods()) {
+                if (!method.isAnnotationPresent(Subscribe.class) || method.isSynthetic()) {
+                    continue;
+                }
+                Class<?>[] parameterTypes = method.getParameterTypes();
+                if (parameterTypes.length != 1) {
+                    throw new IllegalArgumentException("Method " + method + " has @Subscribe annotation, but requires " + parameterTypes.length
+                            + " arguments.  Event subscriber methods must require a single argument.");
+                }
+                methods.putIfAbsent(method.getName() + Arrays.toString(parameterTypes), method);
+            }
+        }
+
+        Map<Class<?>, List<Handler>> handlers = new LinkedHashMap<>();
+        for (Method method : methods.values()) {
+            handlers.computeIfAbsent(method.getParameterTypes()[0], type -> new ArrayList<>()).add(new Handler(object, method));
+        }
+        return handlers;
+    }
+}
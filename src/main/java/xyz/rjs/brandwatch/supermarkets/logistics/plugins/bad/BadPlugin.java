@@ -2,8 +2,16 @@ package xyz.rjs.brandwatch.supermarkets.logistics.plugins.bad;
 
 import static com.google.common.base.Preconditions.checkState;
 
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Random;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.management.ObjectName;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -44,6 +52,9 @@ import com.google.common.eventbus.Subscribe;
  * The saving grace is that every single price event is reported, so a fixed set
  * of transitions is still possible.
  * 
+ * The time spent in each state is registered over JMX as BadPluginMetrics,
+ * and the progress of each oracle as OracleMetrics.
+ * 
  * @author matthew
  *
  */
@@ -105,6 +116,18 @@ public class BadPlugin extends AbstractPlugin {
 	@Autowired
 	private SaleOracle saleOracle;
 
+	/**
+	 * Tracks the Random object underlying the time of price changes.
+	 */
+	@Autowired
+	private PriceProbabilityOracle priceProbabilityOracle;
+
+	/**
+	 * Tracks the Random object underlying the time of sales.
+	 */
+	@Autowired
+	private SaleProbabilityOracle saleProbabilityOracle;
+
 	/**
 	 * Keeps track of orders that have not yet arrived.
 	 */
@@ -121,9 +144,50 @@ public class BadPlugin extends AbstractPlugin {
 	 */
 	private STATE state;
 
+	/**
+	 * Every oracle, which are searched for close to the first to fixate.
+	 */
+	private List<OracleWrapper> oracles;
+
+	/**
+	 * The fixed seed that each oracle last searched close to.
+	 */
+	private final Map<OracleWrapper, Long> cascaded;
+
+	/**
+	 * Records the time spent in each state.
+	 */
+	private final BadPluginMetrics metrics;
+
+	/**
+	 * The name the metrics are registered with, or null if they are not.
+	 */
+	private ObjectName metricsName;
+
 	public BadPlugin() {
 		state = STATE.START;
 		price = stablePrice = 1;
+		cascaded = new HashMap<>();
+		metrics = new BadPluginMetrics(state.name());
+	}
+
+	@PostConstruct
+	public void collectOracles() {
+		oracles = Arrays.asList(priceOracle, saleOracle, priceProbabilityOracle, saleProbabilityOracle);
+		metricsName = Metrics.register("BadPlugin", getClass().getSimpleName(), metrics);
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		Metrics.unregister(metricsName);
+	}
+
+	/**
+	 * @return - the time spent in each state, which can be read from any
+	 *         thread.
+	 */
+	public BadPluginMetrics metrics() {
+		return metrics;
 	}
 
 	@Subscribe
@@ -151,7 +215,12 @@ public class BadPlugin extends AbstractPlugin {
 	@Subscribe
 	public void tickListener(ClockTick tick) {
 		try {
+			// The oracles stop being fixed while they search for missed calls
+			if (state != STATE.START && state != STATE.GATHER_DATA && !(priceOracle.isFixed() && saleOracle.isFixed())) {
+				setState(STATE.GATHER_DATA);
+			}
 			state.tickListener(this);
+			cascade();
 		}
 		catch (Exception e) {
 			logger.error("Failed to execute tickListener", e);
@@ -203,6 +272,28 @@ public class BadPlugin extends AbstractPlugin {
 			stablePrice = price;
 		}
 		this.state = state;
+		metrics.transition(state.name());
+	}
+
+	/**
+	 * Once one oracle has fixated the other Random objects were created a
+	 * short time away, so the other oracles search close to the fixed seed.
+	 * Each oracle is given the cascade once per fixed seed, and searches it
+	 * when it has enough calls to pick out its seed.
+	 */
+	private void cascade() {
+		final OracleWrapper fixed = oracles.stream().filter(OracleWrapper::isFixed).findFirst().orElse(null);
+		if (fixed == null) {
+			return;
+		}
+
+		final SeedCascade cascade = fixed.cascade();
+		for (OracleWrapper other : oracles) {
+			if (!other.isFixed() && !Long.valueOf(cascade.seed()).equals(cascaded.get(other))) {
+				cascaded.put(other, cascade.seed());
+				other.searchCascade(cascade);
+			}
+		}
 	}
 
 	/**
@@ -0,0 +1,89 @@
+package xyz.rjs.brandwatch.supermarkets.logistics.plugins.bad;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * This records the transitions of the BadPlugin, so that the time it spends
+ * in each state can be read while it is running, such as over JMX.
+ *
+ * The transitions are made on the event thread, and can be read from any
+ * thread without locking. A reader can see a transition part way through, in
+ * which case the time of the current state may be counted twice for a moment.
+ *
+ * @author matthew
+ */
+public class BadPluginMetrics implements BadPluginMetricsMXBean {
+
+	private final ConcurrentMap<String, LongAdder> timeInState, transitionCounts;
+
+	private final LongAdder transitions;
+
+	private volatile String state;
+
+	/**
+	 * The System.nanoTime when the current state was entered.
+	 */
+	private volatile long enteredTime;
+
+	BadPluginMetrics(String state) {
+		timeInState = new ConcurrentHashMap<>();
+		transitionCounts = new ConcurrentHashMap<>();
+		transitions = new LongAdder();
+		this.state = state;
+		enteredTime = System.nanoTime();
+	}
+
+	/**
+	 * Records a transition. This is only called by the plugin.
+	 *
+	 * @param state
+	 */
+	void transition(String state) {
+		final long now = System.nanoTime();
+
+		timeInState.computeIfAbsent(this.state, name -> new LongAdder()).add(now - enteredTime);
+		transitionCounts.computeIfAbsent(String.format("%s to %s", this.state, state), name -> new LongAdder()).increment();
+		transitions.increment();
+
+		enteredTime = now;
+		this.state = state;
+	}
+
+	@Override
+	public String getState() {
+		return state;
+	}
+
+	@Override
+	public long getTimeInCurrentStateMillis() {
+		return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - enteredTime);
+	}
+
+	@Override
+	public Map<String, Long> getTimeInStateMillis() {
+		final String current = state;
+		final long currentTime = System.nanoTime() - enteredTime;
+
+		final Map<String, Long> result = new TreeMap<>();
+		timeInState.forEach((name, time) -> result.put(name, TimeUnit.NANOSECONDS.toMillis(time.sum())));
+		result.merge(current, TimeUnit.NANOSECONDS.toMillis(currentTime), Long::sum);
+		return result;
+	}
+
+	@Override
+	public Map<String, Long> getTransitionCounts() {
+		final Map<String, Long> result = new TreeMap<>();
+		transitionCounts.forEach((name, count) -> result.put(name, count.sum()));
+		return result;
+	}
+
+	@Override
+	public long getTransitions() {
+		return transitions.sum();
+	}
+}
@@ -0,0 +1,38 @@
+package xyz.rjs.brandwatch.supermarkets.logistics.plugins.bad;
+
+import java.util.Map;
+
+/**
+ * The view of the BadPlugin published over JMX. See BadPluginMetrics.
+ *
+ * @author matthew
+ */
+public interface BadPluginMetricsMXBean {
+
+	/**
+	 * @return - the name of the state of the plugin.
+	 */
+	String getState();
+
+	/**
+	 * @return - the time since the plugin entered its state.
+	 */
+	long getTimeInCurrentStateMillis();
+
+	/**
+	 * @return - the total time spent in each state, including the current
+	 *         state.
+	 */
+	Map<String, Long> getTimeInStateMillis();
+
+	/**
+	 * @return - the number of times each transition has been made, keyed by
+	 *         "FROM to TO".
+	 */
+	Map<String, Long> getTransitionCounts();
+
+	/**
+	 * @return - the number of transitions made.
+	 */
+	long getTransitions();
+}
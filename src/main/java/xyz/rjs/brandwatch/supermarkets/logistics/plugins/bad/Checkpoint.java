@@ -0,0 +1,283 @@
+package xyz.rjs.brandwatch.supermarkets.logistics.plugins.bad;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.RuntimeMXBean;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * This holds the progress of an Oracle so that it can be inspected after a
+ * run.
+ *
+ * The checkpoint holds the calls, the rounds of the generator that have been
+ * scanned, the surviving seeds and the fixed seed. Once the seed is fixed the
+ * later calls are not recorded, and the checkpoint holds the state of the
+ * cursor instead. The scanned rounds are
+ * recorded as the windows of time that were scanned for each uniquifier.
+ *
+ * The seeds of the Random objects belong to the process that created them, so
+ * a checkpoint records the process it was written by. It only describes the
+ * Random objects of that process, and an Oracle cannot be resumed from it
+ * after a restart: the new Random objects have new seeds, which none of the
+ * recorded calls or windows describe.
+ *
+ * The checkpoint is written to a temporary file through a memory mapping and
+ * then moved over the previous checkpoint, so a failed write never replaces a
+ * good checkpoint.
+ *
+ * @author matthew
+ */
+public class Checkpoint {
+
+	private static final int MAGIC = 0x4F52434C;
+
+	private static final int VERSION = 2;
+
+	private final String session;
+
+	private final long startingTime;
+
+	private final int round, solvedCalls, validationRound;
+
+	private final String state;
+
+	private final long fixedSeed;
+
+	private final long cursorState, cursorCalls;
+
+	private final List<Constraint> constraints;
+
+	/**
+	 * For each uniquifier the pairs of start and end times that were scanned.
+	 */
+	private final long[][] windows;
+
+	private final long[] seeds;
+
+	Checkpoint(String session, long startingTime, int round, int solvedCalls, int validationRound, String state, long fixedSeed, long cursorState,
+			long cursorCalls, List<Constraint> constraints, long[][] windows, long[] seeds) {
+		this.session = session;
+		this.startingTime = startingTime;
+		this.round = round;
+		this.solvedCalls = solvedCalls;
+		this.validationRound = validationRound;
+		this.state = state;
+		this.fixedSeed = fixedSeed;
+		this.cursorState = cursorState;
+		this.cursorCalls = cursorCalls;
+		this.constraints = Collections.unmodifiableList(new ArrayList<>(constraints));
+		this.windows = windows;
+		this.seeds = seeds;
+	}
+
+	/**
+	 * @return - the identity of this process.
+	 */
+	public static String currentSession() {
+		final RuntimeMXBean runtime = ManagementFactory.getRuntimeMXBean();
+		return String.format("%s@%s", runtime.getName(), runtime.getStartTime());
+	}
+
+	public String session() {
+		return session;
+	}
+
+	public long startingTime() {
+		return startingTime;
+	}
+
+	public int round() {
+		return round;
+	}
+
+	public int solvedCalls() {
+		return solvedCalls;
+	}
+
+	public int validationRound() {
+		return validationRound;
+	}
+
+	public String state() {
+		return state;
+	}
+
+	public long fixedSeed() {
+		return fixedSeed;
+	}
+
+	/**
+	 * @return - the state of the Random object after every call, when the
+	 *         seed is fixed.
+	 */
+	public long cursorState() {
+		return cursorState;
+	}
+
+	/**
+	 * @return - the number of calls applied to the cursor state.
+	 */
+	public long cursorCalls() {
+		return cursorCalls;
+	}
+
+	public List<Constraint> constraints() {
+		return constraints;
+	}
+
+	/**
+	 * @param ordinal
+	 *            - the ordinal of the uniquifier.
+	 * @return - the pairs of start and end times that were scanned.
+	 */
+	public long[] windows(int ordinal) {
+		return windows[ordinal];
+	}
+
+	public long[] seeds() {
+		return seeds;
+	}
+
+	/**
+	 * Writes the checkpoint, replacing any checkpoint in the file.
+	 *
+	 * @param file
+	 * @throws IOException
+	 */
+	public void write(Path file) throws IOException {
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (DataOutputStream output = new DataOutputStream(bytes)) {
+			output.writeInt(MAGIC);
+			output.writeInt(VERSION);
+			output.writeUTF(session);
+			output.writeLong(startingTime);
+			output.writeInt(round);
+			output.writeInt(solvedCalls);
+			output.writeInt(validationRound);
+			output.writeUTF(state);
+			output.writeLong(fixedSeed);
+			output.writeLong(cursorState);
+			output.writeLong(cursorCalls);
+
+			output.writeInt(constraints.size());
+			for (Constraint constraint : constraints) {
+				constraint.write(output);
+			}
+
+			output.writeInt(windows.length);
+			for (long[] window : windows) {
+				output.writeInt(window.length);
+				for (long time : window) {
+					output.writeLong(time);
+				}
+			}
+
+			output.writeInt(seeds.length);
+			for (long seed : seeds) {
+				output.writeLong(seed);
+			}
+		}
+
+		if (file.getParent() != null) {
+			Files.createDirectories(file.getParent());
+		}
+		final Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+		try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ,
+				StandardOpenOption.WRITE)) {
+			final MappedByteBuffer buffer = channel.map(MapMode.READ_WRITE, 0, bytes.size());
+			buffer.put(bytes.toByteArray());
+			buffer.force();
+		}
+		Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/**
+	 * Reads a checkpoint.
+	 *
+	 * @param file
+	 * @return - the checkpoint, or null if there is no checkpoint.
+	 * @throws IOException
+	 *             - if the file is not a checkpoint.
+	 */
+	public static Checkpoint read(Path file) throws IOException {
+		if (!Files.exists(file)) {
+			return null;
+		}
+
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+				DataInputStream input = new DataInputStream(new BufferInputStream(channel.map(MapMode.READ_ONLY, 0, channel.size())))) {
+			if (input.readInt() != MAGIC || input.readInt() != VERSION) {
+				throw new IOException(String.format("%s is not a checkpoint", file));
+			}
+
+			final String session = input.readUTF();
+			final long startingTime = input.readLong();
+			final int round = input.readInt(), solvedCalls = input.readInt(), validationRound = input.readInt();
+			final String state = input.readUTF();
+			final long fixedSeed = input.readLong(), cursorState = input.readLong(), cursorCalls = input.readLong();
+
+			final int count = input.readInt();
+			final List<Constraint> constraints = new ArrayList<>(count);
+			for (int i = 0; i < count; i++) {
+				constraints.add(Constraint.read(input));
+			}
+
+			final long[][] windows = new long[input.readInt()][];
+			for (int i = 0; i < windows.length; i++) {
+				windows[i] = readLongs(input);
+			}
+
+			return new Checkpoint(session, startingTime, round, solvedCalls, validationRound, state, fixedSeed, cursorState, cursorCalls, constraints, windows,
+					readLongs(input));
+		}
+	}
+
+	private static long[] readLongs(DataInputStream input) throws IOException {
+		final long[] result = new long[input.readInt()];
+		for (int i = 0; i < result.length; i++) {
+			result[i] = input.readLong();
+		}
+		return result;
+	}
+
+	/**
+	 * Reads from a mapped buffer.
+	 */
+	private static class BufferInputStream extends InputStream {
+
+		private final ByteBuffer buffer;
+
+		BufferInputStream(ByteBuffer buffer) {
+			this.buffer = buffer;
+		}
+
+		@Override
+		public int read() {
+			return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+		}
+
+		@Override
+		public int read(byte[] bytes, int offset, int length) {
+			if (!buffer.hasRemaining()) {
+				return -1;
+			}
+			final int count = Math.min(length, buffer.remaining());
+			buffer.get(bytes, offset, count);
+			return count;
+		}
+	}
+}
@@ -0,0 +1,319 @@
+package xyz.rjs.brandwatch.supermarkets.logistics.plugins.bad;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.Random;
+
+/**
+ * This describes a single call made on the Random object under study, and the
+ * values that the call could have produced.
+ *
+ * A lambda such as <code>r -&gt; r.nextInt(6) == 3</code> can only be
+ * applied to a Random object. This holds the same test as data, so it can be
+ * compiled into a SeedKernel, inspected by the StateSolver, and written to a
+ * file and read back.
+ *
+ * The accepted values are a mask as described in SeedKernel. A call that was
+ * made but not observed accepts every value. It still consumes a value from
+ * the Random object, and is called a skip. A run of skipped calls which each
+ * consume a known number of values can be described as a single skip of those
+ * values, which is applied with a RandomJump.
+ *
+ * A nextDouble() call that was compared with a probability, as the
+ * probabilistic services do on every tick, is described by whether the value
+ * was below the probability. A tick without the event of the service is an
+ * observation that the value was at or above it.
+ *
+ * @author matthew
+ */
+public final class Constraint implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * The methods of the Random object that can be described.
+	 */
+	public static enum Method {
+		NEXT_INT,
+		/**
+		 * Calls to next, which were not observed.
+		 */
+		NEXT,
+		/**
+		 * A nextDouble() call compared with a probability.
+		 */
+		NEXT_DOUBLE
+	}
+
+	private final Method method;
+
+	private final int bound;
+
+	private final long accepted;
+
+	/**
+	 * The number of values consumed, ignoring the nextInt rejection loop.
+	 */
+	private final long steps;
+
+	/**
+	 * The probability that a nextDouble() call was compared with.
+	 */
+	private final double probability;
+
+	private Constraint(Method method, int bound, long accepted) {
+		this(method, bound, accepted, 1, 0);
+	}
+
+	private Constraint(Method method, int bound, long accepted, long steps, double probability) {
+		checkArgument(method != null, "Method must be provided");
+		checkArgument(bound > 0 && bound <= SeedKernel.MAXIMUM_BOUND, "Bound must be between 1 and %s", SeedKernel.MAXIMUM_BOUND);
+		checkArgument((accepted & ~SeedKernel.any(bound)) == 0, "Accepted values must be below the bound");
+		checkArgument(steps > 0, "Steps must be greater than zero");
+		checkArgument(method != Method.NEXT_DOUBLE || (probability > 0 && probability <= 1), "Probability must be greater than 0 and at most 1");
+
+		this.method = method;
+		this.bound = bound;
+		this.accepted = accepted;
+		this.steps = steps;
+		this.probability = probability;
+	}
+
+	/**
+	 * @param bound
+	 * @param accepted
+	 *            - the mask of accepted values.
+	 * @return - a nextInt(bound) call which produced one of the accepted
+	 *         values.
+	 */
+	public static Constraint nextInt(int bound, long accepted) {
+		return new Constraint(Method.NEXT_INT, bound, accepted);
+	}
+
+	/**
+	 * @param bound
+	 * @param value
+	 * @return - a nextInt(bound) call which produced the value.
+	 */
+	public static Constraint nextIntEquals(int bound, int value) {
+		return nextInt(bound, SeedKernel.only(value));
+	}
+
+	/**
+	 * @param bound
+	 * @param value
+	 * @return - a nextInt(bound) call which produced any value but this one.
+	 */
+	public static Constraint nextIntExcept(int bound, int value) {
+		return nextInt(bound, SeedKernel.any(bound) & ~SeedKernel.only(value));
+	}
+
+	/**
+	 * @param bound
+	 * @return - a nextInt(bound) call which was not observed.
+	 */
+	public static Constraint skipNextInt(int bound) {
+		return nextInt(bound, SeedKernel.any(bound));
+	}
+
+	/**
+	 * Describes calls which were not observed, and which consumed a known
+	 * number of values. Each of nextInt(), nextBoolean(), nextFloat() and
+	 * nextInt(bound) with a power of two bound consumes one value, and each
+	 * of nextLong() and nextDouble() consumes two. A nextInt(bound) call with
+	 * any other bound can consume more than one value, and must be recorded
+	 * with skipNextInt instead.
+	 *
+	 * @param steps
+	 *            - the number of values consumed.
+	 * @return
+	 */
+	public static Constraint skip(long steps) {
+		return new Constraint(Method.NEXT, 1, SeedKernel.any(1), steps, 0);
+	}
+
+	/**
+	 * @param probability
+	 * @param below
+	 *            - if the value was below the probability.
+	 * @return - a nextDouble() call which was compared with the probability.
+	 */
+	public static Constraint nextDouble(double probability, boolean below) {
+		return new Constraint(Method.NEXT_DOUBLE, 2, SeedKernel.only(below ? SeedKernel.BELOW : SeedKernel.AT_OR_ABOVE), 2, probability);
+	}
+
+	/**
+	 * @param probability
+	 * @return - a nextDouble() call which produced a value below the
+	 *         probability.
+	 */
+	public static Constraint nextDoubleBelow(double probability) {
+		return nextDouble(probability, true);
+	}
+
+	/**
+	 * @param probability
+	 * @return - a nextDouble() call which produced a value at or above the
+	 *         probability.
+	 */
+	public static Constraint nextDoubleAtOrAbove(double probability) {
+		return nextDouble(probability, false);
+	}
+
+	public Method method() {
+		return method;
+	}
+
+	public int bound() {
+		return bound;
+	}
+
+	/**
+	 * @return - the mask of accepted values.
+	 */
+	public long accepted() {
+		return accepted;
+	}
+
+	/**
+	 * @return - the number of values that the call consumes, ignoring the
+	 *         nextInt rejection loop.
+	 */
+	public long steps() {
+		return steps;
+	}
+
+	/**
+	 * @return - the probability that a nextDouble() call was compared with,
+	 *         or zero for any other call.
+	 */
+	public double probability() {
+		return probability;
+	}
+
+	/**
+	 * @return - if the call accepts every value.
+	 */
+	public boolean isSkip() {
+		return accepted == SeedKernel.any(bound);
+	}
+
+	/**
+	 * @return - the factor that this call reduces the space of seeds by. Only
+	 *         a call which produced a single known value is counted.
+	 */
+	public long reduction() {
+		if (method == Method.NEXT_DOUBLE) {
+			// Only a value below a small probability is rare enough to count
+			return accepted == SeedKernel.only(SeedKernel.BELOW) ? (long) (1 / probability) : 1;
+		}
+		return Long.bitCount(accepted) == 1 ? bound : 1;
+	}
+
+	/**
+	 * @return - the information, in bits, that the call holds about the state
+	 *         of the Random object.
+	 */
+	public double information() {
+		return compile(SeedKernel.EMPTY).information(0);
+	}
+
+	/**
+	 * Applies the call to the Random object. This is the slow path, which is
+	 * used when the constraint is mixed with arbitrary operations.
+	 *
+	 * @param random
+	 * @return - if the value produced is accepted.
+	 */
+	public boolean test(Random random) {
+		if (method == Method.NEXT) {
+			// Each nextInt() is a single call to next
+			for (long i = 0; i < steps; i++) {
+				random.nextInt();
+			}
+			return true;
+		}
+		if (method == Method.NEXT_DOUBLE) {
+			return (accepted & (1L << (random.nextDouble() < probability ? SeedKernel.BELOW : SeedKernel.AT_OR_ABOVE))) != 0;
+		}
+		return (accepted & (1L << random.nextInt(bound))) != 0;
+	}
+
+	/**
+	 * Adds this call to the kernel.
+	 *
+	 * @param kernel
+	 * @return - a new kernel with this call at the end.
+	 */
+	public SeedKernel compile(SeedKernel kernel) {
+		switch (method) {
+		case NEXT:
+			return kernel.skip(steps);
+		case NEXT_DOUBLE:
+			return kernel.addDouble(probability, accepted);
+		default:
+			return kernel.add(bound, accepted);
+		}
+	}
+
+	public void write(DataOutput output) throws IOException {
+		output.writeByte(method.ordinal());
+		output.writeByte(bound);
+		output.writeLong(accepted);
+		if (method == Method.NEXT) {
+			output.writeLong(steps);
+		}
+		else if (method == Method.NEXT_DOUBLE) {
+			output.writeDouble(probability);
+		}
+	}
+
+	public static Constraint read(DataInput input) throws IOException {
+		final int ordinal = input.readByte();
+		if (ordinal < 0 || ordinal >= Method.values().length) {
+			throw new IOException(String.format("Unknown method %s", ordinal));
+		}
+		final Method method = Method.values()[ordinal];
+		final int bound = input.readByte();
+		final long accepted = input.readLong();
+		switch (method) {
+		case NEXT:
+			return new Constraint(method, bound, accepted, input.readLong(), 0);
+		case NEXT_DOUBLE:
+			return new Constraint(method, bound, accepted, 2, input.readDouble());
+		default:
+			return new Constraint(method, bound, accepted);
+		}
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (!(obj instanceof Constraint)) {
+			return false;
+		}
+		final Constraint other = (Constraint) obj;
+		return method == other.method && bound == other.bound && accepted == other.accepted && steps == other.steps
+				&& Double.compare(probability, other.probability) == 0;
+	}
+
+	@Override
+	public int hashCode() {
+		return (((method.hashCode() * 31 + bound) * 31 + Long.hashCode(accepted)) * 31 + Long.hashCode(steps)) * 31 + Double.hashCode(probability);
+	}
+
+	@Override
+	public String toString() {
+		if (method == Method.NEXT) {
+			return String.format("%s x %s", method, steps);
+		}
+		if (method == Method.NEXT_DOUBLE) {
+			final String comparison = accepted == SeedKernel.only(SeedKernel.BELOW) ? "<" : accepted == SeedKernel.only(SeedKernel.AT_OR_ABOVE) ? ">=" : "any";
+			return String.format("%s() %s %s", method, comparison, probability);
+		}
+		return String.format("%s(%s) in %s", method, bound, Long.toBinaryString(accepted));
+	}
+}
@@ -0,0 +1,417 @@
+package xyz.rjs.brandwatch.supermarkets.logistics.plugins.bad;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.OptionalInt;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import xyz.rjs.brandwatch.supermarkets.logistics.plugins.AbstractPlugin;
+import xyz.rjs.brandwatch.supermarkets.model.events.ArrivalNotification;
+import xyz.rjs.brandwatch.supermarkets.model.events.ClockTick;
+import xyz.rjs.brandwatch.supermarkets.model.events.Order;
+import xyz.rjs.brandwatch.supermarkets.sim.Warehouse;
+
+import com.google.common.eventbus.Subscribe;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * This predicts the tick on which each Order will arrive at the Warehouse.
+ *
+ * The Supplier creates a Delivery for every Order, and every Delivery creates
+ * its own Random object. On every tick the Delivery is delayed if nextDouble()
+ * is below 0.1, and otherwise it travels. It arrives on the tick after it has
+ * travelled the distance of the Supplier. The Random object is created while
+ * the Order is posted, so its seed comes from a known time and a known
+ * uniquifier.
+ *
+ * The simulation creates its own Random objects first, in the order described
+ * by SeedCascade.Sibling, and after that only a Delivery creates one. The
+ * Orders are ours, so the Delivery of each Order uses the next ordinal. Other
+ * code can create Random objects in between, so the neighbouring ordinals are
+ * also searched. The time is read when the Order is posted, and every seed in
+ * a window either side of it is followed to its arrival away from the event
+ * thread.
+ *
+ * Each tick that passes without the Order arriving rules out the seeds that
+ * would have arrived on it. The Order is only predicted once every seed that
+ * remains arrives on the same tick. The arrival of each Delivery checks the
+ * window, and when no seed in the window would have arrived on that tick the
+ * window is widened for later Orders.
+ *
+ * The distance of the Supplier is read from the PriceOracle, so nothing is
+ * followed until it has fixed.
+ *
+ * @author matthew
+ */
+@Component
+public class DeliveryOracle extends AbstractPlugin {
+
+	private static final Logger logger = LoggerFactory.getLogger(DeliveryOracle.class);
+
+	/**
+	 * The probability of a Delivery being delayed on a tick.
+	 */
+	private static final double DELAY_PROBABILITY = 0.1;
+
+	/**
+	 * nextDouble() is below the delay probability when the 53 bits that it is
+	 * made from are below this.
+	 */
+	private static final long DELAY_THRESHOLD = (long) Math.ceil(DELAY_PROBABILITY * (1L << 53));
+
+	/**
+	 * The number of delays that are followed. A Delivery is delayed more than
+	 * this with negligible probability, and such seeds are counted together.
+	 */
+	static final int MAXIMUM_DELAYS = 255;
+
+	/**
+	 * The time either side of the read that is searched, and the largest
+	 * that it is widened to.
+	 */
+	private static final long INITIAL_WINDOW_NANOS = 1L << 16;
+	private static final long MAXIMUM_WINDOW_NANOS = 1L << 20;
+
+	private final Warehouse warehouse;
+
+	private final Supplier<OptionalInt> distance;
+
+	/**
+	 * This follows the seeds of each Delivery away from the event thread.
+	 */
+	private final ExecutorService executor;
+
+	private final List<InFlight> inFlight;
+
+	/**
+	 * The ordinal of the uniquifier expected for the Delivery of the next
+	 * Order.
+	 */
+	private int ordinal;
+
+	private long window;
+
+	private int tick, arrivals, misses;
+
+	@Autowired
+	public DeliveryOracle(Warehouse warehouse, PriceOracle priceOracle) {
+		this(warehouse, priceOracle::distance, SeedCascade.Sibling.CUSTOMER.creationOrdinal() + 1,
+				Executors.newSingleThreadExecutor(new ThreadFactoryBuilder().setNameFormat("delivery-oracle-%d").setDaemon(true).build()));
+	}
+
+	/**
+	 * @param warehouse
+	 *            - the destination of the Orders.
+	 * @param distance
+	 *            - the distance of the Supplier, once it is known.
+	 * @param ordinal
+	 *            - the ordinal of the uniquifier expected for the Delivery of
+	 *            the first Order.
+	 * @param executor
+	 *            - follows the seeds of each Delivery.
+	 */
+	DeliveryOracle(Warehouse warehouse, Supplier<OptionalInt> distance, int ordinal, ExecutorService executor) {
+		this.warehouse = warehouse;
+		this.distance = distance;
+		this.ordinal = ordinal;
+		this.executor = executor;
+		inFlight = new ArrayList<>();
+		window = INITIAL_WINDOW_NANOS;
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		executor.shutdownNow();
+	}
+
+	@Subscribe
+	public synchronized void tickListener(ClockTick tick) {
+		this.tick = tick.getTick();
+
+		final OptionalInt known = distance.get();
+		if (known.isPresent()) {
+			inFlight.forEach(delivery -> delivery.evaluate(executor, known.getAsInt()));
+		}
+	}
+
+	@Subscribe
+	public synchronized void orderListener(Order order) {
+		final long now = System.nanoTime();
+
+		final InFlight delivery = new InFlight(order, tick);
+		for (int slack = -SeedCascade.ORDINAL_SLACK; slack <= SeedCascade.ORDINAL_SLACK; slack++) {
+			if (ordinal + slack >= 0) {
+				delivery.search(ordinal + slack, now - window, now + window);
+			}
+		}
+		ordinal++;
+
+		final OptionalInt known = distance.get();
+		if (known.isPresent()) {
+			delivery.evaluate(executor, known.getAsInt());
+		}
+		inFlight.add(delivery);
+	}
+
+	@Subscribe
+	public synchronized void arrivalListener(ArrivalNotification arrival) {
+		if (arrival.getPlace() != warehouse) {
+			return;
+		}
+
+		InFlight arrived = null;
+		for (InFlight delivery : inFlight) {
+			if (delivery.volume == arrival.getAmount() && (arrived == null || delivery.arrives(tick))) {
+				arrived = delivery;
+				if (delivery.arrives(tick)) {
+					break;
+				}
+			}
+		}
+		if (arrived == null) {
+			return;
+		}
+
+		inFlight.remove(arrived);
+		arrivals++;
+		if (arrived.isEvaluated() && !arrived.arrives(tick)) {
+			misses++;
+			window = Math.min(MAXIMUM_WINDOW_NANOS, 2 * window);
+			logger.info(String.format("Delivery of %s arrived outside the window, searching %s ns", arrived.volume, window));
+		}
+	}
+
+	/**
+	 * @return - the arrival of each Order that has not arrived and is
+	 *         predicted, in the order they were posted.
+	 */
+	public synchronized List<Prediction> predictions() {
+		final List<Prediction> result = new ArrayList<>();
+		for (InFlight delivery : inFlight) {
+			delivery.predict(tick).ifPresent(result::add);
+		}
+		return result;
+	}
+
+	/**
+	 * @param order
+	 * @return - the arrival of the Order, if it has not arrived and every seed
+	 *         that remains arrives on the same tick.
+	 */
+	public synchronized Optional<Prediction> prediction(Order order) {
+		for (InFlight delivery : inFlight) {
+			if (delivery.order == order) {
+				return delivery.predict(tick);
+			}
+		}
+		return Optional.empty();
+	}
+
+	/**
+	 * @return - the number of Orders that have arrived.
+	 */
+	public synchronized int arrivals() {
+		return arrivals;
+	}
+
+	/**
+	 * @return - the number of Orders that arrived on a tick that no seed in
+	 *         their window arrives on.
+	 */
+	public synchronized int misses() {
+		return misses;
+	}
+
+	/**
+	 * Follows the Random object of a Delivery until it arrives.
+	 *
+	 * @param state
+	 *            - the state of the Random object when the Delivery is
+	 *            created.
+	 * @param distance
+	 * @return - the number of ticks on which the Delivery is delayed, up to
+	 *         MAXIMUM_DELAYS.
+	 */
+	static int delays(long state, int distance) {
+		int delays = 0;
+		for (int remaining = distance; delays < MAXIMUM_DELAYS;) {
+			state = (state * SeedKernel.MULTIPLIER + SeedKernel.ADDEND) & SeedKernel.MASK;
+			final long high = state >>> (48 - 26);
+			state = (state * SeedKernel.MULTIPLIER + SeedKernel.ADDEND) & SeedKernel.MASK;
+			final long low = state >>> (48 - 27);
+
+			if (((high << 27) + low) < DELAY_THRESHOLD) {
+				delays++;
+			}
+			else if (remaining-- <= 0) {
+				break;
+			}
+		}
+		return delays;
+	}
+
+	/**
+	 * The predicted arrival of an Order.
+	 */
+	public static final class Prediction {
+
+		private final Order order;
+
+		private final int tick;
+
+		private final long candidates;
+
+		private Prediction(Order order, int tick, long candidates) {
+			this.order = order;
+			this.tick = tick;
+			this.candidates = candidates;
+		}
+
+		public Order order() {
+			return order;
+		}
+
+		/**
+		 * @return - the tick on which the Order arrives.
+		 */
+		public int tick() {
+			return tick;
+		}
+
+		/**
+		 * @return - the number of seeds that remain, all of which arrive on
+		 *         the tick.
+		 */
+		public long candidates() {
+			return candidates;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("%s arrives at %s (%s seeds)", order.getVolume(), tick, candidates);
+		}
+	}
+
+	/**
+	 * An Order that has not arrived, and the seeds that its Delivery could
+	 * have been created with.
+	 */
+	static class InFlight {
+
+		private final Order order;
+
+		private final int volume;
+
+		/**
+		 * The tick on which the Order was posted. The Delivery is first moved
+		 * on the tick after this.
+		 */
+		private final int tick;
+
+		private final List<SeedWindow> windows;
+
+		private int distance;
+
+		/**
+		 * The number of seeds that are delayed each number of ticks, or null
+		 * until they have been followed.
+		 */
+		private volatile long[] histogram;
+
+		InFlight(Order order, int tick) {
+			this.order = order;
+			this.tick = tick;
+			volume = order.getVolume();
+			windows = new ArrayList<>();
+		}
+
+		void search(int ordinal, long from, long to) {
+			windows.add(new SeedWindow(from, to, ordinal));
+		}
+
+		boolean isEvaluated() {
+			return histogram != null;
+		}
+
+		/**
+		 * Follows every seed to its arrival on the executor. The seeds are
+		 * only followed once.
+		 *
+		 * @param executor
+		 * @param distance
+		 */
+		void evaluate(ExecutorService executor, int distance) {
+			if (this.distance > 0) {
+				return;
+			}
+			this.distance = distance;
+
+			final List<SeedWindow> windows = new ArrayList<>(this.windows);
+			executor.execute(() -> {
+				final long[] histogram = new long[MAXIMUM_DELAYS + 1];
+				for (SeedWindow window : windows) {
+					final long uniquifier = window.uniquifier();
+					for (long time = window.from(); time < window.to(); time++) {
+						histogram[delays(SeedKernel.scramble(time ^ uniquifier), distance)]++;
+					}
+				}
+				this.histogram = histogram;
+			});
+		}
+
+		/**
+		 * @param delays
+		 * @return - the tick on which a Delivery with that many delays arrives.
+		 */
+		int arrival(int delays) {
+			return tick + distance + 1 + delays;
+		}
+
+		/**
+		 * @param now
+		 * @return - if any seed arrives on the tick.
+		 */
+		boolean arrives(int now) {
+			final long[] histogram = this.histogram;
+			final int delays = now - arrival(0);
+			return histogram != null && delays >= 0 && delays < histogram.length && histogram[delays] > 0;
+		}
+
+		/**
+		 * @param now
+		 * @return - the arrival of the Order, if every seed which has not yet
+		 *         arrived arrives on the same tick.
+		 */
+		Optional<Prediction> predict(int now) {
+			final long[] histogram = this.histogram;
+			if (histogram == null) {
+				return Optional.empty();
+			}
+
+			int found = -1;
+			for (int delays = Math.max(0, now - arrival(0)); delays < histogram.length; delays++) {
+				if (histogram[delays] == 0) {
+					continue;
+				}
+				if (found >= 0 || delays == MAXIMUM_DELAYS) {
+					return Optional.empty();
+				}
+				found = delays;
+			}
+			if (found < 0) {
+				return Optional.empty();
+			}
+			return Optional.of(new Prediction(order, arrival(found), histogram[found]));
+		}
+	}
+}
@@ -0,0 +1,75 @@
+package xyz.rjs.brandwatch.supermarkets.logistics.plugins.bad;
+
+import java.lang.management.ManagementFactory;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * This registers metrics with the platform MBean server, where they can be
+ * read with jconsole or any other JMX client. Each is named
+ * xyz.rjs.brandwatch.supermarkets:type=...,name=...
+ *
+ * Failing to register metrics never stops the plugin, so failures are only
+ * logged.
+ *
+ * @author matthew
+ */
+public final class Metrics {
+
+	private static final Logger logger = LoggerFactory.getLogger(Metrics.class);
+
+	static final String DOMAIN = "xyz.rjs.brandwatch.supermarkets";
+
+	private Metrics() {
+	}
+
+	/**
+	 * Registers the metrics, replacing any registered with the same name.
+	 *
+	 * @param type
+	 * @param name
+	 * @param metrics
+	 *            - an MXBean.
+	 * @return - the name of the metrics, or null if they were not registered.
+	 */
+	public static ObjectName register(String type, String name, Object metrics) {
+		final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		try {
+			final ObjectName objectName = name(type, name);
+			if (server.isRegistered(objectName)) {
+				server.unregisterMBean(objectName);
+			}
+			server.registerMBean(metrics, objectName);
+			return objectName;
+		}
+		catch (JMException e) {
+			logger.warn(String.format("Failed to register %s metrics for %s", type, name), e);
+			return null;
+		}
+	}
+
+	/**
+	 * @param objectName
+	 *            - the name returned by register, which may be null.
+	 */
+	public static void unregister(ObjectName objectName) {
+		if (objectName == null) {
+			return;
+		}
+		try {
+			ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+		}
+		catch (JMException e) {
+			logger.warn(String.format("Failed to unregister %s", objectName), e);
+		}
+	}
+
+	static ObjectName name(String type, String name) throws JMException {
+		return new ObjectName(String.format("%s:type=%s,name=%s", DOMAIN, type, name));
+	}
+}
@@ -3,11 +3,11 @@ package xyz.rjs.brandwatch.supermarkets.logistics.plugins.bad;
 import static com.google.common.base.Preconditions.checkState;
 
 import java.text.DecimalFormat;
-import java.util.Collections;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Random;
-import java.util.Set;
 import java.util.function.Function;
-import java.util.stream.Collectors;
+import java.util.function.LongPredicate;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -20,15 +20,10 @@ import org.slf4j.LoggerFactory;
  * will generate. This will allow the prediction of the next sale and the next
  * purchase price (and ones following that...).
  * 
- * It is not feasible to observe the Random objects that cause the
- * CustomerService and Supplier to fire. They ARE observable when the value
- * produced is below the threshold, but they ARE NOT observable when it is at or
- * above the threshold. This means that any attempt to generate the seeds for
- * them would have to rank the seeds instead of filtering them correctly.
- * 
- * (as I write this I realise that the negative status can be inferred from a
- * tick that does not produce the given event, but this demonstrates the
- * technique I want to show without having to cover that as well).
+ * The Random objects that cause the CustomerService and Supplier to fire are
+ * observed on every tick. The value is below the threshold on a tick that
+ * produces the event, and at or above it on a tick that does not. These are
+ * recorded as nextDouble() threshold calls, see ProbabilityOracle.
  *
  * Fundamentally this works because Java Random objects are predictable. They
  * are designed to produce the same output when started with the same seed. The
@@ -109,6 +104,25 @@ public class Oracle {
 	 */
 	private static final int VALIDATION_ROUNDS = 25;
 
+	/**
+	 * The number of rounds of the seed generator which must fail before the
+	 * Oracle will try to solve for the state directly. The early rounds are
+	 * cheaper than solving, and they will find the seed in the common case.
+	 */
+	private static final int SOLVER_ROUND_LIMIT = 2;
+
+	/**
+	 * The maximum number of seeds that the pipeline holds while waiting for
+	 * more calls. Each seed takes 16 bytes.
+	 */
+	private static final int PIPELINE_CAPACITY = 1 << 21;
+
+	/**
+	 * The number of seeds that are held on the heap. More seeds than this are
+	 * held in a memory mapped file. Each seed takes 8 bytes.
+	 */
+	private static final int SEED_HEAP_BUDGET = 1 << 24;
+
 	/**
 	 * This holds the creation time of the Oracle. <strong>It is assumed that
 	 * the Random object has been created at or before this time.</strong>
@@ -121,24 +135,71 @@ public class Oracle {
 	 */
 	private final SeedGenerator generator;
 
+	/**
+	 * This decides the order in which the generator searches.
+	 */
+	private final SeedPrior prior;
+
+	/**
+	 * The windows searched by each round of the generator, most likely first.
+	 */
+	private final List<List<SeedWindow>> rounds;
+
+	/**
+	 * This shares the scan of each round with the other Oracles, or is null if
+	 * the Oracle scans alone.
+	 */
+	private final SeedScanner scanner;
+
+	/**
+	 * This shares the rounds with worker processes, or is null if the rounds
+	 * are only searched in this process.
+	 */
+	private SeedCluster cluster;
+
 	/**
 	 * This holds the list of calls to nextInt, in order.
 	 */
 	private final SeedTest calls;
 
+	/**
+	 * This runs the expensive searches away from the event thread.
+	 */
+	private final SeedSearch search;
+
+	/**
+	 * This indicates if the last search submitted was solving for the state.
+	 */
+	private boolean solving;
+
+	/**
+	 * The search close to the seed of another Oracle which is waiting to
+	 * start, and the Random object that this Oracle follows, or null if there
+	 * is none.
+	 */
+	private SeedCascade cascade;
+	private SeedCascade.Sibling cascadeSibling;
+
 	/**
 	 * This holds the current evaluation round. The seeds are generated in
 	 * batches which are then tested. Each time a complete batch fails the next
-	 * batch of seeds is generated, offset from the current time by a larger
-	 * amount.
+	 * batch of seeds is generated from the next most likely windows.
 	 */
 	private int round;
 
 	/**
-	 * When seed resolution is attempted passing seeds are stored in this set.
-	 * When this has only a single value the Random object can be generated.
+	 * This holds the number of calls that were available the last time the
+	 * state was solved. Solving is only repeated once more calls are
+	 * available.
 	 */
-	private Set<Long> seeds;
+	private int solvedCalls;
+
+	/**
+	 * When seed resolution is attempted passing seeds are stored in this
+	 * store. When this has only a single value the Random object can be
+	 * generated.
+	 */
+	private final SeedStore seeds;
 
 	/**
 	 * This tracks the current round of validation for the single seed that
@@ -154,6 +215,18 @@ public class Oracle {
 	 */
 	private long fixedSeed;
 
+	/**
+	 * When seed resolution has completed this follows the state of the Random
+	 * object. Calls made after this point are applied to the cursor instead
+	 * of being recorded.
+	 */
+	private SeedCursor cursor;
+
+	/**
+	 * If the loss of the cursor has been reported.
+	 */
+	private boolean lostReported;
+
 	/**
 	 * This is the current state of the Oracle. The Oracle transitions from wild
 	 * guesstimates to a limited set of seeds before finally settling on a
@@ -161,14 +234,74 @@ public class Oracle {
 	 */
 	private STATE state;
 
+	/**
+	 * This publishes the progress of the Oracle to other threads.
+	 */
+	private final OracleMetrics metrics;
+
 	public Oracle() {
-		startingTime = System.nanoTime();
+		this(new SeedSearch());
+	}
+
+	/**
+	 * Creates an Oracle which searches for seeds with the provided search.
+	 * 
+	 * @param search
+	 */
+	public Oracle(SeedSearch search) {
+		this(search, SeedPrior.defaults());
+	}
+
+	/**
+	 * Creates an Oracle which searches for seeds with the provided search, in
+	 * the order given by the prior. The prior records the seed when the Oracle
+	 * becomes fixed.
+	 * 
+	 * @param search
+	 * @param prior
+	 */
+	public Oracle(SeedSearch search, SeedPrior prior) {
+		this(search, prior, System.nanoTime(), null);
+	}
+
+	/**
+	 * Creates an Oracle which shares the scan of each round with the other
+	 * Oracles of the scanner. The Oracle takes the creation time and the
+	 * prior of the scanner, so that every Oracle searches the same windows.
+	 * 
+	 * @param search
+	 * @param scanner
+	 */
+	public Oracle(SeedSearch search, SeedScanner scanner) {
+		this(search, scanner.prior(), scanner.startingTime(), scanner);
+	}
+
+	private Oracle(SeedSearch search, SeedPrior prior, long startingTime, SeedScanner scanner) {
+		this.startingTime = startingTime;
 		generator = new SeedGenerator(startingTime);
+		this.prior = prior;
+		this.scanner = scanner;
+		rounds = scanner != null ? scanner.rounds() : prior.rounds(startingTime);
 		calls = new SeedTest();
-		seeds = Collections.emptySet();
+		this.search = search;
+		seeds = new SeedStore(SEED_HEAP_BUDGET);
 		round = 0;
+		solving = false;
+		solvedCalls = 0;
 		validationRound = 0;
 		state = STATE.OPEN;
+		metrics = new OracleMetrics(search, VALIDATION_ROUNDS);
+		publish();
+	}
+
+	/**
+	 * Shares the rounds of the generator with the workers of the cluster,
+	 * while it is running. Solving and reduction stay in this process.
+	 *
+	 * @param cluster
+	 */
+	public void distribute(SeedCluster cluster) {
+		this.cluster = cluster;
 	}
 
 	/**
@@ -179,22 +312,77 @@ public class Oracle {
 	 * @param bound
 	 */
 	public void calledNextInt(int value, int bound) {
-		calledNextInt(r -> r.nextInt(bound) == value, bound);
+		calledNextIntIn(SeedKernel.only(value), bound);
+	}
+
+	/**
+	 * This should be called when the random object has experienced a
+	 * nextInt(bound) call which produced one of a set of values. The set is
+	 * a mask as described in SeedKernel.
+	 *
+	 * @param mask - the accepted values
+	 * @param bound
+	 */
+	public void calledNextIntIn(long mask, int bound) {
+		called(Constraint.nextInt(bound, mask));
+	}
+
+	/**
+	 * This should be called when the random object has experienced a call
+	 * described by the constraint. Only a call which produced a single known
+	 * value is counted as reducing the space of seeds.
+	 *
+	 * @param constraint
+	 */
+	public void called(Constraint constraint) {
+		try {
+			if (cursor != null) {
+				final boolean failed = cursor.isFailed();
+				follow(failed, cursor.advance(constraint));
+				return;
+			}
+
+			calls.add(constraint);
+			collectSeeds();
+			if (constraint.reduction() > 1) {
+				state.calledNextInt(this);
+			}
+			else if (!constraint.isSkip()) {
+				state.observed(this);
+			}
+			publish();
+		}
+		catch (Exception e) {
+			logger.error("Failed to add call", e);
+		}
+		catch (Throwable e) {
+			logger.error("Catastrophic error when adding call", e);
+			System.exit(1);
+		}
 	}
 
 	/**
 	 * This should be called when the random object has experienced a method
-	 * call which cannot be limited to a single value.
+	 * call which cannot be described by a Constraint. This is much slower, as
+	 * every seed must be tested with a Random object.
 	 *
 	 * @param call
 	 * @param bound
 	 */
 	public void calledNextInt(Function<Random, Boolean> call, int bound) {
 		try {
+			if (cursor != null) {
+				final boolean failed = cursor.isFailed();
+				follow(failed, cursor.advance(call));
+				return;
+			}
+
 			calls.add(call, bound);
+			collectSeeds();
 			if (bound > 1) {
 				state.calledNextInt(this);
 			}
+			publish();
 		}
 		catch (Exception e) {
 			logger.error("Failed to add call", e);
@@ -205,12 +393,44 @@ public class Oracle {
 		}
 	}
 
+	/**
+	 * Reports the result of applying a call to the cursor.
+	 *
+	 * @param failed
+	 *            - if the cursor had failed before the call.
+	 * @param follows
+	 *            - if the cursor follows the Random object after the call.
+	 */
+	private void follow(boolean failed, boolean follows) {
+		if (!failed && !follows) {
+			logger.warn(String.format("Oracle fixed seed fails call %s, searching for the missed calls", formatter.format(cursor.calls() + 1)));
+		}
+		else if (failed && follows) {
+			logger.info(String.format("Oracle resynchronised at call %s with an offset of %s", formatter.format(cursor.calls()), cursor.lastOffset()));
+		}
+		else if (failed && cursor.isLost() && !lostReported) {
+			logger.error("Oracle fixed seed cannot be resynchronised");
+			lostReported = true;
+		}
+	}
+
 	/**
 	 * A method which can be called to allow the Oracle to search the available
 	 * seed space.
 	 */
 	public void tick() {
+		collectSeeds();
+		startCascade();
 		state.tick(this);
+		publish();
+	}
+
+	/**
+	 * Stops any running search and releases the seeds.
+	 */
+	public void shutdown() {
+		search.shutdown();
+		seeds.close();
 	}
 
 	/**
@@ -221,10 +441,19 @@ public class Oracle {
 	}
 
 	/**
-	 * @return - if the oracle has fixated on a single seed.
+	 * @return - the progress of the Oracle, which can be read from any thread.
+	 */
+	public OracleMetrics metrics() {
+		return metrics;
+	}
+
+	/**
+	 * @return - if the oracle has fixated on a single seed, and the seed
+	 *         follows the calls. A fixed Oracle stops being fixed while it
+	 *         searches for calls that were missed.
 	 */
 	public boolean isFixed() {
-		return state == STATE.FIXED;
+		return state == STATE.FIXED && !cursor.isFailed();
 	}
 
 	/**
@@ -240,6 +469,106 @@ public class Oracle {
 		return state.getRandom(this);
 	}
 
+	/**
+	 * Describes the fixed seed so that the Random objects created alongside it
+	 * can be searched for.
+	 *
+	 * @param sibling
+	 *            - the Random object that the seed belongs to.
+	 * @return
+	 * @throws IllegalStateException
+	 *             - if the Oracle is not fixed.
+	 */
+	public SeedCascade cascade(SeedCascade.Sibling sibling) {
+		checkState(state == STATE.FIXED, "Oracle has not fixated");
+		return new SeedCascade(fixedSeed, creationOrdinal(fixedSeed), sibling);
+	}
+
+	/**
+	 * Searches for the seed close to the seed of another Oracle. The cascade
+	 * waits for any round that is running to complete, and for enough calls
+	 * that few seeds are expected to pass it, and is then searched once. The
+	 * seeds that are found are reduced by the following calls. The Oracle
+	 * must still be open, so that no seeds are discarded.
+	 *
+	 * @param cascade
+	 * @param sibling
+	 *            - the Random object that this Oracle follows.
+	 */
+	public void searchCascade(SeedCascade cascade, SeedCascade.Sibling sibling) {
+		if (state != STATE.OPEN) {
+			return;
+		}
+
+		this.cascade = cascade;
+		cascadeSibling = sibling;
+		startCascade();
+		publish();
+	}
+
+	/**
+	 * Starts the cascade that is waiting, once no search is running and few
+	 * enough seeds are expected to pass it.
+	 *
+	 * @return - if the cascade was started.
+	 */
+	private boolean startCascade() {
+		final SeedKernel kernel = calls.kernel();
+		if (cascade == null || state != STATE.OPEN || kernel == null || search.isSearching()
+				|| calls.estimatedSize(cascade.size()) >= SIZE_TRANSITION_LIMIT) {
+			return false;
+		}
+
+		final SeedCascade cascade = this.cascade;
+		final SeedCascade.Sibling sibling = cascadeSibling;
+		this.cascade = null;
+
+		solving = true;
+		search.submit(-1, calls.operations(), progress -> {
+			logger.info(String.format("Searching for %s #%s from %s", sibling, cascade.ordinalOf(sibling), cascade));
+			long startTime = System.currentTimeMillis();
+
+			final long[] found = cascade.search(sibling, kernel, progress);
+
+			logger.info(String.format("Cascade %s in %s ms, %s seeds pass", progress.isCancelled() ? "cancelled" : "completed",
+					formatter.format(System.currentTimeMillis() - startTime), formatter.format(found.length)));
+			return found.length <= SIZE_TRANSITION_LIMIT ? found : new long[0];
+		}, cascade.size());
+
+		// A direct executor completes the search during submission
+		collectSeeds();
+		return true;
+	}
+
+	/**
+	 * Captures the progress of the Oracle so that it can be inspected. A
+	 * search that is running is not included.
+	 *
+	 * @return
+	 * @throws IllegalStateException
+	 *             - if a call was not recorded as a Constraint.
+	 */
+	public Checkpoint checkpoint() {
+		final List<Constraint> constraints = calls.constraints();
+
+		final long[][] windows = new long[SeedGenerator.seedUniquifierValues.size()][];
+		for (int i = 0; i < windows.length; i++) {
+			windows[i] = new long[0];
+		}
+		for (List<SeedWindow> scanned : rounds.subList(0, Math.min(round, rounds.size()))) {
+			for (SeedWindow window : scanned) {
+				final long[] times = windows[window.ordinal()];
+
+				windows[window.ordinal()] = Arrays.copyOf(times, times.length + 2);
+				windows[window.ordinal()][times.length] = window.from();
+				windows[window.ordinal()][times.length + 1] = window.to();
+			}
+		}
+
+		return new Checkpoint(Checkpoint.currentSession(), startingTime, round, solvedCalls, validationRound, state.name(), fixedSeed,
+				cursor != null ? cursor.state() : 0, cursor != null ? cursor.calls() : 0, constraints, windows, seeds.toArray());
+	}
+
 	/**
 	 * Transition the state of the Oracle.
 	 * 
@@ -250,7 +579,46 @@ public class Oracle {
 
 		this.state = state;
 		if (state == STATE.FIXED) {
-			fixedSeed = seeds.iterator().next();
+			fixedSeed = seeds.get(0);
+			cursor = SeedCursor.replay(fixedSeed, calls);
+
+			final int ordinal = creationOrdinal(fixedSeed);
+			prior.observe(ordinal, SeedKernel.extractTimeDifference(SeedKernel.scramble(fixedSeed), startingTime, SeedGenerator.seedUniquifierValues.get(ordinal)));
+		}
+	}
+
+	/**
+	 * Copies the progress of the Oracle to the metrics.
+	 */
+	private void publish() {
+		final long calls = cursor != null ? cursor.calls() : this.calls.operations();
+		metrics.publish(state.name(), calls, seeds.size(), size(), this.calls.information(), expectedSurvivors(), round, rounds.size(), validationRound);
+	}
+
+	/**
+	 * @return - the number of seeds expected to pass the calls in the next
+	 *         round of the generator.
+	 */
+	long expectedSurvivors() {
+		final long size = round < rounds.size() ? rounds.get(round).stream().mapToLong(SeedWindow::size).sum() : SeedGenerator.batchSize();
+		return calls.estimatedSize(size);
+	}
+
+	/**
+	 * Starts a search once it is the cheapest moment to hold the seeds that
+	 * pass. A round costs the same however many calls have been recorded, as
+	 * nearly every seed fails the first call, but every seed that passes must
+	 * be held and reduced by each later call. The round is therefore searched
+	 * as soon as few enough seeds are expected to pass it. A pipelined round
+	 * applies the later calls while it runs, so it starts with the first
+	 * informative call. A cascade that is waiting is started first.
+	 */
+	private void materialize() {
+		if (startCascade()) {
+			return;
+		}
+		if (search.isConcurrent() && calls.kernel() != null || expectedSurvivors() < SIZE_TRANSITION_LIMIT) {
+			processSeeds();
 		}
 	}
 
@@ -259,40 +627,206 @@ public class Oracle {
 	 */
 	private void processSeeds() {
 		if (seeds.isEmpty()) {
-			calculateSeeds();
+			searchSeeds();
 		}
 		else {
 			reduceSeeds();
+			checkSeeds();
 		}
+	}
 
+	/**
+	 * Transitions to validation when a single seed remains.
+	 */
+	private void checkSeeds() {
 		if (seeds.size() == 1) {
 			validationRound = 0;
 			setState(STATE.VALIDATING);
 		}
 	}
 
+	/**
+	 * Submits a search for seeds.
+	 * 
+	 * A pipelined round is started by the first informative call, and the
+	 * calls that arrive while it runs are applied to it as they arrive.
+	 * 
+	 * A running generator round is not restarted when more calls arrive.
+	 * Nearly every seed fails the first call, so the new calls would not make
+	 * the round faster, and the seeds it finds are reduced with the new calls
+	 * when they are collected. The round is stale, and is cancelled, when the
+	 * new calls allow the state to be solved instead.
+	 */
+	private void searchSeeds() {
+		final boolean solve = round >= SOLVER_ROUND_LIMIT && calls.operations() > solvedCalls && canSolve();
+		if (search.isSearching() && (solving || !solve)) {
+			return;
+		}
+
+		if (solve) {
+			solveSeeds();
+		}
+		else {
+			calculateSeeds();
+		}
+
+		// A direct executor completes the search during submission
+		collectSeeds();
+	}
+
+	/**
+	 * Collects the seeds from a completed search. The search may have tested
+	 * fewer calls than are now available, in which case the seeds are reduced.
+	 */
+	private void collectSeeds() {
+		final SeedSearch.Result result = search.collect();
+		if (result == null) {
+			return;
+		}
+
+		if (result.round() >= 0) {
+			round = result.round() + 1;
+		}
+		seeds.set(result.seeds());
+
+		if (result.calls() < calls.operations() && !seeds.isEmpty()) {
+			reduceSeeds();
+		}
+
+		if (state == STATE.OPEN && seeds.size() > 1) {
+			setState(STATE.LIMITED);
+		}
+		else if (state == STATE.OPEN || state == STATE.LIMITED) {
+			checkSeeds();
+		}
+	}
+
 	/**
 	 * This calculates the seeds from the starting range and uniquifiers and
-	 * filters them against the existing calls. The surviving seeds are stored.
+	 * filters them against the existing calls. The surviving seeds are
+	 * published by the search.
+	 * 
+	 * When the search runs on another thread the round is filtered with a
+	 * SeedPipeline, which also applies the calls that arrive during the round.
+	 * If the Oracle shares a SeedScanner created at the same time, the pipeline is fed by the scan that the scanner shares between
+	 * the Oracles. If the Oracle is distributed over a running SeedCluster the
+	 * round is shared with its workers instead, and the calls that arrive
+	 * during the round are applied when the seeds are collected.
 	 */
 	private void calculateSeeds() {
-		try {
-			logger.info(String.format("Performing round %s filter of %s seeds", formatter.format(round), formatter.format(SeedGenerator.size())));
+		if (round >= rounds.size()) {
+			logger.info(String.format("All %s rounds have been searched", formatter.format(rounds.size())));
+			return;
+		}
+
+		final int round = this.round;
+		final List<SeedWindow> windows = rounds.get(round);
+		final long size = windows.stream().mapToLong(SeedWindow::size).sum();
+		final SeedKernel kernel = calls.kernel();
+		final LongPredicate test = calls.snapshot();
+		final SeedPipeline pipeline = search.isConcurrent() ? new SeedPipeline(generator, calls::kernel, PIPELINE_CAPACITY, SIZE_TRANSITION_LIMIT) : null;
+		final SeedScanner scanner = this.scanner != null && this.scanner.startingTime() == startingTime ? this.scanner : null;
+		final SeedCluster cluster = kernel != null && this.cluster != null && this.cluster.isRunning() ? this.cluster : null;
+		final SeedTest snapshot = cluster != null ? new SeedTest(calls.constraints()) : null;
+
+		solving = false;
+		search.submit(round, calls.operations(), progress -> {
+			logger.info(String.format("Performing round %s filter of %s seeds", formatter.format(round), formatter.format(size)));
 			long startTime = System.currentTimeMillis();
 
-			seeds = generator.stream(round).parallel().filter(calls::test).mapToObj(seed -> seed).collect(Collectors.toSet());
-			round++;
+			final long[] result;
+			if (cluster != null) {
+				result = cluster.filter(windows, snapshot, progress);
+			}
+			else if (kernel != null && pipeline != null && scanner != null) {
+				result = scanner.scan(round, pipeline, progress);
+			}
+			else if (kernel != null && pipeline != null) {
+				result = pipeline.run(windows, progress);
+			}
+			else if (kernel != null) {
+				result = generator.filter(windows, kernel, progress);
+			}
+			else {
+				result = SeedGenerator.stream(windows).parallel().filter(seed -> !progress.isCancelled() && test.test(seed)).toArray();
+			}
 
-			logger.info(String.format("Filtering completed in %s ms, %s seeds remain", formatter.format(System.currentTimeMillis() - startTime),
-					formatter.format(seeds.size())));
-		}
-		catch (Exception e) {
-			logger.error("Failed to calculate seeds", e);
-		}
-		catch (Throwable e) {
-			logger.error("Catastrophic error when calculating seeds", e);
-			System.exit(1);
+			logger.info(String.format("Filtering %s in %s ms, %s seeds remain", progress.isCancelled() ? "cancelled" : "completed",
+					formatter.format(System.currentTimeMillis() - startTime), formatter.format(result.length)));
+			return result;
+		}, size);
+	}
+
+	/**
+	 * @return - if the calls are suitable for the StateSolver.
+	 */
+	private boolean canSolve() {
+		final SeedKernel kernel = calls.kernel();
+		return kernel != null && new StateSolver(kernel).canSolve();
+	}
+
+	/**
+	 * This solves for the seeds directly from the calls. This does not depend
+	 * on the time that the Random object was created, so it can find seeds
+	 * that are outside of the rounds that the generator has covered.
+	 */
+	private void solveSeeds() {
+		final StateSolver solver = new StateSolver(calls.kernel());
+
+		final int operations = calls.operations();
+
+		solving = true;
+		solvedCalls = operations;
+		// The size of the solve is not known in advance, so the progress is
+		// always complete and the solve is never restarted
+		search.submit(-1, operations, progress -> {
+			logger.info(String.format("Solving for state with %s calls", formatter.format(operations)));
+			long startTime = System.currentTimeMillis();
+
+			final long[] result = solver.solveSeeds(progress);
+
+			logger.info(String.format("Solving %s in %s ms, %s seeds remain", progress.isCancelled() ? "cancelled" : "completed",
+					formatter.format(System.currentTimeMillis() - startTime), formatter.format(result.length)));
+			for (long seed : result) {
+				logCreationTime(seed);
+			}
+			return result;
+		}, 0);
+	}
+
+	/**
+	 * A solved seed does not reveal which uniquifier was used to create it.
+	 * This logs the uniquifier that places the creation time closest to the
+	 * creation of the Oracle.
+	 *
+	 * @param seed
+	 */
+	private void logCreationTime(long seed) {
+		final int ordinal = creationOrdinal(seed);
+		final long difference = SeedKernel.extractTimeDifference(SeedKernel.scramble(seed), startingTime, SeedGenerator.seedUniquifierValues.get(ordinal));
+
+		logger.info(String.format("Seed %s was most likely created by uniquifier #%s, %s ns before the Oracle", seed, ordinal, formatter.format(difference)));
+	}
+
+	/**
+	 * @param seed
+	 * @return - the ordinal of the uniquifier that places the creation time
+	 *         closest to the creation of the Oracle.
+	 */
+	private int creationOrdinal(long seed) {
+		int ordinal = 0;
+		long difference = Long.MAX_VALUE;
+
+		for (int i = 0; i < SeedGenerator.seedUniquifierValues.size(); i++) {
+			final long uniquifier = SeedGenerator.seedUniquifierValues.get(i);
+			final long current = Math.abs(SeedKernel.extractTimeDifference(SeedKernel.scramble(seed), startingTime, uniquifier));
+
+			if (current < difference) {
+				ordinal = i;
+				difference = current;
+			}
 		}
+		return ordinal;
 	}
 
 	/**
@@ -304,7 +838,7 @@ public class Oracle {
 			logger.info(String.format("Performing reduction of %s seeds", formatter.format(seeds.size())));
 			long startTime = System.currentTimeMillis();
 
-			seeds = seeds.stream().filter(calls::test).collect(Collectors.toSet());
+			seeds.reduce(calls.snapshot());
 
 			logger.info(String.format("Reduction completed in %s ms, %s seeds remain", formatter.format(System.currentTimeMillis() - startTime),
 					formatter.format(seeds.size())));
@@ -332,14 +866,17 @@ public class Oracle {
 	 */
 	private static enum STATE {
 		/**
-		 * The OPEN state is when no attempt to filter the seeds has been
-		 * performed. At this point the size value is an estimate. When a new
-		 * call comes in which reduces the estimate below a transition
-		 * threshold, the seeds will be filtered and the Oracle will transition
-		 * into the next state.
+		 * The OPEN state is when no seeds have been collected. At this point
+		 * the size value is an estimate. When the search runs on another
+		 * thread the first informative call starts a pipelined search, which
+		 * filters with each call as it arrives. Otherwise a search is
+		 * submitted when the calls reduce the seeds expected to pass the next
+		 * round below a transition threshold, counting every call that
+		 * restricts the values. When the search completes the seeds are
+		 * collected and the Oracle will transition into the next state.
 		 * 
-		 * The next state is likely to be LIMITED, but can be FIXED if only a
-		 * single seed passed the filter.
+		 * The next state is likely to be LIMITED, but can be VALIDATING if only
+		 * a single seed passed the filter.
 		 */
 		OPEN {
 
@@ -349,14 +886,13 @@ public class Oracle {
 			}
 
 			@Override
-			public void calledNextInt(Oracle oracle) {
-				if (oracle.size() < SIZE_TRANSITION_LIMIT) {
-					oracle.processSeeds();
+			public void observed(Oracle oracle) {
+				oracle.materialize();
+			}
 
-					if (oracle.seeds.size() > 1) {
-						oracle.setState(LIMITED);
-					}
-				}
+			@Override
+			public void calledNextInt(Oracle oracle) {
+				oracle.materialize();
 			}
 		},
 		/**
@@ -420,7 +956,9 @@ public class Oracle {
 		},
 		/**
 		 * The FIXED state is when the seeds have been filtered to a single
-		 * value. At this point the Random object can be requested.
+		 * value. At this point the Random object can be requested. The calls
+		 * are applied to the cursor, which makes the copies, and are no longer
+		 * recorded.
 		 * 
 		 * This is the only state that will return a size of 1.
 		 */
@@ -433,10 +971,7 @@ public class Oracle {
 
 			@Override
 			public Random getRandom(Oracle oracle) {
-				Random result = new Random(oracle.fixedSeed);
-				checkState(oracle.calls.test(result), "Oracle fixed seed fails known tests");
-
-				return result;
+				return oracle.cursor.random();
 			}
 		};
 
@@ -469,6 +1004,16 @@ public class Oracle {
 		public void calledNextInt(Oracle oracle) {
 		}
 
+		/**
+		 * This is called for every call which restricts the values that the
+		 * Random object produced, but which does not count as a reducing
+		 * call. Those calls are provided to calledNextInt instead.
+		 * 
+		 * @param oracle
+		 */
+		public void observed(Oracle oracle) {
+		}
+
 		/**
 		 * This provides the ability to perform a unit of work related to
 		 * searching for the seed.
@@ -0,0 +1,141 @@
+package xyz.rjs.brandwatch.supermarkets.logistics.plugins.bad;
+
+/**
+ * This publishes the progress of an Oracle so that it can be read while the
+ * Oracle is running, such as over JMX.
+ *
+ * The Oracle is only safe to use from the event thread. It publishes a copy
+ * of its state here after every call and tick, and the copy can be read from
+ * any thread without locking. Each copy is a single Snapshot, so the values
+ * read from one Snapshot always belong to the same call. The progress of a running search is read from
+ * the SearchProgress, which the search thread updates as it goes.
+ *
+ * @author matthew
+ */
+public class OracleMetrics implements OracleMetricsMXBean {
+
+	private final SeedSearch search;
+
+	private final int validationRounds;
+
+	private volatile Snapshot snapshot;
+
+	/**
+	 * The state of the Oracle after a call or tick.
+	 */
+	private static final class Snapshot {
+
+		private final String state;
+
+		private final int round, rounds, validationRound;
+
+		private final long calls, survivors, estimatedSize, expectedSurvivors;
+
+		private final double information;
+
+		Snapshot(String state, long calls, long survivors, long estimatedSize, double information, long expectedSurvivors, int round, int rounds,
+				int validationRound) {
+			this.state = state;
+			this.calls = calls;
+			this.survivors = survivors;
+			this.estimatedSize = estimatedSize;
+			this.information = information;
+			this.expectedSurvivors = expectedSurvivors;
+			this.round = round;
+			this.rounds = rounds;
+			this.validationRound = validationRound;
+		}
+	}
+
+	/**
+	 * @param search
+	 *            - the search of the Oracle.
+	 * @param validationRounds
+	 */
+	OracleMetrics(SeedSearch search, int validationRounds) {
+		this.search = search;
+		this.validationRounds = validationRounds;
+		snapshot = new Snapshot("", 0, 0, 0, 0, 0, 0, 0, 0);
+	}
+
+	/**
+	 * Publishes the state of the Oracle. This is only called by the Oracle.
+	 */
+	void publish(String state, long calls, long survivors, long estimatedSize, double information, long expectedSurvivors, int round, int rounds,
+			int validationRound) {
+		snapshot = new Snapshot(state, calls, survivors, estimatedSize, information, expectedSurvivors, round, rounds, validationRound);
+	}
+
+	@Override
+	public String getState() {
+		return snapshot.state;
+	}
+
+	@Override
+	public long getCalls() {
+		return snapshot.calls;
+	}
+
+	@Override
+	public long getSurvivors() {
+		return snapshot.survivors;
+	}
+
+	@Override
+	public long getEstimatedSize() {
+		return snapshot.estimatedSize;
+	}
+
+	@Override
+	public double getInformation() {
+		return snapshot.information;
+	}
+
+	@Override
+	public long getExpectedSurvivors() {
+		return snapshot.expectedSurvivors;
+	}
+
+	@Override
+	public int getRound() {
+		return snapshot.round;
+	}
+
+	@Override
+	public int getRounds() {
+		return snapshot.rounds;
+	}
+
+	@Override
+	public boolean isSearching() {
+		return search.isSearching();
+	}
+
+	@Override
+	public double getScanRate() {
+		final SearchProgress progress = search.progress();
+		return progress == null ? 0 : progress.rate();
+	}
+
+	@Override
+	public double getSearchProgress() {
+		final SearchProgress progress = search.progress();
+		return progress == null ? 0 : progress.fraction();
+	}
+
+	@Override
+	public long getSearchRemainingMillis() {
+		final SearchProgress progress = search.progress();
+		return progress == null ? -1 : progress.remainingMillis();
+	}
+
+	@Override
+	public int getValidationRound() {
+		return snapshot.validationRound;
+	}
+
+	@Override
+	public int getValidationRounds() {
+		return validationRounds;
+	}
+}
@@ -0,0 +1,88 @@
+package xyz.rjs.brandwatch.supermarkets.logistics.plugins.bad;
+
+/**
+ * The view of an Oracle published over JMX. See OracleMetrics.
+ *
+ * @author matthew
+ */
+public interface OracleMetricsMXBean {
+
+	/**
+	 * @return - the name of the state of the Oracle.
+	 */
+	String getState();
+
+	/**
+	 * @return - the number of calls that have been recorded.
+	 */
+	long getCalls();
+
+	/**
+	 * @return - the number of seeds that passed the last search and every
+	 *         call since.
+	 */
+	long getSurvivors();
+
+	/**
+	 * @return - the size reported by the Oracle, which is an estimate while
+	 *         it is open.
+	 */
+	long getEstimatedSize();
+
+	/**
+	 * @return - the information held by the recorded calls, in bits. See
+	 *         SeedTest.
+	 */
+	double getInformation();
+
+	/**
+	 * @return - the number of seeds expected to pass the recorded calls in
+	 *         the next round of the seed generator. The Oracle searches the
+	 *         round once this is small enough.
+	 */
+	long getExpectedSurvivors();
+
+	/**
+	 * @return - the next round of the seed generator.
+	 */
+	int getRound();
+
+	/**
+	 * @return - the number of rounds of the seed generator.
+	 */
+	int getRounds();
+
+	/**
+	 * @return - if a search is running.
+	 */
+	boolean isSearching();
+
+	/**
+	 * @return - the number of seeds tested per second by the running search,
+	 *         or 0 if there is none.
+	 */
+	double getScanRate();
+
+	/**
+	 * @return - the fraction of the seeds that the running search has tested,
+	 *         or 0 if there is none.
+	 */
+	double getSearchProgress();
+
+	/**
+	 * @return - the estimated time until the running search has tested every
+	 *         seed, or -1 if it is not known.
+	 */
+	long getSearchRemainingMillis();
+
+	/**
+	 * @return - the number of calls that the single remaining seed has passed
+	 *         while validating.
+	 */
+	int getValidationRound();
+
+	/**
+	 * @return - the number of calls that the seed must pass to be fixed.
+	 */
+	int getValidationRounds();
+}
@@ -1,8 +1,19 @@
 package xyz.rjs.brandwatch.supermarkets.logistics.plugins.bad;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.Random;
 import java.util.function.Function;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.management.ObjectName;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+
 import xyz.rjs.brandwatch.supermarkets.logistics.plugins.AbstractPlugin;
 import xyz.rjs.brandwatch.supermarkets.model.events.ClockTick;
 
@@ -10,18 +21,92 @@ import com.google.common.eventbus.Subscribe;
 
 
 /**
+ * When the supermarkets.oracle.checkpoints system property names a directory
+ * the wrapper writes a checkpoint of the Oracle there every hundred ticks and
+ * when it is shut down, so that the progress of a run can be inspected. See
+ * Checkpoint.
+ * 
+ * The metrics of the Oracle are registered over JMX while the wrapper is
+ * running, named after the wrapper. See OracleMetrics.
+ * 
  * @author matthew
  *
  */
 public class OracleWrapper extends AbstractPlugin {
 
+	private static final Logger logger = LoggerFactory.getLogger(OracleWrapper.class);
+
+	/**
+	 * The system property naming the directory which holds the checkpoints.
+	 * Checkpoints are not written when it is not set.
+	 */
+	static final String CHECKPOINT_DIRECTORY_PROPERTY = "supermarkets.oracle.checkpoints";
+
+	/**
+	 * The system property naming the file which holds the seeds found by
+	 * previous runs. This is shared by every Oracle. Seeds are only kept in
+	 * memory when it is not set.
+	 */
+	static final String PRIOR_FILE_PROPERTY = "supermarkets.oracle.prior";
+
+	/**
+	 * The number of ticks between checkpoints.
+	 */
+	private static final int CHECKPOINT_INTERVAL = 100;
+
 	private final Oracle oracle;
 
 	private final int bound;
 
-	public OracleWrapper(int bound) {
-		oracle = new Oracle();
+	/**
+	 * The Random object of the simulation that the Oracle follows.
+	 */
+	private final SeedCascade.Sibling sibling;
+
+	/**
+	 * The checkpoint file, or null if checkpoints are not written.
+	 */
+	private final Path checkpoint;
+
+	private int ticks;
+
+	/**
+	 * The name the metrics are registered with, or null if they are not.
+	 */
+	private ObjectName metricsName;
+
+	public OracleWrapper(int bound, SeedCascade.Sibling sibling) {
+		this(new Oracle(new SeedSearch(), prior()), bound, sibling);
+	}
+
+	/**
+	 * Creates a wrapper whose Oracle shares the scan of each round with the
+	 * other Oracles of the scanner.
+	 * 
+	 * @param bound
+	 * @param sibling
+	 * @param scanner
+	 */
+	public OracleWrapper(int bound, SeedCascade.Sibling sibling, SeedScanner scanner) {
+		this(new Oracle(new SeedSearch(), scanner), bound, sibling);
+	}
+
+	private OracleWrapper(Oracle oracle, int bound, SeedCascade.Sibling sibling) {
+		this.oracle = oracle;
 		this.bound = bound;
+		this.sibling = sibling;
+		final String directory = System.getProperty(CHECKPOINT_DIRECTORY_PROPERTY);
+		checkpoint = directory != null ? Paths.get(directory, getClass().getSimpleName() + ".checkpoint") : null;
+		ticks = 0;
+	}
+
+	/**
+	 * @return - the prior loaded from the file named by the prior property, or
+	 *         one which is only kept in memory if the property is not set.
+	 */
+	static SeedPrior prior() {
+		final String file = System.getProperty(PRIOR_FILE_PROPERTY);
+		return file != null ? SeedPrior.load(Paths.get(file)) : SeedPrior.defaults();
 	}
 
 	public boolean isFixed() {
@@ -32,9 +117,75 @@ public class OracleWrapper extends AbstractPlugin {
 		return oracle.getRandom();
 	}
 
+	/**
+	 * @return - the fixed seed, from which the other Random objects of the
+	 *         simulation can be searched for.
+	 * @throws IllegalStateException
+	 *             - if the Oracle is not fixed.
+	 */
+	public SeedCascade cascade() {
+		return oracle.cascade(sibling);
+	}
+
+	/**
+	 * Searches for the seed of this Oracle close to the seed of another.
+	 *
+	 * @param cascade
+	 */
+	public void searchCascade(SeedCascade cascade) {
+		oracle.searchCascade(cascade, sibling);
+	}
+
+	/**
+	 * Shares the rounds of the Oracle with the workers of the cluster. See
+	 * SeedCluster.
+	 *
+	 * @param cluster
+	 */
+	@Autowired(required = false)
+	public void setCluster(SeedCluster cluster) {
+		oracle.distribute(cluster);
+	}
+
+	/**
+	 * @return - the progress of the Oracle, which can be read from any thread.
+	 */
+	public OracleMetrics metrics() {
+		return oracle.metrics();
+	}
+
+	@PostConstruct
+	public void register() {
+		metricsName = Metrics.register("Oracle", getClass().getSimpleName(), oracle.metrics());
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		Metrics.unregister(metricsName);
+		checkpoint();
+		oracle.shutdown();
+	}
+
 	@Subscribe
 	public void tickListener(ClockTick tick) {
 		oracle.tick();
+
+		if (++ticks % CHECKPOINT_INTERVAL == 0 && checkpoint != null) {
+			checkpoint();
+		}
+	}
+
+	private void checkpoint() {
+		if (checkpoint == null) {
+			return;
+		}
+
+		try {
+			oracle.checkpoint().write(checkpoint);
+		}
+		catch (IOException | IllegalStateException e) {
+			logger.warn(String.format("Failed to write checkpoint %s", checkpoint), e);
+		}
 	}
 
 	protected void calledNextInt(Function<Random, Boolean> call) {
@@ -44,4 +195,52 @@ public class OracleWrapper extends AbstractPlugin {
 	protected void calledNextInt(int value) {
 		oracle.calledNextInt(value, bound);
 	}
+
+	/**
+	 * Records a call described by a constraint.
+	 *
+	 * @param constraint
+	 */
+	protected void called(Constraint constraint) {
+		oracle.called(constraint);
+	}
+
+	/**
+	 * Records a call that produced any value other than the one provided.
+	 *
+	 * @param value
+	 */
+	protected void calledNextIntExcept(int value) {
+		oracle.called(Constraint.nextIntExcept(bound, value));
+	}
+
+	/**
+	 * Records a call with a different bound which was not observed.
+	 *
+	 * @param bound
+	 */
+	protected void skippedNextInt(int bound) {
+		oracle.called(Constraint.skipNextInt(bound));
+	}
+
+	/**
+	 * Records a nextDouble() call which was compared with the probability.
+	 *
+	 * @param probability
+	 * @param below
+	 *            - if the value was below the probability.
+	 */
+	protected void calledNextDouble(double probability, boolean below) {
+		oracle.called(Constraint.nextDouble(probability, below));
+	}
+
+	/**
+	 * Records calls which were not observed and which consumed a known number
+	 * of values. See Constraint.skip.
+	 *
+	 * @param steps
+	 */
+	protected void skipped(long steps) {
+		oracle.called(Constraint.skip(steps));
+	}
 }
@@ -1,5 +1,9 @@
 package xyz.rjs.brandwatch.supermarkets.logistics.plugins.bad;
 
+import java.util.OptionalInt;
+import java.util.Random;
+
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 import xyz.rjs.brandwatch.supermarkets.model.events.PriceList;
@@ -15,32 +19,57 @@ import com.google.common.eventbus.Subscribe;
 public class PriceOracle extends OracleWrapper {
 
 	public static final int RISING_PRICE_VALUE = 0;
-	private static final int PRICE_BOUND = 3;
+	static final int PRICE_BOUND = 3;
+
+	/**
+	 * The Supplier distance is 20 + (Random.nextInt(10) - 5).
+	 */
+	private static final int DISTANCE_BASE = 15;
+	static final int DISTANCE_BOUND = 10;
 
 	private int price;
 
-	public PriceOracle() {
-		super(PRICE_BOUND);
+	@Autowired
+	public PriceOracle(SeedScanner scanner) {
+		super(PRICE_BOUND, SeedCascade.Sibling.SUPPLIER, scanner);
 		price = 1;
-		calledNextInt(r -> { r.nextInt(10); return true; }); // The random object is called once during the initialization
+		skippedNextInt(DISTANCE_BOUND); // The random object is called once during the initialization
+	}
+
+	/**
+	 * @return - the distance of the Supplier from the Warehouse, once the
+	 *         Oracle is fixed.
+	 */
+	public OptionalInt distance() {
+		if (!isFixed()) {
+			return OptionalInt.empty();
+		}
+		return OptionalInt.of(DISTANCE_BASE + new Random(cascade().seed()).nextInt(DISTANCE_BOUND));
 	}
 
 	@Subscribe
 	public void priceListListener(PriceList list) {
+		called(priceChange(price, list.getCurrentPrice()));
+		price = list.getCurrentPrice();
+	}
+
+	/**
+	 * @param price
+	 *            - the price before the PriceList.
+	 * @param current
+	 *            - the price in the PriceList.
+	 * @return - the nextInt(3) call which produced the PriceList.
+	 */
+	static Constraint priceChange(int price, int current) {
 		// The change is 1 - Random.nextInt(3).
 		// To reverse this we need the oldPrice - newPrice (the change) plus one:
 		// new_price = old_price + 1 - random
 		// random    = old_price + 1 - new_price
 
-		final int value = price + 1 - list.getCurrentPrice();
-
-		if (price == 1 && list.getCurrentPrice() == 1) {
+		if (price == 1 && current == 1) {
 			// When the price is 1 the price cannot go down. This means that the number can only not be 0.
-			calledNextInt(r -> r.nextInt(PRICE_BOUND) != RISING_PRICE_VALUE);
+			return Constraint.nextIntExcept(PRICE_BOUND, RISING_PRICE_VALUE);
 		}
-		else {
-			calledNextInt(value);
-		}
-		price = list.getCurrentPrice();
+		return Constraint.nextIntEquals(PRICE_BOUND, price + 1 - current);
 	}
 }
@@ -0,0 +1,33 @@
+package xyz.rjs.brandwatch.supermarkets.logistics.plugins.bad;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import xyz.rjs.brandwatch.supermarkets.model.events.PriceList;
+
+import com.google.common.eventbus.Subscribe;
+
+/**
+ * Determines the Random object backing the time of price changes based on
+ * PriceList events.
+ * 
+ * @author matthew
+ */
+@Component
+public class PriceProbabilityOracle extends ProbabilityOracle {
+
+	/**
+	 * The Supplier changes the price with this probability on every tick.
+	 */
+	static final double PRICE_PROBABILITY = 0.07;
+
+	@Autowired
+	public PriceProbabilityOracle(SeedScanner scanner) {
+		super(PRICE_PROBABILITY, SeedCascade.Sibling.SUPPLIER_PROBABILITY, scanner);
+	}
+
+	@Subscribe
+	public void priceListListener(PriceList list) {
+		occurred();
+	}
+}
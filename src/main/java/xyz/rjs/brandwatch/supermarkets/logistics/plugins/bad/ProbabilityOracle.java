@@ -0,0 +1,83 @@
+package xyz.rjs.brandwatch.supermarkets.logistics.plugins.bad;
+
+import java.util.Random;
+
+import xyz.rjs.brandwatch.supermarkets.model.events.ClockTick;
+
+import com.google.common.eventbus.Subscribe;
+
+/**
+ * Determines the Random object which decides when a probabilistic service
+ * fires.
+ *
+ * The service calls nextDouble() on every tick and fires when the value is
+ * below its probability. A tick with the event of the service shows that the
+ * value was below the probability, and a tick without it shows that the value
+ * was at or above it, so every tick is an observation. The event is posted
+ * after every listener has seen the tick, so each tick is recorded when the
+ * next tick arrives.
+ *
+ * Once fixed this predicts the tick on which the service will next fire.
+ *
+ * @author matthew
+ */
+public abstract class ProbabilityOracle extends OracleWrapper {
+
+	/**
+	 * The number of ticks that are searched for the next event.
+	 */
+	private static final int PREDICTION_LIMIT = 10_000;
+
+	private final double probability;
+
+	/**
+	 * The tick that is being observed, or -1 before the first tick.
+	 */
+	private int tick;
+
+	/**
+	 * If the service fired on the tick.
+	 */
+	private boolean occurred;
+
+	protected ProbabilityOracle(double probability, SeedCascade.Sibling sibling, SeedScanner scanner) {
+		super(1, sibling, scanner);
+		this.probability = probability;
+		tick = -1;
+	}
+
+	@Subscribe
+	public void probabilityListener(ClockTick tick) {
+		if (this.tick >= 0) {
+			calledNextDouble(probability, occurred);
+		}
+		this.tick = tick.getTick();
+		occurred = false;
+	}
+
+	/**
+	 * Records that the service fired on the current tick. Events before the
+	 * first tick do not come from the Random object and are ignored.
+	 */
+	protected void occurred() {
+		if (tick >= 0) {
+			occurred = true;
+		}
+	}
+
+	/**
+	 * @return - the next tick on which the service will fire. This can be the
+	 *         tick that is being observed, if its event has not arrived.
+	 * @throws IllegalStateException
+	 *             - if the Oracle is not fixed.
+	 */
+	public int nextOccurrence() {
+		final Random random = getRandom();
+
+		int next = tick;
+		for (int i = 0; i < PREDICTION_LIMIT && random.nextDouble() >= probability; i++) {
+			next++;
+		}
+		return next;
+	}
+}
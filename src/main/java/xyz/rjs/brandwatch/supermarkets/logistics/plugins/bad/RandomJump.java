@@ -0,0 +1,122 @@
+package xyz.rjs.brandwatch.supermarkets.logistics.plugins.bad;
+
+/**
+ * This moves the internal state of a Random object many calls at a time.
+ *
+ * A single call to next applies the affine map
+ * <code>state * multiplier + addend</code> modulo 2^48. Applying the map n
+ * times is another affine map, and the multiplier and addend of that map are
+ * found by repeated squaring in O(log n) multiplications. The map can be
+ * reversed with the inverse of the multiplier, so a state can also be moved
+ * back.
+ *
+ * This is only exact for calls which consume a known number of values. The
+ * nextInt(bound) rejection loop consumes an extra value for some states when
+ * the bound is not a power of two, so those calls cannot be jumped over.
+ *
+ * @author matthew
+ */
+public final class RandomJump {
+
+	/**
+	 * The jump over no calls.
+	 */
+	public static final RandomJump NONE = new RandomJump(0, 1, 0);
+
+	private final long steps;
+
+	private final long multiplier, addend;
+
+	private RandomJump(long steps, long multiplier, long addend) {
+		this.steps = steps;
+		this.multiplier = multiplier;
+		this.addend = addend;
+	}
+
+	/**
+	 * @param steps
+	 *            - the number of calls to next. A negative number moves the
+	 *            state back.
+	 * @return
+	 */
+	public static RandomJump of(long steps) {
+		if (steps >= 0) {
+			return power(steps, SeedKernel.MULTIPLIER, SeedKernel.ADDEND);
+		}
+		// The inverse of a step is state * inverse - addend * inverse
+		return power(-steps, SeedKernel.MULTIPLIER_INVERSE, -SeedKernel.ADDEND * SeedKernel.MULTIPLIER_INVERSE).withSteps(steps);
+	}
+
+	/**
+	 * @param state
+	 * @param steps
+	 * @return - the state after the number of calls to next.
+	 */
+	public static long advance(long state, long steps) {
+		return of(steps).apply(state);
+	}
+
+	/**
+	 * @param state
+	 * @param steps
+	 * @return - the state before the number of calls to next.
+	 */
+	public static long rewind(long state, long steps) {
+		return of(-steps).apply(state);
+	}
+
+	public long steps() {
+		return steps;
+	}
+
+	public long multiplier() {
+		return multiplier;
+	}
+
+	public long addend() {
+		return addend;
+	}
+
+	/**
+	 * @param state
+	 * @return - the state after the jump.
+	 */
+	public long apply(long state) {
+		return (state * multiplier + addend) & SeedKernel.MASK;
+	}
+
+	/**
+	 * @param state
+	 * @return - the state before the jump.
+	 */
+	public long invert(long state) {
+		return of(-steps).apply(state);
+	}
+
+	/**
+	 * Composes the map with itself by repeated squaring. The arithmetic
+	 * overflows a long, which is exact modulo 2^64 and so also modulo 2^48.
+	 */
+	private static RandomJump power(long steps, long multiplier, long addend) {
+		long resultMultiplier = 1, resultAddend = 0;
+
+		for (long remaining = steps; remaining > 0; remaining >>>= 1) {
+			if ((remaining & 1) != 0) {
+				resultMultiplier *= multiplier;
+				resultAddend = resultAddend * multiplier + addend;
+			}
+			addend = addend * multiplier + addend;
+			multiplier *= multiplier;
+		}
+		return new RandomJump(steps, resultMultiplier & SeedKernel.MASK, resultAddend & SeedKernel.MASK);
+	}
+
+	private RandomJump withSteps(long steps) {
+		return new RandomJump(steps, multiplier, addend);
+	}
+
+	@Override
+	public String toString() {
+		return String.format("jump %s", steps);
+	}
+}
@@ -1,5 +1,6 @@
 package xyz.rjs.brandwatch.supermarkets.logistics.plugins.bad;
 
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 import xyz.rjs.brandwatch.supermarkets.model.events.Customer;
@@ -14,18 +15,25 @@ import com.google.common.eventbus.Subscribe;
 @Component
 public class SaleOracle extends OracleWrapper {
 
-	private static final int SALE_BOUND = 6;
+	static final int SALE_BOUND = 6;
 
-	public SaleOracle() {
-		super(SALE_BOUND);
+	@Autowired
+	public SaleOracle(SeedScanner scanner) {
+		super(SALE_BOUND, SeedCascade.Sibling.CUSTOMER, scanner);
 	}
 
 	@Subscribe
 	public void customerListener(Customer sale) {
+		called(sale(sale.getStuffNeeded()));
+	}
+
+	/**
+	 * @param stuffNeeded
+	 * @return - the nextInt(6) call which produced the Customer.
+	 */
+	static Constraint sale(int stuffNeeded) {
 		// random.nextInt(maxNeeded - minNeeded) + minNeeded
 		// Get the Random.nextInt(6) result by subtracting one
-		final int value = sale.getStuffNeeded() - 1;
-
-		calledNextInt(value);
+		return Constraint.nextIntEquals(SALE_BOUND, stuffNeeded - 1);
 	}
 }
@@ -0,0 +1,34 @@
+package xyz.rjs.brandwatch.supermarkets.logistics.plugins.bad;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import xyz.rjs.brandwatch.supermarkets.model.events.Customer;
+
+import com.google.common.eventbus.Subscribe;
+
+/**
+ * Determines the Random object backing the time of sales based on Customer
+ * events.
+ * 
+ * @author matthew
+ */
+@Component
+public class SaleProbabilityOracle extends ProbabilityOracle {
+
+	/**
+	 * The CustomerService creates a Customer with this probability on every
+	 * tick.
+	 */
+	static final double SALE_PROBABILITY = 0.1;
+
+	@Autowired
+	public SaleProbabilityOracle(SeedScanner scanner) {
+		super(SALE_PROBABILITY, SeedCascade.Sibling.CUSTOMER_PROBABILITY, scanner);
+	}
+
+	@Subscribe
+	public void customerListener(Customer sale) {
+		occurred();
+	}
+}
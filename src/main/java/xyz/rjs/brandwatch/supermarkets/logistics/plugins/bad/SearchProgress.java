@@ -0,0 +1,91 @@
+package xyz.rjs.brandwatch.supermarkets.logistics.plugins.bad;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This tracks a single search over a space of seeds. The search reports the
+ * number of seeds it has tested, and checks if it has been cancelled between
+ * blocks of seeds.
+ *
+ * This can be read from any thread.
+ *
+ * @author matthew
+ */
+public class SearchProgress {
+
+	/**
+	 * The total number of seeds that the search will test.
+	 */
+	private final long total;
+
+	/**
+	 * The System.nanoTime when the search was created.
+	 */
+	private final long startTime;
+
+	private final AtomicLong scanned;
+
+	private volatile boolean cancelled;
+
+	public SearchProgress(long total) {
+		this.total = total;
+		startTime = System.nanoTime();
+		scanned = new AtomicLong();
+		cancelled = false;
+	}
+
+	/**
+	 * This should be called by the search after testing a block of seeds.
+	 *
+	 * @param count
+	 */
+	public void scanned(long count) {
+		scanned.addAndGet(count);
+	}
+
+	public long scanned() {
+		return scanned.get();
+	}
+
+	public long total() {
+		return total;
+	}
+
+	/**
+	 * @return - the fraction of the seeds that have been tested.
+	 */
+	public double fraction() {
+		return total == 0 ? 1 : Math.min(1, scanned() / (double) total);
+	}
+
+	/**
+	 * @return - the number of seeds tested per second since the search was
+	 *         created.
+	 */
+	public double rate() {
+		final long elapsed = System.nanoTime() - startTime;
+		return elapsed <= 0 ? 0 : scanned() * (double) TimeUnit.SECONDS.toNanos(1) / elapsed;
+	}
+
+	/**
+	 * @return - the estimated time until every seed has been tested at the
+	 *         current rate, or -1 if no seeds have been tested yet.
+	 */
+	public long remainingMillis() {
+		final double rate = rate();
+		return rate <= 0 ? -1 : (long) (Math.max(0, total - scanned()) * 1000 / rate);
+	}
+
+	/**
+	 * Requests that the search stops. The search will stop at the end of the
+	 * current block of seeds, and the result will be incomplete.
+	 */
+	public void cancel() {
+		cancelled = true;
+	}
+
+	public boolean isCancelled() {
+		return cancelled;
+	}
+}
@@ -0,0 +1,233 @@
+package xyz.rjs.brandwatch.supermarkets.logistics.plugins.bad;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.stream.LongStream;
+
+/**
+ * This searches for the Random objects created alongside a Random object whose
+ * seed is known.
+ *
+ * The simulation creates its Random objects one after another while the
+ * services are constructed, so they have consecutive uniquifiers and were
+ * created within a short time of each other. Once one seed is fixed the
+ * creation time and the ordinal of the uniquifier can be read back from it,
+ * and the other Random objects can only be a few ordinals away and a short
+ * time away. This searches that small window instead of the rounds of the
+ * SeedGenerator.
+ *
+ * The order in which the simulation creates its Random objects is described
+ * by Sibling. Other code can create Random objects in between, so the
+ * neighbouring ordinals are also searched.
+ *
+ * @author matthew
+ */
+public class SeedCascade {
+
+	/**
+	 * The Random objects of the simulation, in the order in which they are
+	 * created. The ordinals are those found by testing, see SeedPrior.
+	 */
+	public static enum Sibling {
+		/**
+		 * The Supermarket balance, which makes a single nextInt(30) call.
+		 */
+		BALANCE(7),
+		/**
+		 * The probability of a Supplier price change, one nextDouble() call a
+		 * tick.
+		 */
+		SUPPLIER_PROBABILITY(8),
+		/**
+		 * The Supplier distance and price changes.
+		 */
+		SUPPLIER(9),
+		/**
+		 * The probability of a Customer, one nextDouble() call a tick.
+		 */
+		CUSTOMER_PROBABILITY(10),
+		/**
+		 * The quantity that each Customer needs.
+		 */
+		CUSTOMER(11);
+
+		private final int ordinal;
+
+		private Sibling(int ordinal) {
+			this.ordinal = ordinal;
+		}
+
+		/**
+		 * @return - the ordinal of the uniquifier normally used to create the
+		 *         Random object.
+		 */
+		public int creationOrdinal() {
+			return ordinal;
+		}
+	}
+
+	/**
+	 * The time either side of the fixed seed that is searched. The Random
+	 * objects are created within a millisecond of each other.
+	 */
+	static final long WINDOW_NANOS = 1L << 20;
+
+	/**
+	 * The largest time either side of the fixed seed that is searched for a
+	 * sibling which is not within WINDOW_NANOS. A service which posts events
+	 * while it is created, like the Supplier, can delay the services created
+	 * after it by several milliseconds.
+	 */
+	static final long MAXIMUM_WINDOW_NANOS = 1L << 26;
+
+	/**
+	 * The number of ordinals either side of the expected ordinal that are
+	 * searched.
+	 */
+	static final int ORDINAL_SLACK = 2;
+
+	private final long seed;
+
+	private final int ordinal;
+
+	private final Sibling sibling;
+
+	/**
+	 * The creation time of the fixed seed, in the 48 bits kept by the Random
+	 * object.
+	 */
+	private final long time;
+
+	/**
+	 * @param seed
+	 *            - the fixed seed.
+	 * @param ordinal
+	 *            - the ordinal of the uniquifier that created the seed.
+	 * @param sibling
+	 *            - the Random object that the seed belongs to.
+	 */
+	public SeedCascade(long seed, int ordinal, Sibling sibling) {
+		this.seed = seed;
+		this.ordinal = ordinal;
+		this.sibling = sibling;
+		time = SeedKernel.extractTime(SeedKernel.scramble(seed), SeedGenerator.seedUniquifierValues.get(ordinal));
+	}
+
+	public long seed() {
+		return seed;
+	}
+
+	public int ordinal() {
+		return ordinal;
+	}
+
+	public Sibling sibling() {
+		return sibling;
+	}
+
+	public long time() {
+		return time;
+	}
+
+	/**
+	 * @param target
+	 * @return - the expected ordinal of the target, relative to the fixed
+	 *         seed.
+	 */
+	public int ordinalOf(Sibling target) {
+		return ordinal + target.creationOrdinal() - sibling.creationOrdinal();
+	}
+
+	/**
+	 * @return - the number of seeds searched for a sibling.
+	 */
+	public long size() {
+		return size(WINDOW_NANOS);
+	}
+
+	/**
+	 * @param window
+	 * @return - the number of seeds searched for a sibling within the time
+	 *         either side of the fixed seed.
+	 */
+	public long size(long window) {
+		return (2 * ORDINAL_SLACK + 1) * 2 * window;
+	}
+
+	/**
+	 * Searches for the seeds of the target which pass the kernel.
+	 *
+	 * @param target
+	 * @param kernel
+	 * @param progress
+	 * @return - the seeds, closest in time to the fixed seed first.
+	 */
+	public long[] search(Sibling target, SeedKernel kernel, SearchProgress progress) {
+		return search(target, kernel, progress, 0, WINDOW_NANOS);
+	}
+
+	/**
+	 * Searches for the seeds of the target which pass the kernel and were
+	 * created between inner and outer either side of the fixed seed.
+	 *
+	 * @param target
+	 * @param kernel
+	 * @param progress
+	 * @param inner
+	 *            - the time either side of the fixed seed that is not
+	 *            searched.
+	 * @param outer
+	 *            - the time either side of the fixed seed that is searched.
+	 * @return - the seeds, closest in time to the fixed seed first.
+	 */
+	public long[] search(Sibling target, SeedKernel kernel, SearchProgress progress, long inner, long outer) {
+		final SeedGenerator generator = new SeedGenerator(time);
+		final int expected = ordinalOf(target);
+
+		long[] result = new long[0];
+		for (int candidate = expected - ORDINAL_SLACK; candidate <= expected + ORDINAL_SLACK && !progress.isCancelled(); candidate++) {
+			if (candidate < 0 || candidate >= SeedGenerator.seedUniquifierValues.size() || candidate == ordinal) {
+				continue;
+			}
+			final long uniquifier = SeedGenerator.seedUniquifierValues.get(candidate);
+			final long[] before = generator.filter(time - outer, time - inner, uniquifier, kernel, progress);
+			final long[] after = generator.filter(time + inner, time + outer, uniquifier, kernel, progress);
+
+			result = LongStream.concat(Arrays.stream(result), LongStream.concat(Arrays.stream(before), Arrays.stream(after))).toArray();
+		}
+
+		return Arrays.stream(result).boxed().sorted(Comparator.comparingLong(this::distance)).mapToLong(Long::longValue).toArray();
+	}
+
+	/**
+	 * Searches for the single seed of the target which passes the kernel.
+	 *
+	 * @param target
+	 * @param kernel
+	 * @param progress
+	 * @return - the seed, or SeedKernel.FAILED if no seed or several seeds
+	 *         pass.
+	 */
+	public long find(Sibling target, SeedKernel kernel, SearchProgress progress) {
+		final long[] found = search(target, kernel, progress);
+		return found.length == 1 ? found[0] : SeedKernel.FAILED;
+	}
+
+	/**
+	 * @param candidate
+	 * @return - the time between the creation of the candidate and the fixed
+	 *         seed, for the closest uniquifier.
+	 */
+	private long distance(long candidate) {
+		long distance = Long.MAX_VALUE;
+		for (long uniquifier : SeedGenerator.seedUniquifierValues) {
+			distance = Math.min(distance, Math.abs(SeedKernel.extractTimeDifference(SeedKernel.scramble(candidate), time, uniquifier)));
+		}
+		return distance;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%s #%s at %s", sibling, ordinal, time);
+	}
+}
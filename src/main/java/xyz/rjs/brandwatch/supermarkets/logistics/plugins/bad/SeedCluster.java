@@ -0,0 +1,415 @@
+package xyz.rjs.brandwatch.supermarkets.logistics.plugins.bad;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * This shares the rounds of the seed generator with worker processes.
+ *
+ * A single process can only test seeds as fast as its common fork-join pool.
+ * The cluster splits the windows of a round into leases, each a range of time
+ * for a single uniquifier, and hands them to the SeedWorkers connected to it.
+ * Each lease carries the calls of the Oracle in the form written by SeedTest,
+ * so the worker compiles the same kernel. The worker returns the seeds that
+ * passed and is given the next lease.
+ *
+ * A worker that disconnects, or that does not return a result within the
+ * lease timeout, loses its lease. The lease is put back at the front of the
+ * queue and handed to another worker. The thread that requested the filter
+ * also takes leases from the queue and tests them locally, so a round
+ * completes even when no worker is connected.
+ *
+ * The result of a filter is the same as SeedGenerator.filter, window by
+ * window, so the Oracle is unaware of where its seeds were tested.
+ *
+ * The cluster only listens when the port is set with the system property
+ * supermarkets.cluster.port. The address defaults to loopback and can be set
+ * with supermarkets.cluster.address to accept workers on other hosts.
+ *
+ * @author matthew
+ */
+@Component
+public class SeedCluster {
+
+	private static final Logger logger = LoggerFactory.getLogger(SeedCluster.class);
+
+	static final String PORT_PROPERTY = "supermarkets.cluster.port";
+
+	static final String ADDRESS_PROPERTY = "supermarkets.cluster.address";
+
+	/**
+	 * This is sent by a worker when it connects.
+	 */
+	static final int MAGIC = 0x5345454E;
+
+	/**
+	 * The time range of a single lease. Each lease is about half a second of
+	 * work for a single core.
+	 */
+	static final long LEASE_TIME_RANGE = 1L << 22;
+
+	/**
+	 * The time a worker has to return the result of a lease before the lease
+	 * is given to another worker.
+	 */
+	static final long DEFAULT_LEASE_TIMEOUT_MILLIS = TimeUnit.SECONDS.toMillis(30);
+
+	/**
+	 * The time to wait for a lease before checking if the filter has
+	 * completed.
+	 */
+	private static final long POLL_MILLIS = 10;
+
+	private final ServerSocket server;
+
+	private final long leaseTimeoutMillis;
+
+	private final ExecutorService executor;
+
+	/**
+	 * The leases of every filter that is running, waiting to be tested.
+	 */
+	private final BlockingDeque<Lease> leases;
+
+	private final AtomicInteger workers;
+
+	private volatile boolean closed;
+
+	/**
+	 * Creates a cluster which listens on the port in the system property, or
+	 * which does not listen if the property is not set.
+	 */
+	public SeedCluster() {
+		this(Integer.getInteger(PORT_PROPERTY, -1), System.getProperty(ADDRESS_PROPERTY), DEFAULT_LEASE_TIMEOUT_MILLIS);
+	}
+
+	/**
+	 * @param port
+	 *            - the port to listen on, 0 for any port or -1 to not listen.
+	 * @param address
+	 *            - the address to listen on, or null for loopback.
+	 * @param leaseTimeoutMillis
+	 */
+	public SeedCluster(int port, String address, long leaseTimeoutMillis) {
+		this.leaseTimeoutMillis = leaseTimeoutMillis;
+		executor = Executors.newCachedThreadPool(new ThreadFactoryBuilder().setNameFormat("seed-cluster-%d").setDaemon(true).build());
+		leases = new LinkedBlockingDeque<>();
+		workers = new AtomicInteger();
+
+		ServerSocket server = null;
+		if (port >= 0) {
+			try {
+				server = new ServerSocket();
+				server.bind(new InetSocketAddress(address == null ? InetAddress.getLoopbackAddress() : InetAddress.getByName(address), port));
+				logger.info(String.format("Accepting seed workers on %s", server.getLocalSocketAddress()));
+			}
+			catch (IOException e) {
+				logger.warn(String.format("Failed to listen for seed workers on port %s", port), e);
+				server = null;
+			}
+		}
+		this.server = server;
+
+		if (server != null) {
+			executor.execute(this::accept);
+		}
+	}
+
+	/**
+	 * @return - if the cluster accepts workers. The Oracle only filters
+	 *         through a cluster that is running.
+	 */
+	public boolean isRunning() {
+		return server != null && !closed;
+	}
+
+	/**
+	 * @return - the port that workers connect to, or -1 if the cluster is not
+	 *         running.
+	 */
+	public int port() {
+		return server == null ? -1 : server.getLocalPort();
+	}
+
+	/**
+	 * @return - the number of workers that are connected.
+	 */
+	public int workers() {
+		return workers.get();
+	}
+
+	/**
+	 * Tests every seed in the windows against the calls, sharing the windows
+	 * between the connected workers. This returns when every lease has been
+	 * tested or the search is cancelled.
+	 *
+	 * @param windows
+	 * @param calls
+	 *            - calls which can be written, see SeedTest.write.
+	 * @param progress
+	 * @return - the seeds that passed, window by window.
+	 */
+	public long[] filter(List<SeedWindow> windows, SeedTest calls, SearchProgress progress) {
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (DataOutputStream output = new DataOutputStream(bytes)) {
+			calls.write(output);
+		}
+		catch (IOException e) {
+			// Writing to memory does not fail
+			throw new UncheckedIOException(e);
+		}
+
+		final Filter filter = new Filter(bytes.toByteArray(), calls.kernel(), progress);
+		final List<Lease> split = filter.split(windows);
+		leases.addAll(split);
+
+		try {
+			while (!filter.isDone()) {
+				final Lease lease = leases.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+				if (lease != null) {
+					lease.filter.complete(lease, lease.filter.isCancelled() ? new long[0] : lease.test(), true);
+				}
+			}
+		}
+		catch (InterruptedException e) {
+			progress.cancel();
+			Thread.currentThread().interrupt();
+		}
+		finally {
+			leases.removeAll(split);
+		}
+
+		return filter.result();
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		closed = true;
+		if (server != null) {
+			try {
+				server.close();
+			}
+			catch (IOException e) {
+				logger.warn("Failed to close the seed cluster", e);
+			}
+		}
+		executor.shutdownNow();
+	}
+
+	private void accept() {
+		while (!closed) {
+			try {
+				final Socket socket = server.accept();
+				executor.execute(() -> serve(socket));
+			}
+			catch (IOException e) {
+				if (!closed) {
+					logger.warn("Failed to accept a seed worker", e);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Hands leases to a single worker until it fails or the cluster is shut
+	 * down.
+	 *
+	 * @param socket
+	 */
+	private void serve(Socket socket) {
+		Lease lease = null;
+
+		try (Socket connection = socket;
+				DataInputStream input = new DataInputStream(new BufferedInputStream(connection.getInputStream()));
+				DataOutputStream output = new DataOutputStream(new BufferedOutputStream(connection.getOutputStream()))) {
+			connection.setSoTimeout((int) leaseTimeoutMillis);
+			if (input.readInt() != MAGIC) {
+				logger.warn(String.format("Rejected %s, which is not a seed worker", connection.getRemoteSocketAddress()));
+				return;
+			}
+
+			workers.incrementAndGet();
+			logger.info(String.format("Seed worker %s connected, %s workers", connection.getRemoteSocketAddress(), workers.get()));
+			try {
+				while (!closed) {
+					lease = leases.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+					if (lease == null) {
+						continue;
+					}
+					if (lease.filter.isCancelled()) {
+						lease.filter.complete(lease, new long[0], false);
+						lease = null;
+						continue;
+					}
+
+					lease.write(output);
+					output.flush();
+
+					final long[] seeds = new long[input.readInt()];
+					for (int i = 0; i < seeds.length; i++) {
+						seeds[i] = input.readLong();
+					}
+					lease.filter.complete(lease, seeds, false);
+					lease = null;
+				}
+			}
+			finally {
+				workers.decrementAndGet();
+			}
+		}
+		catch (IOException e) {
+			if (!closed) {
+				logger.warn(String.format("Seed worker failed%s", lease == null ? "" : String.format(", releasing %s", lease)), e instanceof SocketException ? null : e);
+			}
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		finally {
+			if (lease != null) {
+				leases.addFirst(lease);
+			}
+		}
+	}
+
+	/**
+	 * A single call to filter, split into leases.
+	 */
+	private static class Filter {
+
+		private final byte[] calls;
+
+		private final SeedKernel kernel;
+
+		private final SearchProgress progress;
+
+		/**
+		 * The seeds found by each lease, or null while the lease is
+		 * outstanding. This is guarded by the filter.
+		 */
+		private long[][] results;
+
+		private int remaining;
+
+		Filter(byte[] calls, SeedKernel kernel, SearchProgress progress) {
+			this.calls = calls;
+			this.kernel = kernel;
+			this.progress = progress;
+		}
+
+		List<Lease> split(List<SeedWindow> windows) {
+			final List<Lease> result = new ArrayList<>();
+
+			for (SeedWindow window : windows) {
+				for (long from = window.from(); from < window.to(); from += LEASE_TIME_RANGE) {
+					result.add(new Lease(this, result.size(), new SeedWindow(from, Math.min(window.to(), from + LEASE_TIME_RANGE), window.ordinal())));
+				}
+			}
+
+			synchronized (this) {
+				results = new long[result.size()][];
+				remaining = result.size();
+			}
+			return result;
+		}
+
+		/**
+		 * Records the seeds of a lease. A lease that was given to another
+		 * worker can complete twice, and only the first result is kept.
+		 *
+		 * @param lease
+		 * @param seeds
+		 * @param local
+		 *            - if the lease was tested in this process, which has
+		 *            already reported the progress.
+		 */
+		synchronized void complete(Lease lease, long[] seeds, boolean local) {
+			if (results[lease.index] == null) {
+				results[lease.index] = seeds;
+				remaining--;
+				if (!local) {
+					progress.scanned(lease.window.size());
+				}
+			}
+		}
+
+		boolean isCancelled() {
+			return progress.isCancelled();
+		}
+
+		synchronized boolean isDone() {
+			return remaining == 0 || isCancelled();
+		}
+
+		synchronized long[] result() {
+			return Arrays.stream(results).filter(seeds -> seeds != null).flatMapToLong(Arrays::stream).toArray();
+		}
+	}
+
+	/**
+	 * A window of seeds to be tested by a single worker.
+	 */
+	private static class Lease {
+
+		private final Filter filter;
+
+		private final int index;
+
+		private final SeedWindow window;
+
+		Lease(Filter filter, int index, SeedWindow window) {
+			this.filter = filter;
+			this.index = index;
+			this.window = window;
+		}
+
+		/**
+		 * Tests the lease in this process.
+		 *
+		 * @return
+		 */
+		long[] test() {
+			return new SeedGenerator(window.from()).filter(window.from(), window.to(), window.uniquifier(), filter.kernel, filter.progress);
+		}
+
+		void write(DataOutputStream output) throws IOException {
+			output.writeLong(window.from());
+			output.writeLong(window.to());
+			output.writeInt(window.ordinal());
+			output.writeInt(filter.calls.length);
+			output.write(filter.calls);
+		}
+
+		@Override
+		public String toString() {
+			return String.format("lease %s", window);
+		}
+	}
+}
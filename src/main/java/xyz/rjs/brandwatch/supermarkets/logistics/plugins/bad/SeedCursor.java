@@ -0,0 +1,343 @@
+package xyz.rjs.brandwatch.supermarkets.logistics.plugins.bad;
+
+import static com.google.common.base.Preconditions.checkState;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Function;
+
+/**
+ * This follows the state of a Random object whose seed is known.
+ *
+ * Once the seed has been found the calls only need to be applied once. The
+ * cursor holds the state of the Random object after every call so far, and
+ * each new call moves it on. A copy of the Random object is made from the
+ * state, so the cost of a prediction does not grow with the number of calls.
+ *
+ * If an event is missed, or counted twice, the calls no longer line up with
+ * the values the Random object produced. The first call that the state fails
+ * marks the cursor as desynchronised. The cursor then collects the following
+ * calls until they hold enough information, and searches a small range of
+ * offsets around the recent states for the state which passes them. The
+ * offset can have happened at any of the recent calls, as a call can pass by
+ * chance after the offset, so each of the recent states is tried. When a
+ * single state passes the cursor continues from it.
+ *
+ * @author matthew
+ */
+public final class SeedCursor {
+
+	/**
+	 * The number of recent calls that are kept, along with the state before
+	 * each of them.
+	 */
+	private static final int HISTORY = 16;
+
+	/**
+	 * The largest number of values that can be missed or repeated.
+	 */
+	private static final int MAXIMUM_OFFSET = 64;
+
+	/**
+	 * The information, in bits, that the calls after a failure must hold
+	 * before the offset is searched. About 2^12 states are tried, so this
+	 * keeps the chance of a wrong state passing small.
+	 */
+	private static final double RESYNC_BITS = 28;
+
+	/**
+	 * The number of calls after a failure that are collected before the
+	 * cursor gives up.
+	 */
+	private static final int MAXIMUM_PENDING = 256;
+
+	private static final RandomJump[] OFFSETS = new RandomJump[2 * MAXIMUM_OFFSET + 1];
+
+	static {
+		for (int i = 0; i < OFFSETS.length; i++) {
+			OFFSETS[i] = RandomJump.of(i - MAXIMUM_OFFSET);
+		}
+	}
+
+	/**
+	 * The state of the Random object after the calls which passed.
+	 */
+	private long state;
+
+	/**
+	 * The number of calls that have been applied.
+	 */
+	private long calls;
+
+	/**
+	 * The recent calls which passed, and the state before each, oldest first.
+	 */
+	private final List<Constraint> history;
+	private final List<Long> historyStates;
+
+	/**
+	 * The calls since the state failed. This is empty while the state follows
+	 * the Random object.
+	 */
+	private final List<Constraint> pending;
+
+	/**
+	 * If the state could not be found again. Once lost the cursor no longer
+	 * follows the Random object.
+	 */
+	private boolean lost;
+
+	/**
+	 * The number of times the state was found again, and the offset that was
+	 * found last.
+	 */
+	private int resynchronisations;
+	private long lastOffset;
+
+	private SeedCursor(long state, long calls, boolean lost) {
+		this.state = state;
+		this.calls = calls;
+		this.lost = lost;
+		history = new ArrayList<>();
+		historyStates = new ArrayList<>();
+		pending = new ArrayList<>();
+	}
+
+	/**
+	 * Creates a cursor from a state that was previously recorded.
+	 *
+	 * @param state
+	 * @param calls
+	 * @return
+	 */
+	public static SeedCursor of(long state, long calls) {
+		return new SeedCursor(state, calls, false);
+	}
+
+	/**
+	 * Creates a cursor by applying the calls to the seed.
+	 *
+	 * @param seed
+	 * @param test
+	 * @return
+	 */
+	public static SeedCursor replay(long seed, SeedTest test) {
+		final SeedKernel kernel = test.kernel();
+		if (kernel != null) {
+			final long state = kernel.advance(SeedKernel.scramble(seed), 0);
+			return new SeedCursor(state == SeedKernel.FAILED ? SeedKernel.scramble(seed) : state, test.operations(), state == SeedKernel.FAILED);
+		}
+
+		final CountingRandom random = new CountingRandom(SeedKernel.scramble(seed));
+		final boolean passed = test.test(random);
+		return new SeedCursor(random.state(), test.operations(), !passed);
+	}
+
+	/**
+	 * Applies a call to the state. When the state is desynchronised the call
+	 * is collected, and the state is searched for once enough calls have
+	 * been collected.
+	 *
+	 * @param constraint
+	 * @return - if the state follows the Random object after the call.
+	 */
+	public boolean advance(Constraint constraint) {
+		if (lost) {
+			return false;
+		}
+		if (!pending.isEmpty()) {
+			pending.add(constraint);
+			return resynchronise();
+		}
+
+		final long next = constraint.compile(SeedKernel.EMPTY).advance(state, 0);
+		if (next == SeedKernel.FAILED) {
+			pending.add(constraint);
+			return false;
+		}
+
+		remember(constraint, state);
+		state = next;
+		calls++;
+		return true;
+	}
+
+	/**
+	 * Applies a call which cannot be described by a Constraint to the state.
+	 * Such a call cannot be searched, so a failure loses the state.
+	 *
+	 * @param operation
+	 * @return - if the state follows the Random object after the call.
+	 */
+	public boolean advance(Function<Random, Boolean> operation) {
+		if (isFailed()) {
+			lost = true;
+			return false;
+		}
+
+		final CountingRandom random = new CountingRandom(state);
+		if (!operation.apply(random)) {
+			lost = true;
+			return false;
+		}
+		history.clear();
+		historyStates.clear();
+		state = random.state();
+		calls++;
+		return true;
+	}
+
+	/**
+	 * @return - a copy of the Random object after the calls.
+	 * @throws IllegalStateException
+	 *             - if the state does not follow the Random object.
+	 */
+	public Random random() {
+		checkState(!isFailed(), "Oracle fixed seed fails known tests");
+		return new Random(state ^ SeedKernel.MULTIPLIER);
+	}
+
+	public long state() {
+		return state;
+	}
+
+	public long calls() {
+		return calls;
+	}
+
+	/**
+	 * @return - if the state does not follow the Random object, either while
+	 *         it is searched for or because it was lost.
+	 */
+	public boolean isFailed() {
+		return lost || !pending.isEmpty();
+	}
+
+	public boolean isLost() {
+		return lost;
+	}
+
+	/**
+	 * @return - the number of times that the state was found again.
+	 */
+	public int resynchronisations() {
+		return resynchronisations;
+	}
+
+	/**
+	 * @return - the number of values that were missed by the last
+	 *         resynchronisation. This is negative when calls were repeated.
+	 */
+	public long lastOffset() {
+		return lastOffset;
+	}
+
+	private void remember(Constraint constraint, long before) {
+		if (history.size() == HISTORY) {
+			history.remove(0);
+			historyStates.remove(0);
+		}
+		history.add(constraint);
+		historyStates.add(before);
+	}
+
+	/**
+	 * Searches for the state which passes the recent calls and the calls
+	 * collected since the failure. Each of the recent states is moved by each
+	 * offset and tested against every call from that point.
+	 *
+	 * @return - if a single state was found.
+	 */
+	private boolean resynchronise() {
+		double information = 0;
+		for (Constraint constraint : pending) {
+			information += constraint.information();
+		}
+		if (information < RESYNC_BITS) {
+			return false;
+		}
+
+		long found = SeedKernel.FAILED, offset = 0;
+		for (int from = history.size(); from >= 0; from--) {
+			SeedKernel kernel = SeedKernel.EMPTY;
+			for (Constraint constraint : history.subList(from, history.size())) {
+				kernel = constraint.compile(kernel);
+			}
+			for (Constraint constraint : pending) {
+				kernel = constraint.compile(kernel);
+			}
+
+			final long anchor = from < history.size() ? historyStates.get(from) : state;
+			for (RandomJump jump : OFFSETS) {
+				final long candidate = kernel.advance(jump.apply(anchor), 0);
+
+				if (candidate == SeedKernel.FAILED || candidate == found) {
+					continue;
+				}
+				if (found != SeedKernel.FAILED) {
+					// Several states pass, so more calls are needed
+					return giveUp();
+				}
+				found = candidate;
+				offset = jump.steps();
+			}
+		}
+		if (found == SeedKernel.FAILED) {
+			// The calls are out by more than the offsets searched
+			lost = true;
+			pending.clear();
+			return false;
+		}
+
+		calls += pending.size();
+		state = found;
+		lastOffset = offset;
+		resynchronisations++;
+		pending.clear();
+		history.clear();
+		historyStates.clear();
+		return true;
+	}
+
+	/**
+	 * @return - false, after losing the state if too many calls have been
+	 *         collected without finding a single state.
+	 */
+	private boolean giveUp() {
+		if (pending.size() >= MAXIMUM_PENDING) {
+			lost = true;
+			pending.clear();
+		}
+		return false;
+	}
+
+	/**
+	 * A copy of the Random object which counts the calls to next, so that its
+	 * state can be found by moving the starting state on by the same number of
+	 * calls rather than by reading the seed field.
+	 */
+	private static final class CountingRandom extends Random {
+
+		private static final long serialVersionUID = 1L;
+
+		private final long start;
+
+		private long steps;
+
+		CountingRandom(long state) {
+			super(state ^ SeedKernel.MULTIPLIER);
+			start = state;
+		}
+
+		@Override
+		protected int next(int bits) {
+			steps++;
+			return super.next(bits);
+		}
+
+		long state() {
+			return RandomJump.advance(start, steps);
+		}
+	}
+}
@@ -1,7 +1,10 @@
 package xyz.rjs.brandwatch.supermarkets.logistics.plugins.bad;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
 import java.util.stream.LongStream;
 
 /**
@@ -38,23 +41,59 @@ public class SeedGenerator {
 	/**
 	 * The Random object seed is based on a numerical value which changes every
 	 * time a Random object is created. This progression involves multiplying
-	 * the current value with this constant.
+	 * the current value with this constant. Java 9 corrected the constant to
+	 * the one in the L'Ecuyer table, which has a leading 1.
 	 */
-	private static final long SEED_UNIQUIFIER_FACTOR = 181783497276652981L;
+	private static final long SEED_UNIQUIFIER_FACTOR = System.getProperty("java.specification.version", "").startsWith("1.")
+			? 181783497276652981L : 1181783497276652981L;
 	/**
 	 * The Random object seed is based on a numerical value which changes every
 	 * time a Random object is created. This holds the calculated values to use
 	 * to search for the seed.
 	 */
 	public static final List<Long> seedUniquifierValues;
+	/**
+	 * This holds the same values as seedUniquifierValues. The filter reads
+	 * these for every nanosecond in the time range, so they are held unboxed.
+	 */
+	private static final long[] uniquifiers;
+
+	/**
+	 * The number of nanoseconds that a single filter task will test. Larger
+	 * ranges are split between tasks. A task for a single uniquifier tests
+	 * fewer seeds.
+	 */
+	private static final long FILTER_TASK_TIME_RANGE = 1L << 14;
+
+	/**
+	 * The number of seeds that the batched engine tests together.
+	 */
+	private static final int FILTER_BLOCK_SIZE = 1280;
+
+	/**
+	 * The ways in which a filter task can test its seeds.
+	 */
+	public static enum Engine {
+		/**
+		 * Each seed is tested against every call before the next seed.
+		 */
+		SCALAR,
+		/**
+		 * Blocks of seeds are tested against each call in turn, see
+		 * SeedKernel.filter.
+		 */
+		BATCHED
+	}
 
 	static {
 		long value = SEED_UNIQUIFIER_INITIAL_VALUE;
 		seedUniquifierValues = new ArrayList<Long>();
+		uniquifiers = new long[SEED_UNIQUIFIER_VALUE_COUNT];
 
 		for (int i = 0; i < SEED_UNIQUIFIER_VALUE_COUNT; i++) {
 			value *= SEED_UNIQUIFIER_FACTOR;
 			seedUniquifierValues.add(value); // initial value is not used
+			uniquifiers[i] = value;
 		}
 	}
 
@@ -64,8 +103,15 @@ public class SeedGenerator {
 	 */
 	private final long startingTime;
 
+	private final Engine engine;
+
 	public SeedGenerator(long startingTime) {
+		this(startingTime, Engine.BATCHED);
+	}
+
+	public SeedGenerator(long startingTime, Engine engine) {
 		this.startingTime = startingTime;
+		this.engine = engine;
 	}
 
 	/**
@@ -77,6 +123,34 @@ public class SeedGenerator {
 		return DEFAULT_SEED_TIME_RANGE_NANOS * SEED_UNIQUIFIER_VALUE_COUNT;
 	}
 
+	/**
+	 * This returns the uniquifier of any Random object, including those
+	 * created after the values held by seedUniquifierValues.
+	 *
+	 * @param ordinal - the number of Random objects created before it
+	 * @return
+	 */
+	public static long uniquifier(int ordinal) {
+		if (ordinal < uniquifiers.length) {
+			return uniquifiers[ordinal];
+		}
+
+		long value = uniquifiers[uniquifiers.length - 1];
+		for (int i = uniquifiers.length; i <= ordinal; i++) {
+			value = nextUniquifier(value);
+		}
+		return value;
+	}
+
+	/**
+	 * @param uniquifier
+	 * @return - the uniquifier of the Random object created after the one
+	 *         that used this uniquifier.
+	 */
+	public static long nextUniquifier(long uniquifier) {
+		return uniquifier * SEED_UNIQUIFIER_FACTOR;
+	}
+
 	/**
 	 * This will create a stream of potential seeds. This looks back over the
 	 * last second.
@@ -85,21 +159,266 @@ public class SeedGenerator {
 	 * @return
 	 */
 	public LongStream stream(int batch) {
+		final long start = batchStart(batch);
+		final int count = uniquifiers.length;
+
+		return LongStream.range(0, (DEFAULT_SEED_TIME_RANGE_NANOS + 1) * count).map(i -> (start + i / count) ^ uniquifiers[(int) (i % count)]);
+	}
+
+	/**
+	 * This will test every potential seed in the batch against the kernel.
+	 * This produces the same seeds, in the same order, as filtering the stream
+	 * of the batch. The seeds are tested in parallel on the common fork join
+	 * pool.
+	 * 
+	 * @param batch - the batch of time to filter
+	 * @param kernel - the test that seeds must pass
+	 * @return - the seeds that passed
+	 */
+	public long[] filter(int batch, SeedKernel kernel) {
+		return filter(batch, kernel, new SearchProgress(batchSize()));
+	}
+
+	/**
+	 * This will test every potential seed in the batch against the kernel,
+	 * reporting to the progress. When the progress is cancelled the remaining
+	 * seeds are not tested and the result is incomplete.
+	 * 
+	 * @param batch - the batch of time to filter
+	 * @param kernel - the test that seeds must pass
+	 * @param progress - the progress of the filter
+	 * @return - the seeds that passed
+	 */
+	public long[] filter(int batch, SeedKernel kernel, SearchProgress progress) {
+		final long start = batchStart(batch);
+
+		return filter(start, start + batchTimeRange(), kernel, progress);
+	}
+
+	/**
+	 * This will test every seed in the windows against the kernel, reporting
+	 * to the progress. The seeds are returned window by window.
+	 * 
+	 * @param windows - the windows to filter
+	 * @param kernel - the test that seeds must pass
+	 * @param progress - the progress of the filter
+	 * @return - the seeds that passed
+	 */
+	public long[] filter(List<SeedWindow> windows, SeedKernel kernel, SearchProgress progress) {
+		long[] result = new long[0];
+
+		for (SeedWindow window : windows) {
+			final long[] seeds = filter(window.from(), window.to(), window.uniquifier(), kernel, progress);
+
+			result = Arrays.copyOf(result, result.length + seeds.length);
+			System.arraycopy(seeds, 0, result, result.length - seeds.length, seeds.length);
+		}
+		return result;
+	}
+
+	/**
+	 * This will test every seed created by a single uniquifier over a range of
+	 * time against the kernel, reporting to the progress.
+	 * 
+	 * @param from - the first time to test
+	 * @param to - the time after the last time to test
+	 * @param uniquifier - the uniquifier that created the seeds
+	 * @param kernel - the test that seeds must pass
+	 * @param progress - the progress of the filter
+	 * @return - the seeds that passed
+	 */
+	public long[] filter(long from, long to, long uniquifier, SeedKernel kernel, SearchProgress progress) {
+		return filterStates(from, to, uniquifier, kernel, progress)[0];
+	}
+
+	/**
+	 * This is the same as filter, but also returns the state of each seed
+	 * after the calls of the kernel, so that later calls can continue from it.
+	 * 
+	 * @param from - the first time to test
+	 * @param to - the time after the last time to test
+	 * @param uniquifier - the uniquifier that created the seeds
+	 * @param kernel - the test that seeds must pass
+	 * @param progress - the progress of the filter
+	 * @return - the seeds that passed and their states, as a pair of arrays
+	 */
+	public long[][] filterStates(long from, long to, long uniquifier, SeedKernel kernel, SearchProgress progress) {
+		return ForkJoinPool.commonPool().invoke(new FilterTask(engine, new long[] { uniquifier }, kernel, progress, from, to));
+	}
+
+	/**
+	 * This will create a stream of the seeds in the windows.
+	 * 
+	 * @param windows
+	 * @return
+	 */
+	public static LongStream stream(List<SeedWindow> windows) {
+		return windows.stream().flatMapToLong(w -> LongStream.range(w.from(), w.to()).map(t -> t ^ w.uniquifier()));
+	}
+
+	/**
+	 * @param batch
+	 * @return - a window for each uniquifier covering the time of the batch.
+	 */
+	public List<SeedWindow> windows(int batch) {
+		final long start = batchStart(batch);
+		final List<SeedWindow> result = new ArrayList<>();
+
+		for (int i = 0; i < uniquifiers.length; i++) {
+			result.add(new SeedWindow(start, start + batchTimeRange(), i));
+		}
+		return result;
+	}
+
+	/**
+	 * This will test every potential seed for a range of time against the
+	 * kernel, reporting to the progress.
+	 * 
+	 * @param from - the first time to test
+	 * @param to - the time after the last time to test
+	 * @param kernel - the test that seeds must pass
+	 * @param progress - the progress of the filter
+	 * @return - the seeds that passed
+	 */
+	public long[] filter(long from, long to, SeedKernel kernel, SearchProgress progress) {
+		return ForkJoinPool.commonPool().invoke(new FilterTask(engine, uniquifiers, kernel, progress, from, to))[0];
+	}
+
+	/**
+	 * @return - the number of nanoseconds in a single batch.
+	 */
+	public static long batchTimeRange() {
+		return DEFAULT_SEED_TIME_RANGE_NANOS + 1;
+	}
+
+	/**
+	 * @return - the number of seeds in a single batch.
+	 */
+	public static long batchSize() {
+		return batchTimeRange() * SEED_UNIQUIFIER_VALUE_COUNT;
+	}
+
+	/**
+	 * Batches alternate between looking back from the starting time and
+	 * looking forward from it. Each pair of batches is further away.
+	 * 
+	 * @param batch
+	 * @return - the first time in the batch
+	 */
+	public long batchStart(int batch) {
 		long offset = (batch / 2) * DEFAULT_SEED_TIME_RANGE_NANOS;
 		if (batch % 2 == 0) {
-			return backStream(offset);
+			return startingTime - offset - DEFAULT_SEED_TIME_RANGE_NANOS;
 		}
 		else {
-			return forwardStream(offset);
+			return startingTime + offset;
 		}
 	}
 
-	private LongStream backStream(long offset) {
-		final long effectiveStartingTime = startingTime - offset;
-		return LongStream.range(effectiveStartingTime - DEFAULT_SEED_TIME_RANGE_NANOS, effectiveStartingTime + 1).flatMap(t -> seedUniquifierValues.stream().mapToLong(u -> t ^ u));
-	}
-	private LongStream forwardStream(long offset) {
-		final long effectiveStartingTime = startingTime + offset;
-		return LongStream.range(effectiveStartingTime, effectiveStartingTime + DEFAULT_SEED_TIME_RANGE_NANOS + 1).flatMap(t -> seedUniquifierValues.stream().mapToLong(u -> t ^ u));
+	/**
+	 * This tests the seeds for a range of time. Large ranges are split in half
+	 * until they are small enough to test directly. The result holds the seeds
+	 * that passed and their states after the calls, as a pair of arrays.
+	 */
+	private static class FilterTask extends RecursiveTask<long[][]> {
+
+		private static final long serialVersionUID = 1L;
+
+		private final Engine engine;
+
+		private final long[] uniquifiers;
+
+		private final SeedKernel kernel;
+
+		private final SearchProgress progress;
+
+		private final long from, to;
+
+		FilterTask(Engine engine, long[] uniquifiers, SeedKernel kernel, SearchProgress progress, long from, long to) {
+			this.engine = engine;
+			this.uniquifiers = uniquifiers;
+			this.kernel = kernel;
+			this.progress = progress;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected long[][] compute() {
+			if (to - from > FILTER_TASK_TIME_RANGE) {
+				final long middle = from + ((to - from) / 2);
+				final FilterTask back = new FilterTask(engine, uniquifiers, kernel, progress, from, middle),
+						forward = new FilterTask(engine, uniquifiers, kernel, progress, middle, to);
+
+				forward.fork();
+				final long[][] first = back.compute(), second = forward.join();
+
+				return new long[][] { concat(first[0], second[0]), concat(first[1], second[1]) };
+			}
+
+			if (progress.isCancelled()) {
+				return new long[][] { new long[0], new long[0] };
+			}
+
+			final long[][] result = engine == Engine.BATCHED ? batched() : scalar();
+			progress.scanned((to - from) * uniquifiers.length);
+			return result;
+		}
+
+		private static long[] concat(long[] first, long[] second) {
+			final long[] result = Arrays.copyOf(first, first.length + second.length);
+			System.arraycopy(second, 0, result, first.length, second.length);
+			return result;
+		}
+
+		private long[][] scalar() {
+			long[] result = new long[0], resultStates = new long[0];
+			int size = 0;
+
+			for (long time = from; time < to; time++) {
+				for (long uniquifier : uniquifiers) {
+					final long seed = time ^ uniquifier;
+					final long state = kernel.advance(SeedKernel.scramble(seed), 0);
+
+					if (state != SeedKernel.FAILED) {
+						if (size == result.length) {
+							result = Arrays.copyOf(result, Math.max(4, size * 2));
+							resultStates = Arrays.copyOf(resultStates, result.length);
+						}
+						result[size] = seed;
+						resultStates[size++] = state;
+					}
+				}
+			}
+			return new long[][] { Arrays.copyOf(result, size), Arrays.copyOf(resultStates, size) };
+		}
+
+		private long[][] batched() {
+			final int step = Math.max(1, FILTER_BLOCK_SIZE / uniquifiers.length);
+			final long[] block = new long[step * uniquifiers.length], states = new long[block.length];
+			long[] result = new long[0], resultStates = new long[0];
+			int size = 0;
+
+			for (long time = from; time < to; time += step) {
+				final long end = Math.min(to, time + step);
+				int length = 0;
+
+				for (long t = time; t < end; t++) {
+					for (long uniquifier : uniquifiers) {
+						block[length++] = t ^ uniquifier;
+					}
+				}
+
+				length = kernel.filter(block, states, length);
+				if (size + length > result.length) {
+					result = Arrays.copyOf(result, Math.max(Math.max(4, size * 2), size + length));
+					resultStates = Arrays.copyOf(resultStates, result.length);
+				}
+				System.arraycopy(block, 0, result, size, length);
+				System.arraycopy(states, 0, resultStates, size, length);
+				size += length;
+			}
+			return new long[][] { Arrays.copyOf(result, size), Arrays.copyOf(resultStates, size) };
+		}
 	}
 }
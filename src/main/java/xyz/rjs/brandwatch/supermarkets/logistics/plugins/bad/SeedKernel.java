@@ -0,0 +1,611 @@
+package xyz.rjs.brandwatch.supermarkets.logistics.plugins.bad;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.Arrays;
+
+/**
+ * This tests seeds against a fixed sequence of nextInt(bound) calls without
+ * creating a Random object for each seed.
+ *
+ * Creating a Random object per seed is the dominant cost when filtering a
+ * large batch of seeds. The Random object only holds a 48 bit state, and the
+ * calls that are made on it are simple arithmetic on that state, so the state
+ * can be stepped directly in a local variable. The arithmetic here is a copy
+ * of the code in java.util.Random:
+ *
+ * <pre>
+ * <code>
+ *     protected int next(int bits) {
+ *         ...
+ *             nextseed = (oldseed * multiplier + addend) & mask;
+ *         ...
+ *         return (int)(nextseed >>> (48 - bits));
+ *     }
+ *
+ *     public int nextInt(int bound) {
+ *         ...
+ *         int r = next(31);
+ *         int m = bound - 1;
+ *         if ((bound & m) == 0)  // i.e., bound is a power of 2
+ *             r = (int)((bound * (long)r) >> 31);
+ *         else {
+ *             for (int u = r;
+ *                  u - (r = u % bound) + m < 0;
+ *                  u = next(31))
+ *                 ;
+ *         }
+ *         return r;
+ *     }
+ * </code>
+ * </pre>
+ *
+ * The modulo and the rejection test are replaced with equivalent arithmetic
+ * that is cheaper to evaluate, see the fields below.
+ *
+ * Each call is described by the bound and a bit mask of the values that are
+ * accepted. A mask with every value set accepts any value, which allows calls
+ * that were made but not observed to be recorded. The bound is limited to 64
+ * so that the accepted values fit into a single long.
+ *
+ * A run of calls which were not observed, and which each consume a single
+ * value, can be recorded as a single skip of that many values. A skip is a
+ * nextInt(1) call which moves the state with a RandomJump, so it costs the
+ * same as one call however long the run is.
+ *
+ * A nextDouble() call that is only observed against a threshold, such as
+ * <code>random.nextDouble() &lt; p</code>, is described as a call with the two
+ * values BELOW and AT_OR_ABOVE. The call consumes two values, of 26 and 27
+ * bits, and the 53 bit value is compared with the threshold scaled to 53
+ * bits, so no floating point arithmetic is needed:
+ *
+ * <pre>
+ * <code>
+ *     public double nextDouble() {
+ *         return (((long)(next(26)) &lt;&lt; 27) + next(27)) * DOUBLE_UNIT;
+ *     }
+ * </code>
+ * </pre>
+ *
+ * A kernel is immutable, so it can be shared between the threads of a
+ * parallel filter.
+ *
+ * @author matthew
+ */
+public final class SeedKernel {
+
+	/**
+	 * A copy of the multiplier field from Random.
+	 */
+	public static final long MULTIPLIER = 0x5DEECE66DL;
+
+	/**
+	 * A copy of the addend field from Random.
+	 */
+	public static final long ADDEND = 0xBL;
+
+	/**
+	 * A copy of the mask field from Random. The state has 48 bits.
+	 */
+	public static final long MASK = (1L << 48) - 1;
+
+	/**
+	 * The multiplicative inverse of the multiplier modulo 2^48. The multiplier
+	 * is odd so this exists.
+	 */
+	public static final long MULTIPLIER_INVERSE = 0xDFE05BCB1365L;
+
+	/**
+	 * The largest bound that can be described by an accepted values mask.
+	 */
+	public static final int MAXIMUM_BOUND = Long.SIZE;
+
+	/**
+	 * This is returned by advance when a state fails. A state only has 48
+	 * bits so this is never a valid state.
+	 */
+	public static final long FAILED = -1;
+
+	/**
+	 * The values of a nextDouble() threshold call.
+	 */
+	public static final int BELOW = 0, AT_OR_ABOVE = 1;
+
+	/**
+	 * The kernel with no calls, which every seed passes.
+	 */
+	public static final SeedKernel EMPTY = new SeedKernel(new int[0], new long[0], new long[0], new long[0]);
+
+	private final int[] bounds;
+
+	private final long[] accepted;
+
+	/**
+	 * The number of values that each call consumes, ignoring the rejection
+	 * loop. This is only greater than one for a skip.
+	 */
+	private final long[] steps;
+
+	/**
+	 * The threshold of each nextDouble() call, scaled to the 53 bits that the
+	 * value is made from. This is zero for every other call.
+	 */
+	private final long[] thresholds;
+
+	/**
+	 * These hold the jump over the values that each call consumes, and the
+	 * jump back.
+	 */
+	private final long[] multipliers, addends, inverseMultipliers, inverseAddends;
+
+	/**
+	 * These hold the division by each bound as a multiplication and a shift,
+	 * which is much cheaper than the modulo operation. This is exact for any
+	 * 31 bit value (Granlund and Montgomery, "Division by Invariant Integers
+	 * using Multiplication", 1994).
+	 */
+	private final long[] reciprocals;
+	private final int[] shifts;
+
+	/**
+	 * The rejection loop in nextInt repeats for any value at or above this
+	 * limit. This is the largest multiple of the bound that fits in 31 bits.
+	 */
+	private final long[] limits;
+
+	private SeedKernel(int[] bounds, long[] accepted, long[] steps, long[] thresholds) {
+		this.bounds = bounds;
+		this.accepted = accepted;
+		this.steps = steps;
+		this.thresholds = thresholds;
+		multipliers = new long[bounds.length];
+		addends = new long[bounds.length];
+		inverseMultipliers = new long[bounds.length];
+		inverseAddends = new long[bounds.length];
+		reciprocals = new long[bounds.length];
+		shifts = new int[bounds.length];
+		limits = new long[bounds.length];
+
+		for (int i = 0; i < bounds.length; i++) {
+			prepare(i);
+		}
+	}
+
+	/**
+	 * Creates a kernel with a call added to the previous kernel. The arrays
+	 * of the previous kernel are copied rather than prepared again, so adding
+	 * a call does not cost more as the calls grow.
+	 */
+	private SeedKernel(SeedKernel previous, int bound, long accepted, long steps, long threshold) {
+		final int call = previous.bounds.length, length = call + 1;
+
+		bounds = Arrays.copyOf(previous.bounds, length);
+		this.accepted = Arrays.copyOf(previous.accepted, length);
+		this.steps = Arrays.copyOf(previous.steps, length);
+		thresholds = Arrays.copyOf(previous.thresholds, length);
+		multipliers = Arrays.copyOf(previous.multipliers, length);
+		addends = Arrays.copyOf(previous.addends, length);
+		inverseMultipliers = Arrays.copyOf(previous.inverseMultipliers, length);
+		inverseAddends = Arrays.copyOf(previous.inverseAddends, length);
+		reciprocals = Arrays.copyOf(previous.reciprocals, length);
+		shifts = Arrays.copyOf(previous.shifts, length);
+		limits = Arrays.copyOf(previous.limits, length);
+
+		bounds[call] = bound;
+		this.accepted[call] = accepted;
+		this.steps[call] = steps;
+		thresholds[call] = threshold;
+		prepare(call);
+	}
+
+	private void prepare(int i) {
+		final int bound = bounds[i];
+		final RandomJump jump = RandomJump.of(steps[i]), back = RandomJump.of(-steps[i]);
+
+		multipliers[i] = jump.multiplier();
+		addends[i] = jump.addend();
+		inverseMultipliers[i] = back.multiplier();
+		inverseAddends[i] = back.addend();
+		final int log = Integer.SIZE - Integer.numberOfLeadingZeros(bound - 1);
+
+		shifts[i] = 31 + log;
+		reciprocals[i] = (1L << shifts[i]) / bound + 1;
+		limits[i] = ((1L << 31) / bound) * bound;
+	}
+
+	/**
+	 * @param bound
+	 * @return - the mask that accepts every value that nextInt(bound) can
+	 *         produce.
+	 */
+	public static long any(int bound) {
+		checkBound(bound);
+
+		return bound == MAXIMUM_BOUND ? -1L : (1L << bound) - 1;
+	}
+
+	/**
+	 * @param value
+	 * @return - the mask that accepts only the provided value.
+	 */
+	public static long only(int value) {
+		checkArgument(value >= 0 && value < MAXIMUM_BOUND, "Value must be between 0 and %s", MAXIMUM_BOUND);
+
+		return 1L << value;
+	}
+
+	/**
+	 * @param probability
+	 * @return - the threshold that the 53 bits of a nextDouble() call are
+	 *         below exactly when the value is below the probability.
+	 */
+	public static long threshold(double probability) {
+		checkArgument(probability > 0 && probability <= 1, "Probability must be greater than 0 and at most 1");
+
+		return (long) Math.ceil(probability * (1L << 53));
+	}
+
+	/**
+	 * Creates a new kernel which performs all of the calls of this kernel
+	 * followed by the provided call.
+	 *
+	 * @param bound
+	 * @param accepted
+	 *            - the mask of values that the call may produce.
+	 * @return
+	 */
+	public SeedKernel add(int bound, long accepted) {
+		checkBound(bound);
+		checkArgument((accepted & ~any(bound)) == 0, "Accepted values must be less than the bound");
+
+		return new SeedKernel(this, bound, accepted, 1, 0);
+	}
+
+	/**
+	 * Creates a new kernel which performs all of the calls of this kernel
+	 * followed by a nextDouble() call that was compared with the probability.
+	 *
+	 * @param probability
+	 * @param accepted
+	 *            - the mask of BELOW and AT_OR_ABOVE that the call may
+	 *            produce.
+	 * @return
+	 */
+	public SeedKernel addDouble(double probability, long accepted) {
+		checkArgument((accepted & ~any(2)) == 0, "Accepted values must be BELOW or AT_OR_ABOVE");
+
+		return new SeedKernel(this, 2, accepted, 2, threshold(probability));
+	}
+
+	/**
+	 * Creates a new kernel which performs all of the calls of this kernel
+	 * followed by a skip over the values of calls that were not observed.
+	 * Each of the calls must consume a single value.
+	 *
+	 * @param steps
+	 *            - the number of values to skip.
+	 * @return
+	 */
+	public SeedKernel skip(long steps) {
+		checkArgument(steps > 0, "Steps must be greater than zero");
+
+		return new SeedKernel(this, 1, any(1), steps, 0);
+	}
+
+	/**
+	 * @return - the number of calls that are tested.
+	 */
+	public int calls() {
+		return bounds.length;
+	}
+
+	/**
+	 * @param call
+	 * @return - the bound of the call.
+	 */
+	public int bound(int call) {
+		return bounds[call];
+	}
+
+	/**
+	 * @param call
+	 * @return - the mask of values that the call may produce.
+	 */
+	public long accepted(int call) {
+		return accepted[call];
+	}
+
+	/**
+	 * @param call
+	 * @return - the number of values that the call consumes, ignoring the
+	 *         rejection loop.
+	 */
+	public long steps(int call) {
+		return steps[call];
+	}
+
+	/**
+	 * @param call
+	 * @return - the threshold of a nextDouble() call, scaled to 53 bits, or
+	 *         zero for any other call.
+	 */
+	public long threshold(int call) {
+		return thresholds[call];
+	}
+
+	/**
+	 * @param call
+	 * @return - the information, in bits, that the values accepted by the
+	 *         call hold about the state.
+	 */
+	public double information(int call) {
+		final int count = Long.bitCount(accepted[call]);
+		if (count == 0 || count == bounds[call]) {
+			return 0;
+		}
+		if (thresholds[call] != 0) {
+			final double below = thresholds[call] / (double) (1L << 53);
+			return -Math.log(accepted[call] == only(BELOW) ? below : 1 - below) / Math.log(2);
+		}
+		return Math.log(bounds[call] / (double) count) / Math.log(2);
+	}
+
+	/**
+	 * Moves the state over the values that the call consumes, ignoring the
+	 * rejection loop.
+	 *
+	 * @param state
+	 * @param call
+	 * @return
+	 */
+	public long jump(long state, int call) {
+		return (state * multipliers[call] + addends[call]) & MASK;
+	}
+
+	/**
+	 * Reverses jump.
+	 *
+	 * @param state
+	 * @param call
+	 * @return
+	 */
+	public long unjump(long state, int call) {
+		return (state * inverseMultipliers[call] + inverseAddends[call]) & MASK;
+	}
+
+	/**
+	 * Tests the seed which would be passed to the Random constructor.
+	 *
+	 * @param seed
+	 * @return
+	 */
+	public boolean test(long seed) {
+		return testState(scramble(seed));
+	}
+
+	/**
+	 * Tests the internal state of a Random object, as it would be before the
+	 * first call.
+	 *
+	 * @param state
+	 * @return
+	 */
+	public boolean testState(long state) {
+		return advance(state, 0) != FAILED;
+	}
+
+	/**
+	 * Continues testing a state which has already passed some of the calls.
+	 * This allows the calls added after a state was tested to be applied
+	 * without repeating the earlier calls.
+	 *
+	 * @param state
+	 *            - the state after the earlier calls.
+	 * @param from
+	 *            - the number of calls that the state has passed.
+	 * @return - the state after all of the calls, or FAILED if a call
+	 *         produced a value that is not accepted.
+	 */
+	public long advance(long state, int from) {
+		for (int i = from; i < bounds.length; i++) {
+			final int bound = bounds[i], m = bound - 1;
+
+			if (thresholds[i] != 0) {
+				final long high = step(state);
+				state = step(high);
+				final int r = nextDouble(high, state) < thresholds[i] ? BELOW : AT_OR_ABOVE;
+
+				if ((accepted[i] & (1L << r)) == 0) {
+					return FAILED;
+				}
+				continue;
+			}
+
+			state = jump(state, i);
+			long u = state >>> 17;
+			final int r;
+
+			if ((bound & m) == 0) {
+				r = (int) ((bound * u) >> 31);
+			}
+			else {
+				while (u >= limits[i]) {
+					state = step(state);
+					u = state >>> 17;
+				}
+				r = (int) (u - bound * ((u * reciprocals[i]) >>> shifts[i]));
+			}
+
+			if ((accepted[i] & (1L << r)) == 0) {
+				return FAILED;
+			}
+		}
+		return state;
+	}
+
+	/**
+	 * Tests a block of seeds one call at a time. Each call is applied to every
+	 * seed that remains before the next call, and the seeds that pass are
+	 * compacted to the start of the array. The loop over the seeds is the
+	 * same arithmetic for every lane with no early exit, which keeps the
+	 * multiplications independent of each other and the branches
+	 * predictable. Most seeds fail the first call, so the later calls only
+	 * touch a few lanes.
+	 *
+	 * @param seeds
+	 *            - the seeds to test. The seeds that pass are moved to the
+	 *            start, in their original order.
+	 * @param states
+	 *            - working space, at least as long as the seeds. This holds
+	 *            the state after the calls for each seed that passed.
+	 * @param length
+	 *            - the number of seeds to test.
+	 * @return - the number of seeds that passed.
+	 */
+	public int filter(long[] seeds, long[] states, int length) {
+		for (int j = 0; j < length; j++) {
+			states[j] = scramble(seeds[j]);
+		}
+		return filterStates(seeds, states, length);
+	}
+
+	/**
+	 * Tests a block of seeds whose states have already been scrambled. This
+	 * allows several kernels to test a block that was generated once.
+	 *
+	 * @param seeds
+	 * @param states
+	 *            - the state of each seed before the first call. This holds
+	 *            the state after the calls for each seed that passed.
+	 * @param length
+	 * @return - the number of seeds that passed.
+	 */
+	public int filterStates(long[] seeds, long[] states, int length) {
+		for (int i = 0; i < bounds.length && length > 0; i++) {
+			final int bound = bounds[i];
+			final long mask = accepted[i];
+			int kept = 0;
+
+			if (thresholds[i] != 0) {
+				final long threshold = thresholds[i];
+
+				for (int j = 0; j < length; j++) {
+					final long high = step(states[j]), state = step(high);
+					final int r = nextDouble(high, state) < threshold ? BELOW : AT_OR_ABOVE;
+
+					seeds[kept] = seeds[j];
+					states[kept] = state;
+					kept += (int) (mask >>> r) & 1;
+				}
+			}
+			else if ((bound & (bound - 1)) == 0) {
+				final long multiplier = multipliers[i], addend = addends[i];
+
+				for (int j = 0; j < length; j++) {
+					final long state = (states[j] * multiplier + addend) & MASK;
+					final int r = (int) ((bound * (state >>> 17)) >> 31);
+
+					seeds[kept] = seeds[j];
+					states[kept] = state;
+					kept += (int) (mask >>> r) & 1;
+				}
+			}
+			else {
+				final long limit = limits[i], reciprocal = reciprocals[i];
+				final int shift = shifts[i];
+
+				for (int j = 0; j < length; j++) {
+					long state = step(states[j]);
+					long u = state >>> 17;
+
+					while (u >= limit) {
+						state = step(state);
+						u = state >>> 17;
+					}
+					final int r = (int) (u - bound * ((u * reciprocal) >>> shift));
+
+					seeds[kept] = seeds[j];
+					states[kept] = state;
+					kept += (int) (mask >>> r) & 1;
+				}
+			}
+			length = kept;
+		}
+		return length;
+	}
+
+	/**
+	 * Applies the scrambling that the Random constructor applies to the seed.
+	 *
+	 * @param seed
+	 * @return
+	 */
+	public static long scramble(long seed) {
+		return (seed ^ MULTIPLIER) & MASK;
+	}
+
+	/**
+	 * A Random object created without a seed is seeded with the uniquifier
+	 * XOR System.nanoTime, so the time can be read back from the state once
+	 * the uniquifier is known.
+	 *
+	 * @param state
+	 *            - the state of the Random object when it was created.
+	 * @param uniquifier
+	 * @return - the System.nanoTime of the creation, in the 48 bits kept by
+	 *         the state.
+	 */
+	public static long extractTime(long state, long uniquifier) {
+		return (scramble(state) ^ uniquifier) & MASK;
+	}
+
+	/**
+	 * The state keeps only 48 bits of the time, so the time it is compared
+	 * with is masked in the same way.
+	 *
+	 * @param state
+	 *            - the state of the Random object when it was created.
+	 * @param time
+	 *            - a System.nanoTime, normally after the creation.
+	 * @param uniquifier
+	 * @return - the time between the creation and the time.
+	 */
+	public static long extractTimeDifference(long state, long time, long uniquifier) {
+		return (time & MASK) - extractTime(state, uniquifier);
+	}
+
+	/**
+	 * Advances the internal state of a Random object by a single call to next.
+	 *
+	 * @param state
+	 * @return
+	 */
+	public static long step(long state) {
+		return (state * MULTIPLIER + ADDEND) & MASK;
+	}
+
+	/**
+	 * @param high
+	 *            - the state after the first call to next.
+	 * @param low
+	 *            - the state after the second call to next.
+	 * @return - the 53 bits that nextDouble() scales to a double.
+	 */
+	private static long nextDouble(long high, long low) {
+		return ((high >>> (48 - 26)) << 27) + (low >>> (48 - 27));
+	}
+
+	/**
+	 * Reverses a single call to next, producing the state before it.
+	 *
+	 * @param state
+	 * @return
+	 */
+	public static long unstep(long state) {
+		return ((state - ADDEND) * MULTIPLIER_INVERSE) & MASK;
+	}
+
+	private static void checkBound(int bound) {
+		checkArgument(bound > 0 && bound <= MAXIMUM_BOUND, "Bound must be between 1 and %s", MAXIMUM_BOUND);
+	}
+}
@@ -0,0 +1,290 @@
+package xyz.rjs.brandwatch.supermarkets.logistics.plugins.bad;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+/**
+ * This filters a batch of seeds while the calls are still arriving.
+ *
+ * Filtering a batch only once enough calls have arrived to reduce it to a
+ * handful of seeds means that nothing is done for hundreds of ticks, followed
+ * by a long scan. This instead starts with the first call and works in two
+ * stages:
+ * <ol>
+ * <li>The batch is scanned a block at a time with the calls that are known
+ * when the block is scanned.</li>
+ * <li>The seeds that pass are held in a buffer along with the state of the
+ * Random object after the calls they have passed. When new calls arrive only
+ * the new calls are applied to the buffer, continuing from the held
+ * state.</li>
+ * </ol>
+ *
+ * The buffer has a fixed capacity. When it is full the scan waits for more
+ * calls to reduce it before continuing. When the batch has been scanned the
+ * pipeline waits until the buffer has been reduced to the publish limit
+ * before returning the seeds.
+ *
+ * The calls are read from the supplier, which must be safe to read from the
+ * search thread. If the supplier stops producing kernels (as the SeedTest does
+ * when an arbitrary operation is added) then the pipeline finishes with the
+ * calls it has.
+ *
+ * @author matthew
+ */
+public class SeedPipeline {
+
+	/**
+	 * The number of seeds scanned in a block.
+	 */
+	private static final long BLOCK_SIZE = 1L << 22;
+
+	/**
+	 * The time to wait between checks for new calls when the buffer is full.
+	 */
+	private static final long WAIT_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+	private final SeedGenerator generator;
+
+	private final Supplier<SeedKernel> kernels;
+
+	private final int capacity;
+
+	private final int publishLimit;
+
+	/**
+	 * The buffer holds the seeds and the state after the filtered calls.
+	 */
+	private long[] seeds, states;
+
+	private int size;
+
+	/**
+	 * The kernel that the buffer has been filtered with.
+	 */
+	private SeedKernel kernel;
+
+	/**
+	 * @param generator
+	 * @param kernels
+	 *            - provides the latest calls.
+	 * @param capacity
+	 *            - the maximum number of seeds held between stages.
+	 * @param publishLimit
+	 *            - the number of seeds at or below which the result is
+	 *            returned.
+	 */
+	public SeedPipeline(SeedGenerator generator, Supplier<SeedKernel> kernels, int capacity, int publishLimit) {
+		checkArgument(capacity > publishLimit, "Capacity must be greater than the publish limit");
+
+		this.generator = generator;
+		this.kernels = kernels;
+		this.capacity = capacity;
+		this.publishLimit = publishLimit;
+		seeds = new long[0];
+		states = new long[0];
+		size = 0;
+	}
+
+	/**
+	 * Filters the batch. This returns when the batch has been scanned and
+	 * reduced to the publish limit, or when the progress is cancelled.
+	 *
+	 * @param batch
+	 * @param progress
+	 * @return - the seeds that passed every call
+	 */
+	public long[] run(int batch, SearchProgress progress) {
+		return run(generator.windows(batch), progress);
+	}
+
+	/**
+	 * Filters the windows in order. This returns when the windows have been
+	 * scanned and reduced to the publish limit, or when the progress is
+	 * cancelled.
+	 *
+	 * @param windows
+	 * @param progress
+	 * @return - the seeds that passed every call
+	 */
+	public long[] run(List<SeedWindow> windows, SearchProgress progress) {
+		start();
+
+		for (SeedWindow window : windows) {
+			for (long from = window.from(); from < window.to() && !progress.isCancelled(); from += BLOCK_SIZE) {
+				refresh();
+				final SeedKernel filtered = kernel;
+				final long[][] found = generator.filterStates(from, Math.min(window.to(), from + BLOCK_SIZE), window.uniquifier(), filtered, progress);
+				append(found[0], found[1], filtered.calls(), progress);
+			}
+		}
+		return finish(progress);
+	}
+
+	/**
+	 * Reads the first kernel. This must be called before seeds are offered.
+	 */
+	void start() {
+		kernel = kernels.get();
+		checkArgument(kernel != null, "The calls must be compiled");
+	}
+
+	/**
+	 * Applies any new calls to the buffer, and returns the kernel that the
+	 * next block must be filtered with.
+	 *
+	 * @return - the kernel, or null if the buffer is full.
+	 */
+	SeedKernel prepare() {
+		refresh();
+		return size < capacity ? kernel : null;
+	}
+
+	/**
+	 * Adds seeds which have passed the kernel returned by prepare. The buffer
+	 * can grow beyond its capacity by a single block.
+	 *
+	 * @param found
+	 * @param foundStates
+	 *            - the state of each seed after the calls of the kernel.
+	 */
+	void offer(long[] found, long[] foundStates) {
+		if (size + found.length > seeds.length) {
+			final int length = Math.max(size + found.length, Math.min(capacity, Math.max(1024, size * 2)));
+			seeds = Arrays.copyOf(seeds, length);
+			states = Arrays.copyOf(states, length);
+		}
+		System.arraycopy(found, 0, seeds, size, found.length);
+		System.arraycopy(foundStates, 0, states, size, found.length);
+		size += found.length;
+	}
+
+	/**
+	 * Waits until the buffer has been reduced to the publish limit.
+	 *
+	 * @param progress
+	 * @return - the seeds that passed every call
+	 */
+	long[] finish(SearchProgress progress) {
+		while (size > publishLimit && !progress.isCancelled() && await(progress)) {
+			refresh();
+		}
+		return Arrays.copyOf(seeds, size);
+	}
+
+	/**
+	 * @return - the number of seeds held between the stages.
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Adds the seeds from a block to the buffer. When the buffer is full this
+	 * waits for more calls to reduce it. If no more calls can arrive then the
+	 * buffer grows beyond its capacity.
+	 *
+	 * @param found
+	 *            - seeds which passed the kernel when the block was scanned.
+	 * @param foundStates
+	 *            - the state of each seed after the calls of that kernel.
+	 * @param calls
+	 *            - the number of calls of that kernel. Calls which arrive
+	 *            while waiting for room are applied from there.
+	 * @param progress
+	 */
+	private void append(long[] found, long[] foundStates, int calls, SearchProgress progress) {
+		for (int i = 0; i < found.length; i++) {
+			if (size == seeds.length && !reserve(progress)) {
+				return;
+			}
+
+			final long state = kernel.calls() > calls ? kernel.advance(foundStates[i], calls) : foundStates[i];
+			if (state != SeedKernel.FAILED) {
+				seeds[size] = found[i];
+				states[size] = state;
+				size++;
+			}
+		}
+	}
+
+	/**
+	 * Makes room in the buffer for at least one more seed.
+	 *
+	 * @param progress
+	 * @return - false if the progress was cancelled.
+	 */
+	private boolean reserve(SearchProgress progress) {
+		while (size == capacity && !progress.isCancelled() && await(progress)) {
+			refresh();
+		}
+		if (progress.isCancelled()) {
+			return false;
+		}
+
+		if (size == seeds.length) {
+			final int length = size < capacity ? Math.min(capacity, Math.max(1024, size * 2)) : size * 2;
+			seeds = Arrays.copyOf(seeds, length);
+			states = Arrays.copyOf(states, length);
+		}
+		return true;
+	}
+
+	/**
+	 * Applies any new calls to the buffer.
+	 */
+	private void refresh() {
+		final SeedKernel latest = kernels.get();
+		if (latest != null && latest.calls() > kernel.calls()) {
+			compact(latest);
+		}
+	}
+
+	/**
+	 * Applies the calls that the latest kernel adds to the buffer. The buffer
+	 * is compacted in place.
+	 *
+	 * @param latest
+	 */
+	private void compact(SeedKernel latest) {
+		final int from = kernel.calls();
+		int kept = 0;
+
+		if (latest.calls() > from) {
+			for (int i = 0; i < size; i++) {
+				final long state = latest.advance(states[i], from);
+				if (state != SeedKernel.FAILED) {
+					seeds[kept] = seeds[i];
+					states[kept] = state;
+					kept++;
+				}
+			}
+			size = kept;
+		}
+		kernel = latest;
+	}
+
+	/**
+	 * Waits until a new call arrives.
+	 *
+	 * @param progress
+	 * @return - false if no more calls can arrive.
+	 */
+	private boolean await(SearchProgress progress) {
+		while (!progress.isCancelled()) {
+			final SeedKernel latest = kernels.get();
+			if (latest == null) {
+				return false;
+			}
+			if (latest.calls() > kernel.calls()) {
+				return true;
+			}
+			LockSupport.parkNanos(WAIT_NANOS);
+		}
+		return false;
+	}
+}
@@ -0,0 +1,279 @@
+package xyz.rjs.brandwatch.supermarkets.logistics.plugins.bad;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * This decides the order in which the creation times and uniquifiers are
+ * searched.
+ *
+ * The SeedGenerator batches walk away from the creation of the Oracle,
+ * alternating between earlier and later windows, and give every uniquifier the
+ * same time. The Random objects of interest are not spread like that. They are
+ * created a short time before the Oracle, by the same few uniquifiers on every
+ * run. This scores every combination of a window of time and a uniquifier and
+ * searches the most likely combinations first.
+ *
+ * The score combines:
+ * <ol>
+ * <li>The distance of the window from the creation of the Oracle. Earlier
+ * windows are more likely than later windows, and closer windows are more
+ * likely than distant ones.</li>
+ * <li>The start of the JVM, from the RuntimeMXBean. No Random object can be
+ * created before it, so those windows are not searched.</li>
+ * <li>The ordinals of the uniquifiers. Testing has found that the Supplier is
+ * #9 and Customer Service is #11.</li>
+ * <li>The offsets and ordinals of the seeds found by previous runs. These are
+ * appended to a file when an Oracle fixes on a seed, if the file is named
+ * by the prior property of the OracleWrapper.</li>
+ * </ol>
+ *
+ * @author matthew
+ */
+public class SeedPrior {
+
+	private static final Logger logger = LoggerFactory.getLogger(SeedPrior.class);
+
+	/**
+	 * The width of each window, which matches the SeedGenerator batches.
+	 */
+	private static final long WINDOW_TIME_RANGE = SeedGenerator.DEFAULT_SEED_TIME_RANGE_NANOS;
+
+	/**
+	 * The number of windows before the creation of the Oracle that are
+	 * searched. This covers a second.
+	 */
+	private static final int BACKWARD_WINDOWS = 200;
+
+	/**
+	 * The number of windows after the creation of the Oracle that are
+	 * searched.
+	 */
+	private static final int FORWARD_WINDOWS = 20;
+
+	/**
+	 * The Random objects are normally created before the Oracle, so the later
+	 * windows are given less weight.
+	 */
+	private static final double FORWARD_WEIGHT = 0.25;
+
+	/**
+	 * Testing has found that the Supplier is #9 and Customer Service is #11.
+	 */
+	private static final int[] KNOWN_ORDINALS = { SeedCascade.Sibling.SUPPLIER.creationOrdinal(), SeedCascade.Sibling.CUSTOMER.creationOrdinal() };
+
+	private static final double KNOWN_ORDINAL_WEIGHT = 4;
+
+	/**
+	 * The weight of the observations from previous runs, compared to the
+	 * default weights.
+	 */
+	private static final double OBSERVATION_WEIGHT = 4;
+
+	/**
+	 * The start of the JVM is only known to the millisecond, and is converted
+	 * between clocks, so windows close to it are kept.
+	 */
+	private static final long JVM_START_ALLOWANCE = TimeUnit.MILLISECONDS.toNanos(50);
+
+	/**
+	 * The number of windows in a single round. This gives a round the same
+	 * size as a SeedGenerator batch.
+	 */
+	private static final int ROUND_WINDOWS = SeedGenerator.SEED_UNIQUIFIER_VALUE_COUNT;
+
+	/**
+	 * The file that observations are appended to, or null if they are not
+	 * kept.
+	 */
+	private final Path file;
+
+	private final int[] ordinals;
+
+	private final List<Long> offsets;
+
+	/**
+	 * The start of the JVM, on the System.nanoTime clock.
+	 */
+	private final long jvmStartTime;
+
+	private SeedPrior(Path file, long jvmStartTime) {
+		this.file = file;
+		this.jvmStartTime = jvmStartTime;
+		ordinals = new int[SeedGenerator.SEED_UNIQUIFIER_VALUE_COUNT];
+		offsets = new ArrayList<>();
+	}
+
+	/**
+	 * @return - a prior without any observations.
+	 */
+	public static SeedPrior defaults() {
+		return new SeedPrior(null, jvmStartTime());
+	}
+
+	/**
+	 * Creates a prior from the observations in the file. New observations are
+	 * appended to the file.
+	 *
+	 * @param file
+	 * @return
+	 */
+	public static SeedPrior load(Path file) {
+		final SeedPrior prior = new SeedPrior(file, jvmStartTime());
+
+		if (Files.exists(file)) {
+			try {
+				for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+					final String[] parts = line.trim().split("\\s+");
+					if (parts.length == 2) {
+						prior.add(Integer.parseInt(parts[0]), Long.parseLong(parts[1]));
+					}
+				}
+			}
+			catch (IOException | NumberFormatException e) {
+				logger.warn(String.format("Failed to read the observations in %s", file), e);
+			}
+		}
+		return prior;
+	}
+
+	/**
+	 * Records the seed found by an Oracle.
+	 *
+	 * @param ordinal
+	 *            - the ordinal of the uniquifier.
+	 * @param offset
+	 *            - the time from the creation of the Random object to the
+	 *            creation of the Oracle.
+	 */
+	public synchronized void observe(int ordinal, long offset) {
+		if (!add(ordinal, offset) || file == null) {
+			return;
+		}
+
+		try {
+			if (file.getParent() != null) {
+				Files.createDirectories(file.getParent());
+			}
+			Files.write(file, Collections.singletonList(String.format("%s %s", ordinal, offset)), StandardCharsets.UTF_8, StandardOpenOption.CREATE,
+					StandardOpenOption.APPEND);
+		}
+		catch (IOException e) {
+			logger.warn(String.format("Failed to record the observation in %s", file), e);
+		}
+	}
+
+	/**
+	 * @param ordinal
+	 * @return - the relative weight of the uniquifier.
+	 */
+	public synchronized double ordinalWeight(int ordinal) {
+		double weight = 1;
+		for (int known : KNOWN_ORDINALS) {
+			if (known == ordinal) {
+				weight += KNOWN_ORDINAL_WEIGHT;
+			}
+		}
+
+		final int total = offsets.size();
+		return weight / (ordinals.length + KNOWN_ORDINALS.length * KNOWN_ORDINAL_WEIGHT)
+				+ (total == 0 ? 0 : OBSERVATION_WEIGHT * ordinals[ordinal] / total);
+	}
+
+	/**
+	 * @param window
+	 *            - the index of the window. Window 0 ends at the creation of
+	 *            the Oracle, positive windows are earlier and negative windows
+	 *            are later.
+	 * @return - the relative weight of the window.
+	 */
+	public synchronized double windowWeight(int window) {
+		final double weight = window >= 0 ? 1.0 / (1 + window) : FORWARD_WEIGHT / -window;
+
+		int observed = 0;
+		for (long offset : offsets) {
+			if (Math.floorDiv(offset, WINDOW_TIME_RANGE) == window) {
+				observed++;
+			}
+		}
+		return weight + (offsets.isEmpty() ? 0 : OBSERVATION_WEIGHT * observed / offsets.size());
+	}
+
+	/**
+	 * Orders the windows to search for an Oracle created at the starting
+	 * time. The windows are split into rounds of about the size of a
+	 * SeedGenerator batch, most likely first.
+	 *
+	 * @param startingTime
+	 * @return
+	 */
+	public List<List<SeedWindow>> rounds(long startingTime) {
+		final List<SeedWindow> windows = new ArrayList<>();
+		final List<Double> scores = new ArrayList<>();
+
+		for (int window = -FORWARD_WINDOWS; window < BACKWARD_WINDOWS; window++) {
+			final long to = startingTime - window * WINDOW_TIME_RANGE, from = Math.max(to - WINDOW_TIME_RANGE, jvmStartTime - JVM_START_ALLOWANCE);
+			if (from >= to) {
+				continue;
+			}
+
+			final double weight = windowWeight(window);
+			for (int ordinal = 0; ordinal < ordinals.length; ordinal++) {
+				windows.add(new SeedWindow(from, to, ordinal));
+				scores.add(weight * ordinalWeight(ordinal));
+			}
+		}
+
+		final List<Integer> order = new ArrayList<>();
+		for (int i = 0; i < windows.size(); i++) {
+			order.add(i);
+		}
+		order.sort(Comparator.comparing((Integer i) -> scores.get(i)).reversed());
+
+		final List<List<SeedWindow>> rounds = new ArrayList<>();
+		for (int i = 0; i < order.size(); i += ROUND_WINDOWS) {
+			final List<SeedWindow> round = new ArrayList<>();
+			for (int j = i; j < Math.min(order.size(), i + ROUND_WINDOWS); j++) {
+				round.add(windows.get(order.get(j)));
+			}
+			rounds.add(round);
+		}
+		return rounds;
+	}
+
+	/**
+	 * @return - the number of observations from previous runs.
+	 */
+	public synchronized int observations() {
+		return offsets.size();
+	}
+
+	private boolean add(int ordinal, long offset) {
+		if (ordinal < 0 || ordinal >= ordinals.length || offset < -FORWARD_WINDOWS * WINDOW_TIME_RANGE || offset >= BACKWARD_WINDOWS * WINDOW_TIME_RANGE) {
+			return false;
+		}
+		ordinals[ordinal]++;
+		offsets.add(offset);
+		return true;
+	}
+
+	/**
+	 * @return - the start of the JVM converted to the System.nanoTime clock.
+	 */
+	private static long jvmStartTime() {
+		final long uptime = System.currentTimeMillis() - ManagementFactory.getRuntimeMXBean().getStartTime();
+		return System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(uptime);
+	}
+}
@@ -0,0 +1,424 @@
+package xyz.rjs.brandwatch.supermarkets.logistics.plugins.bad;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.text.DecimalFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * This recovers the seeds of a run of the simulation from its recorded log.
+ *
+ * The EventsPrinter logs every event, so the log of a run holds every value
+ * that the Oracles observe. This reads the ClockTick, PriceList and Customer
+ * events of a log into the calls that the Oracles would have recorded, and
+ * searches for the seeds without running the simulation or waiting for ticks:
+ * <ol>
+ * <li>Each Random object whose calls reveal low bits of the state is solved
+ * with the StateSolver, which does not depend on when the run happened. The
+ * Customer quantities are nextInt(6) calls, so this is normally the Customer
+ * Random object.</li>
+ * <li>The other Random objects were created alongside it, so they are
+ * searched for with a SeedCascade. The ordinal of the solved seed is not
+ * known, so the expected ordinal is tried first, then the neighbouring
+ * ordinals, until the cascade finds another Random object.</li>
+ * <li>Once the ordinal is known, the Random objects that the cascade missed
+ * are searched for further from the solved seed, doubling the window up to
+ * SeedCascade.MAXIMUM_WINDOW_NANOS. The Supplier logs its first PriceList
+ * while it is created, which can put a few milliseconds between it and the
+ * CustomerService.</li>
+ * </ol>
+ *
+ * Every search uses the common fork-join pool, so it runs on every core.
+ * Every seed found is confirmed against all of the calls in the log.
+ *
+ * Run with:
+ *
+ * <pre>
+ * java -cp ... xyz.rjs.brandwatch.supermarkets.logistics.plugins.bad.SeedRecovery stdout.log...
+ * </pre>
+ *
+ * @author matthew
+ */
+public class SeedRecovery {
+
+	private static final Logger logger = LoggerFactory.getLogger(SeedRecovery.class);
+
+	private static final DecimalFormat formatter = new DecimalFormat("#,###");
+
+	/**
+	 * The number of calls of each Random object that the searches test. The
+	 * later calls are only used to confirm the seeds that are found, which
+	 * keeps the kernels small for long logs.
+	 */
+	static final int SEARCH_CALLS = 256;
+
+	private static final Pattern TICK = Pattern.compile("ClockTick\\{tick=(\\d+)\\}");
+
+	private static final Pattern PRICE = Pattern.compile("PriceList\\{currentPrice=(-?\\d+)\\}");
+
+	private static final Pattern CUSTOMER = Pattern.compile("Customer\\{.*stuffNeeded=(\\d+)");
+
+	/**
+	 * The calls made on each Random object during a recorded run, in the form
+	 * that the Oracles record them.
+	 */
+	public static class Recording {
+
+		private final Map<SeedCascade.Sibling, List<Constraint>> calls;
+
+		private int tick;
+
+		private int price;
+
+		private boolean priceChanged, customerArrived;
+
+		public Recording() {
+			calls = new EnumMap<>(SeedCascade.Sibling.class);
+			for (SeedCascade.Sibling sibling : SeedCascade.Sibling.values()) {
+				calls.put(sibling, new ArrayList<>());
+			}
+			tick = -1;
+			price = 1;
+
+			// The Supplier distance is chosen when the Supplier is created
+			calls.get(SeedCascade.Sibling.SUPPLIER).add(Constraint.skipNextInt(PriceOracle.DISTANCE_BOUND));
+		}
+
+		/**
+		 * Reads the events of a log.
+		 *
+		 * @param file
+		 * @return
+		 * @throws IOException
+		 */
+		public static Recording read(Path file) throws IOException {
+			try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+				return read(reader);
+			}
+		}
+
+		public static Recording read(BufferedReader reader) throws IOException {
+			final Recording recording = new Recording();
+			for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+				recording.line(line);
+			}
+			return recording;
+		}
+
+		/**
+		 * Records the event in a single line of the log, if there is one.
+		 *
+		 * @param line
+		 */
+		public void line(String line) {
+			Matcher matcher;
+			if ((matcher = TICK.matcher(line)).find()) {
+				tick(Integer.parseInt(matcher.group(1)));
+			}
+			else if ((matcher = PRICE.matcher(line)).find()) {
+				priceList(Integer.parseInt(matcher.group(1)));
+			}
+			else if ((matcher = CUSTOMER.matcher(line)).find()) {
+				customer(Integer.parseInt(matcher.group(1)));
+			}
+		}
+
+		/**
+		 * The events of a tick are logged after the tick, so each tick is
+		 * recorded when the next tick arrives. See ProbabilityOracle.
+		 *
+		 * @param tick
+		 */
+		private void tick(int tick) {
+			if (this.tick >= 0) {
+				calls.get(SeedCascade.Sibling.SUPPLIER_PROBABILITY).add(Constraint.nextDouble(PriceProbabilityOracle.PRICE_PROBABILITY, priceChanged));
+				calls.get(SeedCascade.Sibling.CUSTOMER_PROBABILITY).add(Constraint.nextDouble(SaleProbabilityOracle.SALE_PROBABILITY, customerArrived));
+			}
+			this.tick = tick;
+			priceChanged = false;
+			customerArrived = false;
+		}
+
+		private void priceList(int current) {
+			calls.get(SeedCascade.Sibling.SUPPLIER).add(PriceOracle.priceChange(price, current));
+			price = current;
+			// The Supplier posts a PriceList when it is created, before any tick
+			priceChanged = tick >= 0;
+		}
+
+		private void customer(int stuffNeeded) {
+			calls.get(SeedCascade.Sibling.CUSTOMER).add(SaleOracle.sale(stuffNeeded));
+			customerArrived = tick >= 0;
+		}
+
+		/**
+		 * @param sibling
+		 * @return - the calls made on the Random object, in order.
+		 */
+		public List<Constraint> calls(SeedCascade.Sibling sibling) {
+			return Collections.unmodifiableList(calls.get(sibling));
+		}
+
+		/**
+		 * @param sibling
+		 * @return - the kernel of the calls that are searched.
+		 */
+		SeedKernel kernel(SeedCascade.Sibling sibling) {
+			final List<Constraint> all = calls.get(sibling);
+			return new SeedTest(all.subList(0, Math.min(SEARCH_CALLS, all.size()))).kernel();
+		}
+
+		/**
+		 * @param seed
+		 * @param sibling
+		 * @return - if the seed passes every call of the Random object.
+		 */
+		boolean confirm(long seed, SeedCascade.Sibling sibling) {
+			final Random random = new Random(seed);
+			return calls.get(sibling).stream().allMatch(call -> call.test(random));
+		}
+	}
+
+	/**
+	 * A seed that has been recovered.
+	 */
+	public static class Recovered {
+
+		private final SeedCascade.Sibling sibling;
+
+		private final long seed;
+
+		private final int ordinal;
+
+		private final long time;
+
+		Recovered(SeedCascade.Sibling sibling, long seed, int ordinal) {
+			this.sibling = sibling;
+			this.seed = seed;
+			this.ordinal = ordinal;
+			time = ordinal < 0 ? -1 : SeedKernel.extractTime(SeedKernel.scramble(seed), SeedGenerator.seedUniquifierValues.get(ordinal));
+		}
+
+		public SeedCascade.Sibling sibling() {
+			return sibling;
+		}
+
+		public long seed() {
+			return seed;
+		}
+
+		/**
+		 * @return - the ordinal of the uniquifier, or -1 if it is not known.
+		 */
+		public int ordinal() {
+			return ordinal;
+		}
+
+		/**
+		 * @return - the System.nanoTime of the creation of the Random object,
+		 *         in the 48 bits kept by the seed, or -1 if the ordinal is not
+		 *         known.
+		 */
+		public long time() {
+			return time;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("%s seed %s, uniquifier #%s, created at %s", sibling, seed, ordinal, time);
+		}
+	}
+
+	public static void main(String[] args) {
+		if (args.length == 0) {
+			System.err.println("Usage: SeedRecovery log...");
+			System.exit(1);
+		}
+
+		for (String arg : args) {
+			try {
+				final long startTime = System.currentTimeMillis();
+				final List<Recovered> recovered = recover(Recording.read(Paths.get(arg)));
+
+				System.out.println(String.format("%s: %s seeds recovered in %s ms", arg, recovered.size(), formatter.format(System.currentTimeMillis() - startTime)));
+				for (Recovered seed : recovered) {
+					System.out.println(String.format("  %s", seed));
+				}
+			}
+			catch (IOException e) {
+				logger.error(String.format("Failed to read %s", arg), e);
+			}
+		}
+	}
+
+	/**
+	 * Recovers the seeds of the recorded run.
+	 *
+	 * @param recording
+	 * @return - the seeds that were found, the solved seed first.
+	 */
+	public static List<Recovered> recover(Recording recording) {
+		for (SeedCascade.Sibling sibling : SeedCascade.Sibling.values()) {
+			final long seed = solve(recording, sibling);
+			if (seed == SeedKernel.FAILED) {
+				continue;
+			}
+
+			final List<Recovered> cascaded = cascade(recording, sibling, seed);
+			if (!cascaded.isEmpty()) {
+				return cascaded;
+			}
+			return Collections.singletonList(new Recovered(sibling, seed, -1));
+		}
+		return Collections.emptyList();
+	}
+
+	/**
+	 * @param recording
+	 * @param sibling
+	 * @return - the single seed of the Random object which passes every call,
+	 *         or SeedKernel.FAILED if it cannot be solved.
+	 */
+	private static long solve(Recording recording, SeedCascade.Sibling sibling) {
+		final StateSolver solver = new StateSolver(recording.kernel(sibling));
+		if (!solver.canSolve()) {
+			return SeedKernel.FAILED;
+		}
+
+		final long startTime = System.currentTimeMillis();
+		final long[] seeds = Arrays.stream(solver.solveSeeds()).filter(seed -> recording.confirm(seed, sibling)).toArray();
+		logger.info(String.format("Solved %s with %s calls in %s ms, %s seeds remain", sibling, formatter.format(recording.calls(sibling).size()),
+				formatter.format(System.currentTimeMillis() - startTime), seeds.length));
+
+		return seeds.length == 1 ? seeds[0] : SeedKernel.FAILED;
+	}
+
+	/**
+	 * Searches for the other Random objects around the solved seed, trying
+	 * the ordinals of the solved seed from the expected ordinal outwards.
+	 *
+	 * @param recording
+	 * @param sibling
+	 * @param seed
+	 * @return - the seeds that were found, or an empty list if no other Random
+	 *         object was found with any ordinal.
+	 */
+	private static List<Recovered> cascade(Recording recording, SeedCascade.Sibling sibling, long seed) {
+		final int count = SeedGenerator.seedUniquifierValues.size();
+
+		for (int offset = 0; offset < 2 * count; offset++) {
+			final int ordinal = sibling.creationOrdinal() + (offset % 2 == 0 ? offset / 2 : -(offset + 1) / 2);
+			if (ordinal < 0 || ordinal >= count) {
+				continue;
+			}
+
+			final SeedCascade cascade = new SeedCascade(seed, ordinal, sibling);
+			final List<Recovered> result = new ArrayList<>();
+			final List<SeedCascade.Sibling> missed = new ArrayList<>();
+			result.add(new Recovered(sibling, seed, ordinal));
+
+			for (SeedCascade.Sibling target : SeedCascade.Sibling.values()) {
+				if (target == sibling || recording.calls(target).isEmpty()) {
+					continue;
+				}
+
+				final long[] found = search(recording, cascade, target, 0, SeedCascade.WINDOW_NANOS);
+				if (found.length == 1) {
+					result.add(new Recovered(target, found[0], closestOrdinal(cascade, target, found[0])));
+				}
+				else if (found.length == 0) {
+					missed.add(target);
+				}
+			}
+
+			if (result.size() > 1) {
+				logger.info(String.format("Cascaded from %s with uniquifier #%s", sibling, ordinal));
+				for (SeedCascade.Sibling target : missed) {
+					final long found = widen(recording, cascade, target);
+					if (found != SeedKernel.FAILED) {
+						result.add(new Recovered(target, found, closestOrdinal(cascade, target, found)));
+					}
+				}
+				return result;
+			}
+		}
+		return Collections.emptyList();
+	}
+
+	/**
+	 * Searches further from the solved seed for a Random object that the
+	 * cascade did not find, doubling the window until a seed is confirmed.
+	 *
+	 * @param recording
+	 * @param cascade
+	 * @param target
+	 * @return - the single seed that was confirmed in the closest window, or
+	 *         SeedKernel.FAILED if none or several were.
+	 */
+	private static long widen(Recording recording, SeedCascade cascade, SeedCascade.Sibling target) {
+		for (long inner = SeedCascade.WINDOW_NANOS; inner < SeedCascade.MAXIMUM_WINDOW_NANOS; inner *= 2) {
+			final long[] found = search(recording, cascade, target, inner, 2 * inner);
+			if (found.length > 0) {
+				logger.info(String.format("Found %s within %s ns of the solved seed", target, formatter.format(2 * inner)));
+				return found.length == 1 ? found[0] : SeedKernel.FAILED;
+			}
+		}
+		return SeedKernel.FAILED;
+	}
+
+	/**
+	 * @param recording
+	 * @param cascade
+	 * @param target
+	 * @param inner
+	 * @param outer
+	 * @return - the seeds of the target between inner and outer either side
+	 *         of the solved seed which pass every call.
+	 */
+	private static long[] search(Recording recording, SeedCascade cascade, SeedCascade.Sibling target, long inner, long outer) {
+		final SearchProgress progress = new SearchProgress(cascade.size(outer) - cascade.size(inner));
+		return Arrays.stream(cascade.search(target, recording.kernel(target), progress, inner, outer)).filter(candidate -> recording.confirm(candidate, target))
+				.toArray();
+	}
+
+	/**
+	 * @param cascade
+	 * @param target
+	 * @param seed
+	 * @return - the ordinal near the expected ordinal of the target which
+	 *         places the seed closest in time to the solved seed.
+	 */
+	private static int closestOrdinal(SeedCascade cascade, SeedCascade.Sibling target, long seed) {
+		final int expected = cascade.ordinalOf(target);
+		int ordinal = -1;
+		long distance = Long.MAX_VALUE;
+
+		for (int candidate = expected - SeedCascade.ORDINAL_SLACK; candidate <= expected + SeedCascade.ORDINAL_SLACK; candidate++) {
+			if (candidate < 0 || candidate >= SeedGenerator.seedUniquifierValues.size()) {
+				continue;
+			}
+			final long current = Math.abs(SeedKernel.extractTimeDifference(SeedKernel.scramble(seed), cascade.time(),
+					SeedGenerator.seedUniquifierValues.get(candidate)));
+			if (current < distance) {
+				ordinal = candidate;
+				distance = current;
+			}
+		}
+		return ordinal;
+	}
+}
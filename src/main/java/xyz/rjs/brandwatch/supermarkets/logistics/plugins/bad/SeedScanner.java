@@ -0,0 +1,350 @@
+package xyz.rjs.brandwatch.supermarkets.logistics.plugins.bad;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * This scans the seed space once for every Oracle.
+ *
+ * Each Oracle searches the same windows of seeds. Searched separately, every
+ * seed is generated and scrambled once per Oracle. The scanner instead shares
+ * a single pass over a round between every Oracle that is searching that
+ * round. Each block of seeds is generated and scrambled once, and then tested
+ * against the kernel of each Oracle. The survivors are passed to the
+ * SeedPipeline of the Oracle they passed.
+ *
+ * An Oracle can join a pass that has already started. The pass cycles through
+ * the blocks of the round until every Oracle in it has seen every block. A
+ * pipeline which is full skips blocks, and sees them on a later cycle once
+ * more calls have reduced it.
+ *
+ * The Oracles that share a scanner share its creation time and its rounds, so
+ * that they search the same windows in the same order.
+ *
+ * @author matthew
+ */
+@Component
+public class SeedScanner {
+
+	private static final Logger logger = LoggerFactory.getLogger(SeedScanner.class);
+
+	/**
+	 * The number of seeds in a block. The pipelines are refreshed between
+	 * blocks.
+	 */
+	private static final int BLOCK_SIZE = 1 << 20;
+
+	/**
+	 * The number of seeds that a single scan task will generate. Larger ranges
+	 * are split between tasks.
+	 */
+	private static final int SCAN_TASK_SIZE = 1 << 14;
+
+	/**
+	 * The time to wait between checks when every pipeline is full.
+	 */
+	private static final long WAIT_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+	private final long startingTime;
+
+	private final SeedPrior prior;
+
+	private final List<List<SeedWindow>> rounds;
+
+	private final ExecutorService executor;
+
+	/**
+	 * The passes that are running, by round. This is guarded by itself.
+	 */
+	private final Map<Integer, Pass> passes;
+
+	public SeedScanner() {
+		this(OracleWrapper.prior());
+	}
+
+	public SeedScanner(SeedPrior prior) {
+		startingTime = System.nanoTime();
+		this.prior = prior;
+		rounds = prior.rounds(startingTime);
+		executor = Executors.newCachedThreadPool(new ThreadFactoryBuilder().setNameFormat("seed-scan-%d").setDaemon(true).build());
+		passes = new HashMap<>();
+	}
+
+	public long startingTime() {
+		return startingTime;
+	}
+
+	public SeedPrior prior() {
+		return prior;
+	}
+
+	/**
+	 * @return - the windows searched by each round, most likely first.
+	 */
+	public List<List<SeedWindow>> rounds() {
+		return rounds;
+	}
+
+	/**
+	 * Searches a round for a pipeline. This joins any pass over the round that
+	 * is running, and returns when the pipeline has seen the whole round and
+	 * has been reduced to its publish limit, or the search is cancelled.
+	 *
+	 * @param round
+	 * @param pipeline
+	 * @param progress
+	 * @return - the seeds that passed every call
+	 */
+	public long[] scan(int round, SeedPipeline pipeline, SearchProgress progress) {
+		final Participant participant = new Participant(pipeline, progress, blocks(round).size());
+		pipeline.start();
+
+		synchronized (passes) {
+			Pass pass = passes.get(round);
+			if (pass == null) {
+				pass = new Pass(round);
+				passes.put(round, pass);
+				executor.execute(pass);
+			}
+			pass.join(participant);
+		}
+
+		try {
+			participant.done.await();
+		}
+		catch (InterruptedException e) {
+			progress.cancel();
+			Thread.currentThread().interrupt();
+			return new long[0];
+		}
+		return pipeline.finish(progress);
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		executor.shutdownNow();
+	}
+
+	/**
+	 * Splits the windows of a round into blocks.
+	 *
+	 * @param round
+	 * @return
+	 */
+	private List<SeedWindow> blocks(int round) {
+		final List<SeedWindow> result = new ArrayList<>();
+
+		for (SeedWindow window : rounds.get(round)) {
+			for (long from = window.from(); from < window.to(); from += BLOCK_SIZE) {
+				result.add(new SeedWindow(from, Math.min(window.to(), from + BLOCK_SIZE), window.ordinal()));
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * A pipeline taking part in a pass.
+	 */
+	private static class Participant {
+
+		private final SeedPipeline pipeline;
+
+		private final SearchProgress progress;
+
+		private final boolean[] seen;
+
+		private final CountDownLatch done;
+
+		private int remaining;
+
+		Participant(SeedPipeline pipeline, SearchProgress progress, int blocks) {
+			this.pipeline = pipeline;
+			this.progress = progress;
+			seen = new boolean[blocks];
+			done = new CountDownLatch(1);
+			remaining = blocks;
+		}
+	}
+
+	/**
+	 * A single pass over the blocks of a round, shared between the
+	 * participants.
+	 */
+	private class Pass implements Runnable {
+
+		private final int round;
+
+		private final List<SeedWindow> blocks;
+
+		/**
+		 * This is guarded by the passes map.
+		 */
+		private final List<Participant> joined;
+
+		Pass(int round) {
+			this.round = round;
+			blocks = blocks(round);
+			joined = new ArrayList<>();
+		}
+
+		void join(Participant participant) {
+			joined.add(participant);
+		}
+
+		@Override
+		public void run() {
+			try {
+				for (int block = 0; !Thread.currentThread().isInterrupted(); block = (block + 1) % blocks.size()) {
+					final List<Participant> participants = new ArrayList<>();
+
+					synchronized (passes) {
+						for (Participant participant : joined) {
+							if (participant.progress.isCancelled()) {
+								participant.done.countDown();
+							}
+						}
+						joined.removeIf(p -> p.done.getCount() == 0);
+						if (joined.isEmpty()) {
+							passes.remove(round);
+							return;
+						}
+						participants.addAll(joined);
+					}
+
+					if (!scan(block, participants)) {
+						LockSupport.parkNanos(WAIT_NANOS);
+					}
+				}
+			}
+			catch (RuntimeException e) {
+				logger.error(String.format("Failed to scan round %s", round), e);
+			}
+
+			synchronized (passes) {
+				passes.remove(round);
+				joined.forEach(p -> p.done.countDown());
+			}
+		}
+
+		/**
+		 * Scans a block for every participant which has not seen it and has
+		 * room for more seeds.
+		 *
+		 * @param block
+		 * @param participants
+		 * @return - if any participant scanned the block.
+		 */
+		private boolean scan(int block, List<Participant> participants) {
+			final List<Participant> scanning = new ArrayList<>();
+			final List<SeedKernel> kernels = new ArrayList<>();
+
+			for (Participant participant : participants) {
+				if (participant.seen[block]) {
+					continue;
+				}
+				final SeedKernel kernel = participant.pipeline.prepare();
+				if (kernel != null) {
+					scanning.add(participant);
+					kernels.add(kernel);
+				}
+			}
+			if (scanning.isEmpty()) {
+				return false;
+			}
+
+			final SeedWindow window = blocks.get(block);
+			final long[][] found = ForkJoinPool.commonPool().invoke(
+					new ScanTask(kernels.toArray(new SeedKernel[kernels.size()]), window.uniquifier(), window.from(), window.to()));
+
+			for (int i = 0; i < scanning.size(); i++) {
+				final Participant participant = scanning.get(i);
+
+				participant.pipeline.offer(found[2 * i], found[2 * i + 1]);
+				participant.progress.scanned(window.size());
+				participant.seen[block] = true;
+				if (--participant.remaining == 0) {
+					participant.done.countDown();
+				}
+			}
+			return true;
+		}
+	}
+
+	/**
+	 * This generates the seeds for a range of time once and tests them
+	 * against several kernels. The result holds the seeds and states that
+	 * passed each kernel, as pairs of arrays.
+	 */
+	private static class ScanTask extends RecursiveTask<long[][]> {
+
+		private static final long serialVersionUID = 1L;
+
+		private final SeedKernel[] kernels;
+
+		private final long uniquifier;
+
+		private final long from, to;
+
+		ScanTask(SeedKernel[] kernels, long uniquifier, long from, long to) {
+			this.kernels = kernels;
+			this.uniquifier = uniquifier;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected long[][] compute() {
+			if (to - from > SCAN_TASK_SIZE) {
+				final long middle = from + ((to - from) / 2);
+				final ScanTask back = new ScanTask(kernels, uniquifier, from, middle), forward = new ScanTask(kernels, uniquifier, middle, to);
+
+				forward.fork();
+				final long[][] first = back.compute(), second = forward.join();
+
+				final long[][] result = new long[first.length][];
+				for (int i = 0; i < result.length; i++) {
+					result[i] = Arrays.copyOf(first[i], first[i].length + second[i].length);
+					System.arraycopy(second[i], 0, result[i], first[i].length, second[i].length);
+				}
+				return result;
+			}
+
+			final int length = (int) (to - from);
+			final long[] seeds = new long[length], states = new long[length];
+			for (int j = 0; j < length; j++) {
+				seeds[j] = (from + j) ^ uniquifier;
+				states[j] = SeedKernel.scramble(seeds[j]);
+			}
+
+			final long[] workSeeds = new long[length], workStates = new long[length];
+			final long[][] result = new long[2 * kernels.length][];
+			for (int i = 0; i < kernels.length; i++) {
+				System.arraycopy(seeds, 0, workSeeds, 0, length);
+				System.arraycopy(states, 0, workStates, 0, length);
+
+				final int kept = kernels[i].filterStates(workSeeds, workStates, length);
+				result[2 * i] = Arrays.copyOf(workSeeds, kept);
+				result[2 * i + 1] = Arrays.copyOf(workStates, kept);
+			}
+			return result;
+		}
+	}
+}
@@ -0,0 +1,222 @@
+package xyz.rjs.brandwatch.supermarkets.logistics.plugins.bad;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * This runs seed searches away from the thread that delivers events.
+ *
+ * A search over a batch of seeds takes seconds. The Oracle is driven by event
+ * handlers, and the simulation clock cannot advance while an event handler is
+ * running. The Oracle submits searches to this and collects the results on a
+ * later event.
+ *
+ * Only one search runs at a time. Submitting a search while another is
+ * running cancels the running search. The result of a search is published
+ * atomically, and is replaced by the result of any later search that has not
+ * yet been collected. A search which has been cancelled never publishes its
+ * result, even if it completes afterwards.
+ *
+ * @author matthew
+ */
+public class SeedSearch {
+
+	private static final Logger logger = LoggerFactory.getLogger(SeedSearch.class);
+
+	/**
+	 * The result of a single search.
+	 */
+	public static class Result {
+
+		private final int round, calls;
+
+		private final long[] seeds;
+
+		Result(int round, int calls, long[] seeds) {
+			this.round = round;
+			this.calls = calls;
+			this.seeds = seeds;
+		}
+
+		/**
+		 * @return - the round of the seed generator that was searched, or -1 if
+		 *         the seeds were solved.
+		 */
+		public int round() {
+			return round;
+		}
+
+		/**
+		 * @return - the number of calls that the seeds were tested against.
+		 */
+		public int calls() {
+			return calls;
+		}
+
+		public long[] seeds() {
+			return seeds;
+		}
+	}
+
+	private final ExecutorService executor;
+
+	/**
+	 * This indicates if searches run on another thread, so a search can wait
+	 * for calls that arrive later.
+	 */
+	private final boolean concurrent;
+
+	private final AtomicReference<Result> published;
+
+	/**
+	 * The progress of the search that was submitted last.
+	 */
+	private final AtomicReference<SearchProgress> current;
+
+	/**
+	 * Creates a search with a dedicated thread.
+	 */
+	public SeedSearch() {
+		this(Executors.newSingleThreadExecutor(new ThreadFactoryBuilder().setNameFormat("seed-search-%d").setDaemon(true).build()), true);
+	}
+
+	/**
+	 * Creates a search which runs on the provided executor. A direct executor
+	 * will run the search during submit. The executor is not assumed to be
+	 * concurrent.
+	 *
+	 * @param executor
+	 */
+	public SeedSearch(ExecutorService executor) {
+		this(executor, false);
+	}
+
+	/**
+	 * Creates a search which runs on the provided executor.
+	 *
+	 * @param executor
+	 * @param concurrent
+	 *            - if the executor runs searches on another thread.
+	 */
+	public SeedSearch(ExecutorService executor, boolean concurrent) {
+		this.executor = executor;
+		this.concurrent = concurrent;
+		published = new AtomicReference<>();
+		current = new AtomicReference<>();
+	}
+
+	/**
+	 * Submits a search, cancelling any search that is running.
+	 *
+	 * @param round
+	 *            - the round of the seed generator, or -1 when solving.
+	 * @param calls
+	 *            - the number of calls that the search tests.
+	 * @param search
+	 *            - the search, which must stop when the progress is
+	 *            cancelled.
+	 * @param total
+	 *            - the number of seeds the search will test.
+	 */
+	public void submit(int round, int calls, Function<SearchProgress, long[]> search, long total) {
+		final SearchProgress progress = new SearchProgress(total);
+
+		synchronized (current) {
+			cancel();
+			current.set(progress);
+		}
+
+		try {
+			executor.execute(() -> {
+				try {
+					publish(progress, new Result(round, calls, search.apply(progress)));
+				}
+				catch (Exception e) {
+					logger.error("Failed to search seeds", e);
+				}
+				finally {
+					current.compareAndSet(progress, null);
+				}
+			});
+		}
+		catch (RejectedExecutionException e) {
+			logger.error("Failed to submit search", e);
+			current.compareAndSet(progress, null);
+		}
+	}
+
+	/**
+	 * Publishes the result if the search is still the one that was submitted
+	 * last. This holds the same lock as cancel, so once cancel has returned
+	 * the search cannot publish.
+	 *
+	 * @param progress
+	 * @param result
+	 */
+	private void publish(SearchProgress progress, Result result) {
+		synchronized (current) {
+			if (current.get() == progress && !progress.isCancelled()) {
+				published.set(result);
+			}
+		}
+	}
+
+	/**
+	 * @return - the result of the last search to complete, or null if there is
+	 *         no new result. The result is only returned once.
+	 */
+	public Result collect() {
+		return published.getAndSet(null);
+	}
+
+	/**
+	 * @return - if searches run on another thread. A search that waits for
+	 *         later calls must only be submitted when this is true.
+	 */
+	public boolean isConcurrent() {
+		return concurrent;
+	}
+
+	/**
+	 * @return - if a search is running.
+	 */
+	public boolean isSearching() {
+		return current.get() != null;
+	}
+
+	/**
+	 * @return - the progress of the running search, or null if there is none.
+	 */
+	public SearchProgress progress() {
+		return current.get();
+	}
+
+	/**
+	 * Cancels the running search. Any result that has been published is
+	 * kept.
+	 */
+	public void cancel() {
+		synchronized (current) {
+			final SearchProgress progress = current.getAndSet(null);
+			if (progress != null) {
+				progress.cancel();
+			}
+		}
+	}
+
+	/**
+	 * Stops the search thread.
+	 */
+	public void shutdown() {
+		cancel();
+		executor.shutdownNow();
+	}
+}
@@ -0,0 +1,282 @@
+package xyz.rjs.brandwatch.supermarkets.logistics.plugins.bad;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.LongPredicate;
+
+/**
+ * This holds the seeds that have survived filtering, as unboxed longs.
+ *
+ * A set of boxed Long objects takes about 50 bytes per seed and has to be
+ * rebuilt on every reduction. This holds the seeds in a single buffer, in the
+ * order they were added, and reduces them in place. The reduction is split
+ * between the threads of the common fork join pool. Each thread compacts its
+ * own chunk, and the chunks are then moved together.
+ *
+ * The seeds are held on the heap until there are more than the heap budget.
+ * Beyond that they are moved into a memory mapped temporary file, so that a
+ * large number of survivors does not exhaust the heap. The file is deleted
+ * when the store is closed.
+ *
+ * This is not thread safe. The reduction uses other threads internally but
+ * returns once they have finished.
+ *
+ * @author matthew
+ */
+public class SeedStore implements AutoCloseable {
+
+	/**
+	 * The number of seeds that a single reduce task will test. Larger ranges
+	 * are split between tasks.
+	 */
+	private static final int REDUCE_TASK_SIZE = 1 << 16;
+
+	/**
+	 * A mapped file cannot hold more than 2^31 bytes.
+	 */
+	private static final int MAXIMUM_CAPACITY = Integer.MAX_VALUE / Long.BYTES;
+
+	private final int heapBudget;
+
+	private LongBuffer seeds;
+
+	private int size;
+
+	/**
+	 * This is open when the seeds have been moved into a file.
+	 */
+	private FileChannel channel;
+
+	/**
+	 * @param heapBudget
+	 *            - the number of seeds that can be held on the heap.
+	 */
+	public SeedStore(int heapBudget) {
+		checkArgument(heapBudget > 0, "Heap budget must be greater than zero");
+
+		this.heapBudget = heapBudget;
+		seeds = LongBuffer.allocate(0);
+		size = 0;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * @return - if the seeds are held in a file.
+	 */
+	public boolean isSpilled() {
+		return channel != null;
+	}
+
+	/**
+	 * @param index
+	 * @return - the seed at the index, in the order that the seeds were
+	 *         added.
+	 */
+	public long get(int index) {
+		checkState(index >= 0 && index < size, "Index %s is outside of the %s seeds", index, size);
+		return seeds.get(index);
+	}
+
+	/**
+	 * Adds the seeds after the seeds that are already held.
+	 *
+	 * @param values
+	 */
+	public void addAll(long[] values) {
+		reserve((long) size + values.length);
+
+		for (long value : values) {
+			seeds.put(size++, value);
+		}
+	}
+
+	/**
+	 * Removes every seed. Any file is kept for later seeds.
+	 */
+	public void clear() {
+		size = 0;
+	}
+
+	/**
+	 * Replaces the seeds.
+	 *
+	 * @param values
+	 */
+	public void set(long[] values) {
+		clear();
+		addAll(values);
+	}
+
+	/**
+	 * Removes every seed that fails the test. The seeds that remain keep their
+	 * order.
+	 *
+	 * @param test
+	 *            - which must be safe to call from several threads.
+	 */
+	public void reduce(LongPredicate test) {
+		if (size == 0) {
+			return;
+		}
+
+		final int chunks = (size + REDUCE_TASK_SIZE - 1) / REDUCE_TASK_SIZE;
+		final int[] kept = new int[chunks];
+
+		ForkJoinPool.commonPool().invoke(new ReduceTask(test, kept, 0, chunks));
+
+		int position = 0;
+		for (int chunk = 0; chunk < chunks; chunk++) {
+			final int start = chunk * REDUCE_TASK_SIZE;
+
+			if (position != start) {
+				for (int i = 0; i < kept[chunk]; i++) {
+					seeds.put(position + i, seeds.get(start + i));
+				}
+			}
+			position += kept[chunk];
+		}
+		size = position;
+	}
+
+	/**
+	 * @return - a copy of the seeds.
+	 */
+	public long[] toArray() {
+		final long[] result = new long[size];
+		for (int i = 0; i < size; i++) {
+			result[i] = seeds.get(i);
+		}
+		return result;
+	}
+
+	/**
+	 * Deletes any file holding the seeds.
+	 */
+	@Override
+	public void close() {
+		size = 0;
+		seeds = LongBuffer.allocate(0);
+
+		if (channel != null) {
+			try {
+				channel.close();
+			}
+			catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			finally {
+				channel = null;
+			}
+		}
+	}
+
+	/**
+	 * Grows the buffer to hold the number of seeds, moving the seeds into a
+	 * file if the heap budget is exceeded.
+	 *
+	 * @param required
+	 */
+	private void reserve(long required) {
+		checkArgument(required <= MAXIMUM_CAPACITY, "A store cannot hold %s seeds", required);
+		if (required <= seeds.capacity()) {
+			return;
+		}
+
+		final int capacity = (int) Math.min(MAXIMUM_CAPACITY, Math.max(required, Math.max(16, 2L * seeds.capacity())));
+		if (capacity <= heapBudget) {
+			final LongBuffer grown = LongBuffer.allocate(capacity);
+			copy(seeds, grown);
+			seeds = grown;
+			return;
+		}
+
+		try {
+			if (channel == null) {
+				final Path file = Files.createTempFile("seeds", ".bin");
+				channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.DELETE_ON_CLOSE);
+
+				final LongBuffer mapped = map(capacity);
+				copy(seeds, mapped);
+				seeds = mapped;
+			}
+			else {
+				// The file already holds the seeds, a larger mapping covers them
+				seeds = map(capacity);
+			}
+		}
+		catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private LongBuffer map(int capacity) throws IOException {
+		return channel.map(MapMode.READ_WRITE, 0, (long) capacity * Long.BYTES).order(ByteOrder.nativeOrder()).asLongBuffer();
+	}
+
+	private void copy(LongBuffer from, LongBuffer to) {
+		for (int i = 0; i < size; i++) {
+			to.put(i, from.get(i));
+		}
+	}
+
+	/**
+	 * This compacts a range of chunks. Each chunk is compacted to its start,
+	 * and the number of seeds kept is recorded for the chunk.
+	 */
+	private class ReduceTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final LongPredicate test;
+
+		private final int[] kept;
+
+		private final int from, to;
+
+		ReduceTask(LongPredicate test, int[] kept, int from, int to) {
+			this.test = test;
+			this.kept = kept;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from > 1) {
+				final int middle = from + ((to - from) / 2);
+				invokeAll(new ReduceTask(test, kept, from, middle), new ReduceTask(test, kept, middle, to));
+				return;
+			}
+
+			final int start = from * REDUCE_TASK_SIZE, end = Math.min(size, start + REDUCE_TASK_SIZE);
+			int position = start;
+
+			for (int i = start; i < end; i++) {
+				final long seed = seeds.get(i);
+				if (test.test(seed)) {
+					seeds.put(position++, seed);
+				}
+			}
+			kept[from] = position - start;
+		}
+	}
+}
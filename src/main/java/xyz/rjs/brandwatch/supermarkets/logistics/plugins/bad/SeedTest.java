@@ -1,45 +1,206 @@
 package xyz.rjs.brandwatch.supermarkets.logistics.plugins.bad;
 
 import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Random;
 import java.util.function.Function;
+import java.util.function.LongPredicate;
 
 
 /**
  * This wraps up the tests that are applied to seeds to determine if they are valid.
- * 
+ *
+ * Calls are normally added as Constraints, which are also compiled into a
+ * SeedKernel. While every test is a Constraint the seeds are tested with the
+ * kernel, which does not create a Random object per seed, and the calls can
+ * be written out and read back. Once an arbitrary operation has been added the
+ * seeds are tested by applying every operation to a Random object.
+ *
+ * The size of the space that passes is estimated in log space. Each
+ * constraint contributes the information it holds about the state, which is
+ * the exact probability that a state passes it: the fraction of the values of
+ * nextInt(bound) that are accepted, including calls that accept several
+ * values, or the fraction of the 53 bits of nextDouble() that fall on the
+ * observed side of the threshold. The rejection loop of nextInt(bound) draws
+ * again until the value is unbiased, so every value of the bound is equally
+ * likely. A sum of bits cannot overflow, unlike a product of bounds.
+ *
  * @author matthew
  */
 public class SeedTest {
 
 	private final List<Function<Random, Boolean>> operations;
-	private long reduction;
+	private final List<Constraint> constraints;
+
+	/**
+	 * The information held by the operations, in bits. A seed passes every
+	 * operation with a probability of 2^-information.
+	 */
+	private double information;
+
+	/**
+	 * This holds the compiled nextInt(bound) calls. This is null when an
+	 * operation which cannot be compiled has been added.
+	 */
+	private volatile SeedKernel kernel;
 
 	public SeedTest() {
 		operations = new ArrayList<>();
-		reduction = 1;
+		constraints = new ArrayList<>();
+		information = 0;
+		kernel = SeedKernel.EMPTY;
+	}
+
+	/**
+	 * Creates a test from calls that were previously recorded.
+	 *
+	 * @param constraints
+	 */
+	public SeedTest(Iterable<Constraint> constraints) {
+		this();
+		for (Constraint constraint : constraints) {
+			add(constraint);
+		}
 	}
 
+	/**
+	 * Adds an arbitrary operation, which cannot be compiled.
+	 *
+	 * @param operation
+	 * @param reduction
+	 *            - the factor that the operation reduces the space of seeds
+	 *            by, on average.
+	 */
 	public void add(Function<Random, Boolean> operation, long reduction) {
 		checkArgument(operation != null, "Operation must be provided");
 		checkArgument(reduction > 0, "Reduction must be greater than zero");
 
 		operations.add(operation);
-		this.reduction *= reduction;
+		information += Math.log(reduction) / Math.log(2);
+		kernel = null;
 	}
 
+	/**
+	 * Adds a call which must produce one of the accepted values.
+	 *
+	 * @param constraint
+	 */
+	public void add(Constraint constraint) {
+		checkArgument(constraint != null, "Constraint must be provided");
+
+		final SeedKernel current = kernel;
+		if (current != null) {
+			kernel = constraint.compile(current);
+			constraints.add(constraint);
+		}
+
+		operations.add(constraint::test);
+		information += constraint.information();
+	}
+
+	/**
+	 * @return - the information held by the operations, in bits.
+	 */
+	public double information() {
+		return information;
+	}
+
+	/**
+	 * @return - the probability that a seed passes every operation.
+	 */
+	public double selectivity() {
+		return Math.pow(2, -information);
+	}
+
+	/**
+	 * @param range
+	 *            - the number of seeds.
+	 * @return - the number of the seeds that are expected to pass every
+	 *         operation. This never increases as operations are added.
+	 */
 	public long estimatedSize(long range) {
-		return range / reduction;
+		return range <= 0 ? 0 : Math.round(Math.pow(2, Math.log(range) / Math.log(2) - information));
 	}
 
 	public int operations() {
 		return operations.size();
 	}
 
+	/**
+	 * @return - the operations as constraints, in order.
+	 * @throws IllegalStateException
+	 *             - if an operation which is not a constraint has been added.
+	 */
+	public List<Constraint> constraints() {
+		checkState(kernel != null, "The operations include arbitrary operations");
+		return Collections.unmodifiableList(constraints);
+	}
+
+	/**
+	 * Writes the constraints so that they can be read back with read.
+	 *
+	 * @param output
+	 * @throws IOException
+	 */
+	public void write(DataOutput output) throws IOException {
+		final List<Constraint> current = constraints();
+
+		output.writeInt(current.size());
+		for (Constraint constraint : current) {
+			constraint.write(output);
+		}
+	}
+
+	public static SeedTest read(DataInput input) throws IOException {
+		final int count = input.readInt();
+		final List<Constraint> constraints = new ArrayList<>(count);
+
+		for (int i = 0; i < count; i++) {
+			constraints.add(Constraint.read(input));
+		}
+		return new SeedTest(constraints);
+	}
+
+	/**
+	 * @return - the compiled form of the operations, or null if any operation
+	 *         cannot be compiled.
+	 */
+	public SeedKernel kernel() {
+		return kernel;
+	}
+
+	/**
+	 * This creates a test of the current operations which is not affected by
+	 * operations that are added later. This allows seeds to be tested on
+	 * another thread while operations continue to be added.
+	 *
+	 * @return
+	 */
+	public LongPredicate snapshot() {
+		final SeedKernel current = kernel;
+		if (current != null) {
+			return current::test;
+		}
+
+		final List<Function<Random, Boolean>> copy = new ArrayList<>(operations);
+		return seed -> {
+			final Random random = new Random(seed);
+			return copy.stream().allMatch(o -> o.apply(random));
+		};
+	}
+
 	public boolean test(long seed) {
+		final SeedKernel current = kernel;
+		if (current != null) {
+			return current.test(seed);
+		}
 		return test(new Random(seed));
 	}
 
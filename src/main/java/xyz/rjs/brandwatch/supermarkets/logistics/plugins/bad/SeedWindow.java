@@ -0,0 +1,58 @@
+package xyz.rjs.brandwatch.supermarkets.logistics.plugins.bad;
+
+/**
+ * This is a range of creation times combined with a single uniquifier. The
+ * seeds in the window are every time in the range combined with the
+ * uniquifier.
+ *
+ * @author matthew
+ */
+public final class SeedWindow {
+
+	private final long from, to;
+
+	private final int ordinal;
+
+	/**
+	 * @param from
+	 *            - the first time in the window.
+	 * @param to
+	 *            - the time after the last time in the window.
+	 * @param ordinal
+	 *            - the ordinal of the uniquifier, see
+	 *            SeedGenerator.uniquifier.
+	 */
+	public SeedWindow(long from, long to, int ordinal) {
+		this.from = from;
+		this.to = to;
+		this.ordinal = ordinal;
+	}
+
+	public long from() {
+		return from;
+	}
+
+	public long to() {
+		return to;
+	}
+
+	public int ordinal() {
+		return ordinal;
+	}
+
+	public long uniquifier() {
+		return SeedGenerator.uniquifier(ordinal);
+	}
+
+	/**
+	 * @return - the number of seeds in the window.
+	 */
+	public long size() {
+		return to - from;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("#%s [%s, %s)", ordinal, from, to);
+	}
+}
@@ -0,0 +1,114 @@
+package xyz.rjs.brandwatch.supermarkets.logistics.plugins.bad;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.Socket;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * This tests leases of seeds for a SeedCluster in another process.
+ *
+ * The worker connects to the cluster and then tests one lease at a time with
+ * every core of its process. A lease is a window of seeds and the calls that
+ * they must pass. The worker returns the seeds that passed and waits for the
+ * next lease, until the cluster closes the connection.
+ *
+ * Start a worker with:
+ *
+ * <pre>
+ * java -cp ... xyz.rjs.brandwatch.supermarkets.logistics.plugins.bad.SeedWorker host port
+ * </pre>
+ *
+ * @author matthew
+ */
+public class SeedWorker implements Runnable {
+
+	private static final Logger logger = LoggerFactory.getLogger(SeedWorker.class);
+
+	private final String host;
+
+	private final int port;
+
+	private volatile int leases;
+
+	public SeedWorker(String host, int port) {
+		this.host = host;
+		this.port = port;
+		leases = 0;
+	}
+
+	public static void main(String[] args) {
+		if (args.length != 2) {
+			System.err.println("Usage: SeedWorker host port");
+			System.exit(1);
+		}
+		new SeedWorker(args[0], Integer.parseInt(args[1])).run();
+	}
+
+	/**
+	 * Tests leases until the cluster closes the connection.
+	 */
+	@Override
+	public void run() {
+		try (Socket socket = new Socket(host, port);
+				DataInputStream input = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+				DataOutputStream output = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()))) {
+			output.writeInt(SeedCluster.MAGIC);
+			output.flush();
+			logger.info(String.format("Connected to the seed cluster at %s:%s", host, port));
+
+			while (true) {
+				final long from;
+				try {
+					from = input.readLong();
+				}
+				catch (EOFException e) {
+					break;
+				}
+				final long to = input.readLong();
+				final int ordinal = input.readInt();
+				final byte[] calls = new byte[input.readInt()];
+				input.readFully(calls);
+
+				final long[] seeds = test(new SeedWindow(from, to, ordinal), calls);
+
+				output.writeInt(seeds.length);
+				for (long seed : seeds) {
+					output.writeLong(seed);
+				}
+				output.flush();
+				leases++;
+			}
+		}
+		catch (IOException e) {
+			logger.warn(String.format("Lost the seed cluster at %s:%s", host, port), e);
+		}
+		logger.info(String.format("Tested %s leases", leases));
+	}
+
+	/**
+	 * @return - the number of leases that have been tested.
+	 */
+	public int leases() {
+		return leases;
+	}
+
+	/**
+	 * @param window
+	 * @param calls
+	 *            - the calls, as written by SeedTest.
+	 * @return - the seeds in the window that pass the calls.
+	 * @throws IOException
+	 */
+	static long[] test(SeedWindow window, byte[] calls) throws IOException {
+		final SeedKernel kernel = SeedTest.read(new DataInputStream(new ByteArrayInputStream(calls))).kernel();
+		return new SeedGenerator(window.from()).filter(window.from(), window.to(), window.uniquifier(), kernel, new SearchProgress(window.size()));
+	}
+}
@@ -0,0 +1,373 @@
+package xyz.rjs.brandwatch.supermarkets.logistics.plugins.bad;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * This recovers the internal state of a Random object directly from the
+ * values it has produced, without knowing when it was created.
+ *
+ * The SeedGenerator can only find a seed when the Random object was created
+ * close to the Oracle. This instead solves for the 48 bit state, so the cost
+ * depends on the number of observed calls and not on the creation time.
+ *
+ * The Random object is a linear congruential generator modulo 2^48. The low
+ * bits of such a generator do not depend on the high bits, so the lowest k
+ * bits of the state form a smaller generator modulo 2^k. The nextInt(bound)
+ * call returns next(31) % bound, and when the bound is even the lowest bits of
+ * the result are the lowest bits of next(31), which are bits 17 and up of the
+ * state. Every call with an even bound therefore reveals bits of the smaller
+ * generator:
+ *
+ * <pre>
+ *     nextInt(6) % 2 == bit 17 of the state
+ * </pre>
+ *
+ * This solves in two steps:
+ * <ol>
+ * <li>Every value of the low 17 + k bits is tested against the revealed bits,
+ * where k is the number of bits revealed by a call. This is 2^18 candidates
+ * for nextInt(6).</li>
+ * <li>The remaining high bits are enumerated for each low value which passes.
+ * The first call with an odd factor in the bound fixes the high bits modulo
+ * that factor, so only one in that many high values need to be tested.</li>
+ * </ol>
+ *
+ * The first step assumes that every call consumes a single value from the
+ * generator. The nextInt rejection loop repeats with a probability of about
+ * bound / 2^31, so a state which hit the loop during an observed call will not
+ * be found. All candidates are confirmed against every call with the
+ * SeedKernel.
+ *
+ * Calls with an odd or a power of two bound reveal no low bits. A power of two
+ * bound reveals the highest bits instead, which this does not use.
+ *
+ * @author matthew
+ */
+public class StateSolver {
+
+	/**
+	 * The number of bits below the value returned by next(31).
+	 */
+	private static final int HIDDEN_BITS = 17;
+
+	/**
+	 * The number of bits in the state.
+	 */
+	private static final int STATE_BITS = 48;
+
+	/**
+	 * Solving is only attempted when the calls reveal this many more bits than
+	 * the state holds. This keeps the number of false positives low.
+	 */
+	private static final int INFORMATION_MARGIN = 8;
+
+	/**
+	 * The number of high values that a single solve task will test. Larger
+	 * ranges are split between tasks.
+	 */
+	private static final long SOLVE_TASK_RANGE = 1L << 20;
+
+	private final SeedKernel kernel;
+
+	/**
+	 * For each call this holds the number of low bits of next(31) that are
+	 * known, and the value of those bits.
+	 */
+	private final int[] knownBits, knownValues;
+
+	/**
+	 * The number of low bits of the state which are enumerated in the first
+	 * step.
+	 */
+	private final int lowBits;
+
+	public StateSolver(SeedKernel kernel) {
+		checkArgument(kernel != null, "Kernel must be provided");
+
+		this.kernel = kernel;
+		knownBits = new int[kernel.calls()];
+		knownValues = new int[kernel.calls()];
+
+		int maximum = 0;
+		for (int i = 0; i < kernel.calls(); i++) {
+			final int bound = kernel.bound(i);
+			final long accepted = kernel.accepted(i);
+
+			if (Integer.bitCount(bound) == 1 || accepted == 0) {
+				continue;
+			}
+
+			// The bits of r which all accepted values agree on
+			final int value = Long.numberOfTrailingZeros(accepted);
+			int bits = Integer.numberOfTrailingZeros(bound);
+			for (long mask = accepted; mask != 0; mask &= mask - 1) {
+				final int other = Long.numberOfTrailingZeros(mask);
+				bits = Math.min(bits, Integer.numberOfTrailingZeros(value ^ other));
+			}
+
+			knownBits[i] = bits;
+			knownValues[i] = value & ((1 << bits) - 1);
+			maximum = Math.max(maximum, bits);
+		}
+
+		lowBits = HIDDEN_BITS + maximum;
+	}
+
+	/**
+	 * Indicates if the calls contain enough information to solve for the
+	 * state. This requires enough revealed low bits to identify the low part
+	 * of the state, and enough information in total to identify the whole
+	 * state.
+	 *
+	 * @return
+	 */
+	public boolean canSolve() {
+		if (lowBits == HIDDEN_BITS || findPivot() < 0) {
+			return false;
+		}
+
+		int revealed = 0;
+		double information = 0;
+		for (int i = 0; i < kernel.calls(); i++) {
+			revealed += knownBits[i];
+			information += kernel.information(i);
+		}
+		return revealed >= lowBits + INFORMATION_MARGIN && information >= STATE_BITS + INFORMATION_MARGIN;
+	}
+
+	/**
+	 * Solves for the states which pass every call. The states are the state
+	 * of the Random object after construction, before any calls were made.
+	 *
+	 * @return
+	 */
+	public long[] solveStates() {
+		return solveStates(new SearchProgress(0));
+	}
+
+	/**
+	 * Solves for the states which pass every call, reporting to the progress.
+	 * The progress counts the high values that have been tested. When the
+	 * progress is cancelled the result is incomplete.
+	 *
+	 * @param progress
+	 * @return
+	 */
+	public long[] solveStates(SearchProgress progress) {
+		checkArgument(canSolve(), "The calls do not reveal enough to solve");
+
+		final int pivot = findPivot();
+		final long[] lows = solveLow();
+
+		long[] result = new long[0];
+		for (long low : lows) {
+			final long[] states = ForkJoinPool.commonPool().invoke(new HighTask(low, pivot, progress));
+
+			result = Arrays.copyOf(result, result.length + states.length);
+			System.arraycopy(states, 0, result, result.length - states.length, states.length);
+		}
+		return result;
+	}
+
+	/**
+	 * Solves for the seeds which can be passed to the Random constructor to
+	 * produce the solved states. The Random constructor discards the high 16
+	 * bits of the seed, so these are zero.
+	 *
+	 * @return
+	 */
+	public long[] solveSeeds() {
+		return solveSeeds(new SearchProgress(0));
+	}
+
+	/**
+	 * Solves for the seeds, reporting to the progress.
+	 *
+	 * @param progress
+	 * @return
+	 */
+	public long[] solveSeeds(SearchProgress progress) {
+		final long[] states = solveStates(progress);
+		for (int i = 0; i < states.length; i++) {
+			states[i] = SeedKernel.scramble(states[i]);
+		}
+		return states;
+	}
+
+	/**
+	 * Enumerates every value of the low bits of the state and keeps those
+	 * that produce the revealed bits.
+	 *
+	 * @return
+	 */
+	private long[] solveLow() {
+		final long mask = (1L << lowBits) - 1;
+		long[] result = new long[0];
+		int size = 0;
+
+		for (long low = 0; low <= mask; low++) {
+			long state = low;
+			boolean passes = true;
+
+			for (int i = 0; i < knownBits.length && passes; i++) {
+				state = kernel.jump(state, i) & mask;
+
+				final int bits = knownBits[i];
+				passes = bits == 0 || ((state >>> HIDDEN_BITS) & ((1L << bits) - 1)) == knownValues[i];
+			}
+
+			if (passes) {
+				if (size == result.length) {
+					result = Arrays.copyOf(result, Math.max(4, size * 2));
+				}
+				result[size++] = low;
+			}
+		}
+		return Arrays.copyOf(result, size);
+	}
+
+	/**
+	 * The pivot is the first call with an odd factor in the bound. The high
+	 * bits are enumerated at the state of the pivot, as this call restricts
+	 * them to a residue class.
+	 *
+	 * @return - the index of the pivot, or -1 if there is none.
+	 */
+	private int findPivot() {
+		for (int i = 0; i < kernel.calls(); i++) {
+			final int bound = kernel.bound(i);
+			if (Integer.bitCount(bound) != 1 && Long.bitCount(kernel.accepted(i)) < bound) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * This enumerates the high bits of the state at the pivot call for a
+	 * single low value. The candidates are then rewound to the initial state
+	 * and tested against every call.
+	 */
+	private class HighTask extends RecursiveTask<long[]> {
+
+		private static final long serialVersionUID = 1L;
+
+		private final long low;
+
+		private final int pivot;
+
+		private final SearchProgress progress;
+
+		private final long from, to;
+
+		HighTask(long low, int pivot, SearchProgress progress) {
+			this(low, pivot, progress, 0, 1L << (STATE_BITS - lowBits));
+		}
+
+		private HighTask(long low, int pivot, SearchProgress progress, long from, long to) {
+			this.low = low;
+			this.pivot = pivot;
+			this.progress = progress;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected long[] compute() {
+			if (to - from > SOLVE_TASK_RANGE) {
+				final long middle = from + ((to - from) / 2);
+				final HighTask first = new HighTask(low, pivot, progress, from, middle), second = new HighTask(low, pivot, progress, middle, to);
+
+				second.fork();
+				final long[] a = first.compute(), b = second.join();
+
+				final long[] result = Arrays.copyOf(a, a.length + b.length);
+				System.arraycopy(b, 0, result, a.length, b.length);
+				return result;
+			}
+
+			if (progress.isCancelled()) {
+				return new long[0];
+			}
+
+			// The low bits of the state when the pivot is called
+			final long lowMask = (1L << lowBits) - 1;
+			long pivotLow = low;
+			for (int i = 0; i <= pivot; i++) {
+				pivotLow = kernel.jump(pivotLow, i) & lowMask;
+			}
+
+			// next(31) = high * 2^shift + known, and next(31) % bound must be
+			// an accepted value. This fixes high modulo the odd part of bound.
+			final int bound = kernel.bound(pivot), shift = lowBits - HIDDEN_BITS;
+			final int odd = bound >>> Integer.numberOfTrailingZeros(bound);
+			final long known = pivotLow >>> HIDDEN_BITS;
+			final long inverse = inverse((1L << shift) % odd, odd);
+
+			long[] result = new long[0];
+			int size = 0;
+
+			for (long residues = residues(bound, odd, known, inverse); residues != 0; residues &= residues - 1) {
+				final long residue = Long.numberOfTrailingZeros(residues);
+				final long start = from + Math.floorMod(residue - from, (long) odd);
+
+				for (long high = start; high < to; high += odd) {
+					long state = (high << lowBits) | pivotLow;
+					for (int i = pivot; i >= 0; i--) {
+						state = kernel.unjump(state, i);
+					}
+
+					if (kernel.testState(state)) {
+						if (size == result.length) {
+							result = Arrays.copyOf(result, Math.max(4, size * 2));
+						}
+						result[size++] = state;
+					}
+				}
+			}
+			progress.scanned(to - from);
+			return Arrays.copyOf(result, size);
+		}
+
+		/**
+		 * @return - a mask of the high values modulo odd which can produce an
+		 *         accepted value at the pivot.
+		 */
+		private long residues(int bound, int odd, long known, long inverse) {
+			final long accepted = kernel.accepted(pivot);
+			final int shift = lowBits - HIDDEN_BITS;
+			final long knownMask = (1L << shift) - 1;
+			final int bits = Integer.numberOfTrailingZeros(bound);
+
+			long result = 0;
+			for (long mask = accepted; mask != 0; mask &= mask - 1) {
+				final int value = Long.numberOfTrailingZeros(mask);
+
+				// The value must agree with the known low bits of next(31)
+				if (((value ^ known) & knownMask & ((1L << bits) - 1)) != 0) {
+					continue;
+				}
+				result |= 1L << Math.floorMod((value - known) * inverse, (long) odd);
+			}
+			return result;
+		}
+	}
+
+	/**
+	 * @param value
+	 * @param modulus
+	 * @return - the multiplicative inverse of value modulo an odd modulus.
+	 */
+	private static long inverse(long value, long modulus) {
+		for (long i = 1; i < modulus; i++) {
+			if ((value * i) % modulus == 1) {
+				return i;
+			}
+		}
+		return modulus == 1 ? 0 : 1;
+	}
+}
@@ -0,0 +1,134 @@
+package xyz.rjs.brandwatch.supermarkets.logistics.plugins.cheater;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * This holds the states that a Random object could be in, given the
+ * observations made so far.
+ *
+ * The candidates start as every seed that could be made from a window of
+ * creation times and a set of uniquifiers. That is too many to keep in memory,
+ * so the space is scanned in blocks: each block of seeds is scrambled into
+ * states and every observation filters the block in turn. Only once few
+ * enough states pass are they kept, after which each new observation filters
+ * the kept states directly.
+ *
+ * The count is exact at all times, so it never increases between observations.
+ *
+ * @author matthew
+ */
+class Candidates {
+
+	/**
+	 * The number of seeds generated and filtered together.
+	 */
+	static final int BLOCK_SIZE = 1 << 12;
+
+	/**
+	 * The number of states that are kept in memory. Until this few pass every
+	 * observation the whole space is scanned again for each observation.
+	 */
+	static final int KEEP_LIMIT = 1 << 22;
+
+	private final long from, to;
+
+	private final long[] uniquifiers;
+
+	private final List<Observation> observations = new ArrayList<>();
+
+	/**
+	 * The states which pass every observation, or null if there are too many
+	 * to keep.
+	 */
+	private long[] states;
+
+	private int size;
+
+	/**
+	 * @param from - the earliest creation time, inclusive.
+	 * @param to - the latest creation time, exclusive.
+	 * @param uniquifiers
+	 */
+	Candidates(long from, long to, long[] uniquifiers) {
+		Preconditions.checkArgument(from < to, "The window must not be empty: %s to %s", from, to);
+		Preconditions.checkArgument(uniquifiers.length > 0, "There must be at least one uniquifier");
+		Preconditions.checkArgument((to - from) * uniquifiers.length <= Integer.MAX_VALUE, "The space is too large to count: %s seeds",
+				(to - from) * uniquifiers.length);
+
+		this.from = from;
+		this.to = to;
+		this.uniquifiers = uniquifiers.clone();
+		size = (int) ((to - from) * uniquifiers.length);
+	}
+
+	/**
+	 * Filters the candidates by another observation.
+	 *
+	 * @param observation
+	 */
+	void add(Observation observation) {
+		observations.add(observation);
+
+		if (states != null) {
+			size = observation.filter(states, size);
+		}
+		else {
+			scan();
+		}
+	}
+
+	/**
+	 * @return - the number of states which pass every observation.
+	 */
+	int size() {
+		return size;
+	}
+
+	/**
+	 * @return - the states which pass every observation, or null if there are
+	 *           too many to keep.
+	 */
+	long[] states() {
+		return states == null ? null : Arrays.copyOf(states, size);
+	}
+
+	/**
+	 * Passes every seed in the space through all of the observations, and
+	 * keeps the states which pass if there are few enough.
+	 */
+	private void scan() {
+		final long[] block = new long[BLOCK_SIZE];
+		long[] found = new long[BLOCK_SIZE];
+		int count = 0;
+
+		for (long uniquifier : uniquifiers) {
+			for (long time = from;time < to;time += BLOCK_SIZE) {
+				int length = (int) Math.min(BLOCK_SIZE, to - time);
+				for (int i = 0;i < length;i++) {
+					block[i] = Observation.scramble((time + i) ^ uniquifier);
+				}
+				for (int i = 0;i < observations.size() && length > 0;i++) {
+					length = observations.get(i).filter(block, length);
+				}
+
+				if (found != null && count + length > KEEP_LIMIT) {
+					found = null;
+				}
+				if (found != null) {
+					if (count + length > found.length) {
+						found = Arrays.copyOf(found, Math.min(KEEP_LIMIT, Math.max(count + length, 2 * found.length)));
+					}
+					System.arraycopy(block, 0, found, count, length);
+				}
+				count += length;
+			}
+		}
+
+		size = count;
+		states = found == null ? null : Arrays.copyOf(found, count);
+	}
+}
@@ -0,0 +1,315 @@
+package xyz.rjs.brandwatch.supermarkets.logistics.plugins.cheater;
+
+import xyz.rjs.brandwatch.supermarkets.logistics.plugins.cheater.Oracle.Constraint;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * This is a single call made on a Random object, and the constraint that the
+ * value it produced must pass.
+ *
+ * An observation filters a block of candidate states at once. Every state in
+ * the block is advanced by exactly the calls to next(bits) that the method of
+ * java.util.Random makes, the value is rebuilt from those bits in the same way
+ * and the states which fail the constraint are removed. The method is chosen
+ * once for the whole block, so a stream that mixes methods is filtered with
+ * the same tight loop as a stream of nextInt calls.
+ *
+ * The source code for java.util.Random advances the state like so:
+ *
+    protected int next(int bits) {
+        long oldseed, nextseed;
+        AtomicLong seed = this.seed;
+        do {
+            oldseed = seed.get();
+            nextseed = (oldseed * multiplier + addend) & mask;
+        } while (!seed.compareAndSet(oldseed, nextseed));
+        return (int)(nextseed >>> (48 - bits));
+    }
+ *
+ * @author matthew
+ */
+abstract class Observation {
+
+	static final long MULTIPLIER = 0x5DEECE66DL;
+	static final long ADDEND = 0xBL;
+	static final long MASK = (1L << 48) - 1;
+
+	private static final double DOUBLE_UNIT = 0x1.0p-53;
+	private static final float FLOAT_UNIT = 1 << 24;
+
+	/**
+	 * Advances every state and keeps those whose value passes the constraint.
+	 * The states which pass are moved to the front of the array, in order.
+	 *
+	 * @param states
+	 * @param length - the number of states in the array which are in use.
+	 * @return - the number of states which passed.
+	 */
+	abstract int filter(long[] states, int length);
+
+	/**
+	 * @param state
+	 * @return - the state after a single call to next(bits).
+	 */
+	static long step(long state) {
+		return (state * MULTIPLIER + ADDEND) & MASK;
+	}
+
+	/**
+	 * @param seed - the seed given to the Random constructor.
+	 * @return - the initial state of the Random object.
+	 */
+	static long scramble(long seed) {
+		return (seed ^ MULTIPLIER) & MASK;
+	}
+
+	/**
+	 * @param constraint
+	 * @return - true if the constraint accepts every value, so that it does not
+	 *           need to be tested.
+	 */
+	static boolean isAny(Constraint<?> constraint) {
+		return constraint == Constraint.ANY;
+	}
+
+	/**
+	 * An unobserved call which always makes the same number of calls to
+	 * next(bits). The steps are combined into a single multiply and add.
+	 *
+	 * @param steps
+	 * @return
+	 */
+	static Observation skip(int steps) {
+		long multiplier = 1, addend = 0;
+		for (int i = 0;i < steps;i++) {
+			multiplier = multiplier * MULTIPLIER;
+			addend = addend * MULTIPLIER + ADDEND;
+		}
+		final long jumpMultiplier = multiplier & MASK, jumpAddend = addend & MASK;
+
+		return new Observation() {
+			@Override
+			int filter(long[] states, int length) {
+				for (int i = 0;i < length;i++) {
+					states[i] = (states[i] * jumpMultiplier + jumpAddend) & MASK;
+				}
+				return length;
+			}
+		};
+	}
+
+	/**
+	 * <pre>{@code
+	 * public int nextInt() {
+	 *   return next(32);
+	 * }}</pre>
+	 *
+	 * @param constraint
+	 * @return
+	 */
+	static Observation nextInt(Constraint<Integer> constraint) {
+		if (isAny(constraint)) {
+			return skip(1);
+		}
+
+		return new Observation() {
+			@Override
+			int filter(long[] states, int length) {
+				int kept = 0;
+				for (int i = 0;i < length;i++) {
+					final long state = step(states[i]);
+					if (constraint.passes((int) (state >>> 16))) {
+						states[kept++] = state;
+					}
+				}
+				return kept;
+			}
+		};
+	}
+
+	/**
+	 * <pre>{@code
+	 * public int nextInt(int bound) {
+	 *   int r = next(31);
+	 *   int m = bound - 1;
+	 *   if ((bound & m) == 0)  // i.e., bound is a power of 2
+	 *     r = (int)((bound * (long)r) >> 31);
+	 *   else {
+	 *     for (int u = r;
+	 *          u - (r = u % bound) + m < 0;
+	 *          u = next(31))
+	 *       ;
+	 *   }
+	 *   return r;
+	 * }}</pre>
+	 *
+	 * A power of two always makes a single call to next(31). Any other bound
+	 * makes another call every time a value is rejected, so the number of
+	 * steps is decided separately for each state, even when the value is not
+	 * observed.
+	 *
+	 * @param constraint
+	 * @param bound
+	 * @return
+	 */
+	static Observation nextInt(Constraint<Integer> constraint, int bound) {
+		Preconditions.checkArgument(bound > 0, "The bound must be positive: %s", bound);
+		final int m = bound - 1;
+		final boolean any = isAny(constraint);
+
+		if ((bound & m) == 0) {
+			if (any) {
+				return skip(1);
+			}
+			return new Observation() {
+				@Override
+				int filter(long[] states, int length) {
+					int kept = 0;
+					for (int i = 0;i < length;i++) {
+						final long state = step(states[i]);
+						if (constraint.passes((int) ((bound * (state >>> 17)) >> 31))) {
+							states[kept++] = state;
+						}
+					}
+					return kept;
+				}
+			};
+		}
+
+		return new Observation() {
+			@Override
+			int filter(long[] states, int length) {
+				int kept = 0;
+				for (int i = 0;i < length;i++) {
+					long state = step(states[i]);
+					int u = (int) (state >>> 17), r;
+					while (u - (r = u % bound) + m < 0) {
+						state = step(state);
+						u = (int) (state >>> 17);
+					}
+					if (any || constraint.passes(r)) {
+						states[kept++] = state;
+					}
+				}
+				return kept;
+			}
+		};
+	}
+
+	/**
+	 * <pre>{@code
+	 * public long nextLong() {
+	 *   return ((long)next(32) << 32) + next(32);
+	 * }}</pre>
+	 *
+	 * @param constraint
+	 * @return
+	 */
+	static Observation nextLong(Constraint<Long> constraint) {
+		if (isAny(constraint)) {
+			return skip(2);
+		}
+
+		return new Observation() {
+			@Override
+			int filter(long[] states, int length) {
+				int kept = 0;
+				for (int i = 0;i < length;i++) {
+					final long high = step(states[i]), low = step(high);
+					if (constraint.passes(((long) (int) (high >>> 16) << 32) + (int) (low >>> 16))) {
+						states[kept++] = low;
+					}
+				}
+				return kept;
+			}
+		};
+	}
+
+	/**
+	 * <pre>{@code
+	 * public boolean nextBoolean() {
+	 *   return next(1) != 0;
+	 * }}</pre>
+	 *
+	 * @param constraint
+	 * @return
+	 */
+	static Observation nextBoolean(Constraint<Boolean> constraint) {
+		if (isAny(constraint)) {
+			return skip(1);
+		}
+
+		return new Observation() {
+			@Override
+			int filter(long[] states, int length) {
+				int kept = 0;
+				for (int i = 0;i < length;i++) {
+					final long state = step(states[i]);
+					if (constraint.passes((state >>> 47) != 0)) {
+						states[kept++] = state;
+					}
+				}
+				return kept;
+			}
+		};
+	}
+
+	/**
+	 * <pre>{@code
+	 * public float nextFloat() {
+	 *   return next(24) / ((float)(1 << 24));
+	 * }}</pre>
+	 *
+	 * @param constraint
+	 * @return
+	 */
+	static Observation nextFloat(Constraint<Float> constraint) {
+		if (isAny(constraint)) {
+			return skip(1);
+		}
+
+		return new Observation() {
+			@Override
+			int filter(long[] states, int length) {
+				int kept = 0;
+				for (int i = 0;i < length;i++) {
+					final long state = step(states[i]);
+					if (constraint.passes((int) (state >>> 24) / FLOAT_UNIT)) {
+						states[kept++] = state;
+					}
+				}
+				return kept;
+			}
+		};
+	}
+
+	/**
+	 * <pre>{@code
+	 * public double nextDouble() {
+	 *   return (((long)(next(26)) << 27) + next(27)) * DOUBLE_UNIT;
+	 * }}</pre>
+	 *
+	 * @param constraint
+	 * @return
+	 */
+	static Observation nextDouble(Constraint<Double> constraint) {
+		if (isAny(constraint)) {
+			return skip(2);
+		}
+
+		return new Observation() {
+			@Override
+			int filter(long[] states, int length) {
+				int kept = 0;
+				for (int i = 0;i < length;i++) {
+					final long high = step(states[i]), low = step(high);
+					if (constraint.passes((((high >>> 22) << 27) + (low >>> 21)) * DOUBLE_UNIT)) {
+						states[kept++] = low;
+					}
+				}
+				return kept;
+			}
+		};
+	}
+}
@@ -1,9 +1,13 @@
 package xyz.rjs.brandwatch.supermarkets.logistics.plugins.cheater;
 
-import java.util.HashSet;
+import java.lang.reflect.Field;
+import java.util.LinkedHashSet;
 import java.util.Random;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
 
+import com.google.common.base.Preconditions;
+import com.google.common.primitives.Longs;
 
 /**
  * This predicts the values that java.util.Random objects will produce.
@@ -51,6 +55,15 @@ import java.util.Set;
  * can reduce the space by a factor it should only take a few to narrow down to
  * the single starting seed.
  *
+ * Each call is recorded as an Observation, which consumes exactly the bits of
+ * the random stream that the method of java.util.Random consumes, and the
+ * Candidates are filtered by it in blocks.
+ *
+ * A default Oracle searches the Random objects created shortly before it. These
+ * use the uniquifiers just before the current one, which is read from
+ * java.util.Random. The first few uniquifiers used by the program are searched
+ * instead if it cannot be read.
+ *
  * @author matthew
  */
 public class Oracle {
@@ -64,18 +77,67 @@ public class Oracle {
 	private static final long SEED_UNIQUIFIER_INITIAL_VALUE = 8682522807148012L;
 	private static final long SEED_UNIQUIFIER_FACTOR = 181783497276652981L;
 
+	/**
+	 * The number of uniquifiers, from the start of the program, that are
+	 * searched if the current uniquifier cannot be read.
+	 */
+	private static final int SEED_UNIQUIFIER_COUNT = 10;
+
+	/**
+	 * The number of uniquifiers, up to the most recent, that are searched by
+	 * default.
+	 */
+	private static final int RECENT_SEED_UNIQUIFIER_COUNT = 8;
+
+	/**
+	 * The time before the creation of the Oracle that is searched by default.
+	 * A Random object in a static field can be created tens of milliseconds
+	 * before it is first used, while classes are loaded.
+	 */
+	private static final long DEFAULT_TIME_RANGE_NANOS = 1L << 26;
+
 	private static final Set<Long> seedUniquifierValues;
-	
+
 	static {
 		long value = SEED_UNIQUIFIER_INITIAL_VALUE;
-		seedUniquifierValues = new HashSet<Long>();
+		seedUniquifierValues = new LinkedHashSet<Long>();
 
-		for (int i = 0;i < 10;i++) {
-			seedUniquifierValues.add(value);
+		// The first Random object uses the initial value multiplied once
+		for (int i = 0;i < SEED_UNIQUIFIER_COUNT;i++) {
 			value *= SEED_UNIQUIFIER_FACTOR;
+			seedUniquifierValues.add(value);
 		}
 	}
 
+	private final Candidates candidates;
+
+	/**
+	 * Creates an Oracle for a Random object created a short time before it.
+	 * Nothing slow, such as a logger, is loaded with this class, as that would
+	 * delay the start of the window.
+	 */
+	public Oracle() {
+		final long startingTime = System.nanoTime();
+		Set<Long> uniquifiers = recentUniquifiers();
+		if (uniquifiers.isEmpty()) {
+			uniquifiers = seedUniquifierValues;
+		}
+
+		candidates = new Candidates(startingTime - DEFAULT_TIME_RANGE_NANOS, startingTime + 1, Longs.toArray(uniquifiers));
+	}
+
+	/**
+	 * Creates an Oracle for a Random object created with System.nanoTime in
+	 * the window and one of the uniquifiers.
+	 *
+	 * @param from - the earliest creation time, inclusive.
+	 * @param to - the latest creation time, exclusive.
+	 * @param uniquifiers
+	 */
+	public Oracle(long from, long to, long... uniquifiers) {
+		candidates = new Candidates(from, to, uniquifiers);
+	}
+
 	/**
 	 * This should be called when the random object has experienced a nextDouble call.
 	 * The implementation of this varies based on the version of Java. From the documentation:
@@ -99,22 +161,68 @@ public class Oracle {
 	 *
 	 * @param constraint - a test that the generated value must pass.
 	 */
-	public void calledNextDouble(Constraint<Double> constraint) {}
+	public void calledNextDouble(Constraint<Double> constraint) {
+		candidates.add(Observation.nextDouble(constraint));
+	}
 
 	/**
 	 * This should be called when the random object has experienced a nextInt(bound) call.
-	 * The implementation 
+	 * The implementation takes the top bits of a single call to next(31) when the bound is a
+	 * power of two. Otherwise it takes the remainder, and rejects values from the top of the
+	 * range so that every remainder is equally likely. Each rejection calls next(31) again.
 	 *
 	 * @param constraint
 	 * @param bound
 	 */
-	public void calledNextInt(Constraint<Integer> constraint, int bound) {}
+	public void calledNextInt(Constraint<Integer> constraint, int bound) {
+		candidates.add(Observation.nextInt(constraint, bound));
+	}
+
+	/**
+	 * This should be called when the random object has experienced a nextInt() call, which
+	 * takes a single call to next(32).
+	 *
+	 * @param constraint
+	 */
+	public void calledNextInt(Constraint<Integer> constraint) {
+		candidates.add(Observation.nextInt(constraint));
+	}
+
+	/**
+	 * This should be called when the random object has experienced a nextLong() call, which
+	 * takes two calls to next(32).
+	 *
+	 * @param constraint
+	 */
+	public void calledNextLong(Constraint<Long> constraint) {
+		candidates.add(Observation.nextLong(constraint));
+	}
+
+	/**
+	 * This should be called when the random object has experienced a nextBoolean() call, which
+	 * takes a single call to next(1).
+	 *
+	 * @param constraint
+	 */
+	public void calledNextBoolean(Constraint<Boolean> constraint) {
+		candidates.add(Observation.nextBoolean(constraint));
+	}
+
+	/**
+	 * This should be called when the random object has experienced a nextFloat() call, which
+	 * takes a single call to next(24).
+	 *
+	 * @param constraint
+	 */
+	public void calledNextFloat(Constraint<Float> constraint) {
+		candidates.add(Observation.nextFloat(constraint));
+	}
 
 	/**
 	 * @return - the number of valid seeds left.
 	 */
 	public int size() {
-		throw new RuntimeException("Not implemented");
+		return candidates.size();
 	}
 
 	/**
@@ -125,7 +233,46 @@ public class Oracle {
 	 * @return
 	 */
 	public Random getRandom() {
-		throw new RuntimeException("Not implemented");
+		Preconditions.checkState(candidates.size() == 1, "The oracle is not sure, %s seeds are valid", candidates.size());
+
+		// The constructor scrambles the seed again, which undoes this
+		return new Random(candidates.states()[0] ^ Observation.MULTIPLIER);
+	}
+
+	/**
+	 * @return - the uniquifiers of the most recently created Random objects,
+	 *           most recent first.
+	 */
+	private static Set<Long> recentUniquifiers() {
+		final Set<Long> result = new LinkedHashSet<>();
+		try {
+			final Field field = Random.class.getDeclaredField("seedUniquifier");
+			field.setAccessible(true);
+
+			long value = ((AtomicLong) field.get(null)).get();
+			final long inverse = inverse(SEED_UNIQUIFIER_FACTOR);
+			for (int i = 0;i < RECENT_SEED_UNIQUIFIER_COUNT && value != SEED_UNIQUIFIER_INITIAL_VALUE;i++) {
+				result.add(value);
+				value *= inverse;
+			}
+		}
+		catch (ReflectiveOperationException | RuntimeException e) {
+			// The first uniquifiers are searched instead
+		}
+		return result;
+	}
+
+	/**
+	 * @param odd
+	 * @return - the multiplicative inverse of the odd value modulo 2^64.
+	 */
+	private static long inverse(long odd) {
+		long inverse = odd;
+		// Each round doubles the number of correct bits, from the 3 that are correct to start with
+		for (int i = 0;i < 5;i++) {
+			inverse *= 2 - odd * inverse;
+		}
+		return inverse;
 	}
 
 	public static interface Constraint<T> {
@@ -135,6 +282,14 @@ public class Oracle {
 		 */
 		public static final Constraint<?> ANY = o -> true;
 
+		/**
+		 * @return - ANY, typed to match the call that was made.
+		 */
+		@SuppressWarnings("unchecked")
+		public static <T> Constraint<T> any() {
+			return (Constraint<T>) ANY;
+		}
+
 		/**
 		 * This tests the value to see if it passes the constraint.
 		 *
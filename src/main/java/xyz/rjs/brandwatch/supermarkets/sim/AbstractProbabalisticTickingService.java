@@ -7,11 +7,20 @@ import java.util.Random;
 
 public abstract class AbstractProbabalisticTickingService extends AbstractTickingService {
     private double probability;
-    private Random random = new Random();
+    private Random random;
 
     public AbstractProbabalisticTickingService(EventBus eventBus, double probability) {
-        super(eventBus);
+        this(eventBus, null, probability);
+    }
+
+    public AbstractProbabalisticTickingService(EventBus eventBus, TickCalendar calendar, double probability) {
+        this(eventBus, calendar, probability, new Random());
+    }
+
+    protected AbstractProbabalisticTickingService(EventBus eventBus, TickCalendar calendar, double probability, Random random) {
+        super(eventBus, calendar);
         this.probability = probability;
+        this.random = random;
     }
 
     @Override
@@ -21,5 +30,23 @@ public abstract class AbstractProbabalisticTickingService extends AbstractTickin
         }
     }
 
+    /**
+     * Makes the draws that each tick would make until one is below the
+     * probability, so the Random object produces the same values as when
+     * every tick is handled.
+     */
+    @Override
+    protected int nextWakeUp(int tick) {
+        while (random.nextDouble() >= probability) {
+            tick++;
+        }
+        return tick;
+    }
+
+    @Override
+    protected void wake(ClockTick tick) {
+        probableTick(tick);
+    }
+
     protected abstract void probableTick(ClockTick tick);
 }
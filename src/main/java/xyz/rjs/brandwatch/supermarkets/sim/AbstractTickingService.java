@@ -6,25 +6,90 @@ import com.google.common.eventbus.EventBus;
 import com.google.common.eventbus.Subscribe;
 import com.google.common.util.concurrent.AbstractIdleService;
 
+/**
+ * A service which is sent every ClockTick, or which is woken by a TickCalendar
+ * only on the ticks returned by nextWakeUp.
+ */
 public abstract class AbstractTickingService extends AbstractIdleService {
 
     protected EventBus eventBus;
+    protected final TickCalendar calendar;
+    private final TickListener tickListener = new TickListener();
+    private volatile boolean stopped = false;
 
     public AbstractTickingService(EventBus eventBus) {
+        this(eventBus, null);
+    }
+
+    /**
+     * @param eventBus
+     * @param calendar - the calendar that wakes the service, or null to send
+     *            the service every tick
+     */
+    public AbstractTickingService(EventBus eventBus, TickCalendar calendar) {
         this.eventBus = eventBus;
+        this.calendar = calendar;
     }
 
-    @Subscribe
     public abstract void tick(ClockTick tick);
 
+    /**
+     * @param tick
+     * @return - the first tick at or after the tick on which the service must
+     *         be woken
+     */
+    protected int nextWakeUp(int tick) {
+        return tick;
+    }
+
+    /**
+     * Called on each tick returned by nextWakeUp.
+     *
+     * @param tick
+     */
+    protected void wake(ClockTick tick) {
+        tick(tick);
+    }
 
     @Override
     protected void startUp() throws Exception {
         eventBus.register(this);
+        if (calendar == null) {
+            eventBus.register(tickListener);
+        } else {
+            schedule(calendar.nextTick());
+        }
     }
 
     @Override
     protected void shutDown() throws Exception {
+        stopped = true;
         eventBus.unregister(this);
+        if (calendar == null) {
+            eventBus.unregister(tickListener);
+        }
+    }
+
+    private void schedule(int tick) {
+        calendar.schedule(nextWakeUp(tick), this::woken);
+    }
+
+    private void woken(ClockTick tick) {
+        if (stopped) {
+            return;
+        }
+        wake(tick);
+        schedule(tick.getTick() + 1);
+    }
+
+    /**
+     * Sends every tick to the service. This is registered separately so that
+     * a service woken by the calendar does not handle every tick.
+     */
+    public class TickListener {
+        @Subscribe
+        public void tick(ClockTick tick) {
+            AbstractTickingService.this.tick(tick);
+        }
     }
 }
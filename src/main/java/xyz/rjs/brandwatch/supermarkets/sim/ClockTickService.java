@@ -1,17 +1,45 @@
 package xyz.rjs.brandwatch.supermarkets.sim;
 
 import java.util.concurrent.TimeUnit;
+import java.util.function.IntPredicate;
 
 import xyz.rjs.brandwatch.supermarkets.model.events.ClockTick;
 
 import com.google.common.eventbus.EventBus;
 import com.google.common.util.concurrent.AbstractScheduledService;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.ServiceManager;
 
+/**
+ * Posts a ClockTick at a fixed rate, or with a virtual clock posts each tick as
+ * soon as every handler of the previous tick has returned. The EventBus
+ * delivers events on the posting thread, so a virtual run is bound only by the
+ * work that the handlers do.
+ *
+ * The clock stops itself after the tick limit, or after the tick on which the
+ * stop condition holds. When it is started with other services it can hold its
+ * ticks until they are all running, see holdUntilHealthy.
+ *
+ * When skipping idle ticks the clock only posts the ticks on which the
+ * TickCalendar has work to do. A virtual clock jumps straight to them, and a
+ * fixed rate clock lets the others pass silently. This is only safe when every
+ * handler of ClockTick that has work to do is woken through the calendar, and
+ * the stop condition is only tested with the ticks that are posted.
+ */
 public class ClockTickService extends AbstractScheduledService {
+    /** How often a held virtual clock checks if it has been released */
+    private static final long HOLD_MILLIS = 10;
+
     private int ticksPerSecond;
+    private boolean virtualClock;
+    private int tickLimit = -1;
+    private IntPredicate stopCondition;
+    private TickCalendar calendar;
+    private boolean skipIdleTicks;
     private final EventBus eventBus;
 
     private volatile int ticks = 0;
+    private volatile boolean held = false;
 
     public ClockTickService(EventBus eventBus) {
         this.eventBus = eventBus;
@@ -21,13 +49,143 @@ public class ClockTickService extends AbstractScheduledService {
         this.ticksPerSecond = ticksPerSecond;
     }
 
+    /**
+     * @param virtualClock - if ticks are posted back to back instead of at the
+     *            rate of ticks per second
+     */
+    public void setVirtualClock(boolean virtualClock) {
+        this.virtualClock = virtualClock;
+    }
+
+    /**
+     * @param tickLimit - the number of ticks to post, or -1 for no limit
+     */
+    public void setTickLimit(int tickLimit) {
+        this.tickLimit = tickLimit;
+    }
+
+    /**
+     * @param stopCondition - tested with each tick after it has been handled,
+     *            or null to run until the tick limit
+     */
+    public void setStopCondition(IntPredicate stopCondition) {
+        this.stopCondition = stopCondition;
+    }
+
+    /**
+     * @param calendar - the calendar of the ticks that are not idle
+     */
+    public void setCalendar(TickCalendar calendar) {
+        this.calendar = calendar;
+    }
+
+    /**
+     * @param skipIdleTicks - if ticks on which nothing is scheduled in the
+     *            calendar are not posted
+     */
+    public void setSkipIdleTicks(boolean skipIdleTicks) {
+        this.skipIdleTicks = skipIdleTicks;
+    }
+
+    /**
+     * Holds the ticks until every service of the manager is running, so that
+     * no service misses the first ticks. The manager starts its services
+     * concurrently, and a service which registers its handlers in startUp
+     * would otherwise miss the ticks posted before it.
+     *
+     * @param services - the manager which starts this clock, before it is
+     *            started
+     */
+    public void holdUntilHealthy(ServiceManager services) {
+        held = true;
+        services.addListener(new ServiceManager.Listener() {
+            @Override
+            public void healthy() {
+                held = false;
+            }
+        }, MoreExecutors.directExecutor());
+    }
+
+    /**
+     * @return - if the clock stops itself
+     */
+    public boolean isBounded() {
+        return tickLimit >= 0 || stopCondition != null;
+    }
+
+    public int getTicks() {
+        return ticks;
+    }
+
     @Override
     protected void runOneIteration() throws Exception {
-        eventBus.post(new ClockTick(ticks++));
+        if (held) {
+            return;
+        }
+        if (!virtualClock) {
+            tick();
+            return;
+        }
+
+        while (isRunning() && tick()) {
+        }
+    }
+
+    /**
+     * Posts the next tick, and stops the clock after the last one.
+     *
+     * @return - if there are more ticks to post
+     */
+    private boolean tick() {
+        if (skipIdleTicks && calendar != null) {
+            int next = nextBusyTick();
+            if (!virtualClock && next > ticks) {
+                ticks++;
+                return true;
+            }
+            ticks = next;
+        }
+
+        if (tickLimit >= 0 && ticks >= tickLimit) {
+            stopAsync();
+            return false;
+        }
+
+        int tick = ticks++;
+        eventBus.post(new ClockTick(tick));
+
+        if (ticks == tickLimit || stopCondition != null && stopCondition.test(tick)) {
+            stopAsync();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * @return - the first tick from the current one on which something is
+     *         scheduled, or the tick limit if that comes first. The current
+     *         tick if nothing is scheduled
+     */
+    private int nextBusyTick() {
+        int next = calendar.nextScheduledTick();
+        if (next < 0) {
+            // Nothing is waiting, but the services may not have scheduled yet
+            // and the handlers of a tick may schedule more
+            return ticks;
+        }
+        if (tickLimit >= 0) {
+            next = Math.min(next, tickLimit);
+        }
+        return Math.max(ticks, next);
     }
 
     @Override
     protected Scheduler scheduler() {
+        if (virtualClock) {
+            // The first iteration that is not held posts every tick until the clock stops
+            return AbstractScheduledService.Scheduler.newFixedDelaySchedule(0, HOLD_MILLIS, TimeUnit.MILLISECONDS);
+        }
+
         int millis = 1000/ticksPerSecond;
         return AbstractScheduledService.Scheduler.newFixedRateSchedule(millis, millis, TimeUnit.MILLISECONDS);
     }
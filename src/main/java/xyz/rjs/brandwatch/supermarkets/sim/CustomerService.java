@@ -14,7 +14,11 @@ public class CustomerService extends AbstractProbabalisticTickingService {
     private final int maxNeeded = 7;
 
     public CustomerService(EventBus eventBus) {
-        super(eventBus, 0.1);
+        this(eventBus, null);
+    }
+
+    public CustomerService(EventBus eventBus, TickCalendar calendar) {
+        super(eventBus, calendar, 0.1);
     }
 
     @Override
@@ -7,6 +7,8 @@ import org.slf4j.LoggerFactory;
 import org.springframework.context.annotation.AnnotationConfigApplicationContext;
 import org.springframework.stereotype.Component;
 
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.Service;
 import com.google.common.util.concurrent.ServiceManager;
 
 @Component
@@ -27,6 +29,22 @@ public class Main {
         Main main = context.getBean(Main.class);
         main.runSimulation();
         ServiceManager simulationServiceManager = context.getBean(ServiceManager.class);
+        ClockTickService clockTickService = context.getBean(ClockTickService.class);
+
+        // A clock which stops itself ends the simulation
+        clockTickService.addListener(new Service.Listener() {
+            @Override
+            public void terminated(Service.State from) {
+                simulationServiceManager.stopAsync();
+            }
+        }, MoreExecutors.directExecutor());
+
         simulationServiceManager.startAsync();
+
+        if (clockTickService.isBounded()) {
+            simulationServiceManager.awaitStopped();
+            main.logger.info("Simulation stopped after {} ticks", clockTickService.getTicks());
+            context.close();
+        }
     }
 }
@@ -11,17 +11,49 @@ import com.google.common.collect.ImmutableList;
 import com.google.common.eventbus.EventBus;
 import com.google.common.util.concurrent.ServiceManager;
 
+/**
+ * The clock can be configured with system properties:
+ * <ul>
+ * <li>supermarkets.clock.ticksPerSecond - the rate of the clock, 1 by default</li>
+ * <li>supermarkets.clock.virtual - post ticks back to back, ignoring the rate</li>
+ * <li>supermarkets.clock.ticks - the number of ticks to run, after which the
+ * simulation stops</li>
+ * <li>supermarkets.clock.skipIdleTicks - only post the ticks on which a
+ * simulation service is woken. Handlers of ClockTick outside the simulation
+ * are not sent the others, so this is only for plugins which do not need every
+ * tick</li>
+ * </ul>
+ */
 @Configuration
 @Import(LogisticsConfiguration.class)
 public class SimConfiguration {
+    static final String TICKS_PER_SECOND_PROPERTY = "supermarkets.clock.ticksPerSecond";
+    static final String VIRTUAL_CLOCK_PROPERTY = "supermarkets.clock.virtual";
+    static final String TICK_LIMIT_PROPERTY = "supermarkets.clock.ticks";
+    static final String SKIP_IDLE_TICKS_PROPERTY = "supermarkets.clock.skipIdleTicks";
+
     @Bean
     public Main main() {
         return new Main();
     }
 
-    private ClockTickService clockTickService(EventBus eventBus) {
+    @Bean
+    @Autowired
+    public TickCalendar tickCalendar(EventBus eventBus) {
+        TickCalendar calendar = new TickCalendar();
+        eventBus.register(calendar);
+        return calendar;
+    }
+
+    @Bean
+    @Autowired
+    public ClockTickService clockTickService(EventBus eventBus, TickCalendar calendar) {
         ClockTickService clockTickService = new ClockTickService(eventBus);
-        clockTickService.setTicksPerSecond(1);
+        clockTickService.setTicksPerSecond(Integer.getInteger(TICKS_PER_SECOND_PROPERTY, 1));
+        clockTickService.setVirtualClock(Boolean.getBoolean(VIRTUAL_CLOCK_PROPERTY));
+        clockTickService.setTickLimit(Integer.getInteger(TICK_LIMIT_PROPERTY, -1));
+        clockTickService.setCalendar(calendar);
+        clockTickService.setSkipIdleTicks(Boolean.getBoolean(SKIP_IDLE_TICKS_PROPERTY));
         return clockTickService;
     }
 
@@ -40,13 +72,17 @@ public class SimConfiguration {
 
     @Bean
     @Autowired
-    public ServiceManager simulationServiceManager(EventBus eventBus, Shop shop, Warehouse warehouse) {
-        return new ServiceManager(ImmutableList.of(
-                clockTickService(eventBus),
-                new Supermarket(eventBus),
-                new Supplier(eventBus),
-                new CustomerService(eventBus),
+    public ServiceManager simulationServiceManager(EventBus eventBus, TickCalendar calendar, ClockTickService clockTickService, Shop shop, Warehouse warehouse) {
+        // The services are only woken through the calendar when idle ticks are skipped
+        TickCalendar serviceCalendar = Boolean.getBoolean(SKIP_IDLE_TICKS_PROPERTY) ? calendar : null;
+        ServiceManager serviceManager = new ServiceManager(ImmutableList.of(
+                clockTickService,
+                new Supermarket(eventBus, serviceCalendar),
+                new Supplier(eventBus, serviceCalendar),
+                new CustomerService(eventBus, serviceCalendar),
                 shop,
                 new WarehouseManagementService(eventBus, warehouse, shop)));
+        clockTickService.holdUntilHealthy(serviceManager);
+        return serviceManager;
     }
 }
@@ -8,19 +8,25 @@ import java.util.Random;
 
 public class Supermarket extends AbstractTickingService {
 
+    private static final int BALANCE_INTERVAL = 20;
+
     private Random random = new Random();
     private int balance = 100 + (random.nextInt(30) - 15);
     private int salePrice = 10;
     private int currentBuyPrice;
 
     public Supermarket(EventBus eventBus) {
-        super(eventBus);
+        this(eventBus, null);
+    }
+
+    public Supermarket(EventBus eventBus, TickCalendar calendar) {
+        super(eventBus, calendar);
     }
 
     @Override
     public void tick(ClockTick tick) {
         try {
-            if (tick.getTick() % 20 == 0) {
+            if (tick.getTick() % BALANCE_INTERVAL == 0) {
                 eventBus.post(new Balance(balance));
             }
         } catch (Exception e) {
@@ -28,6 +34,12 @@ public class Supermarket extends AbstractTickingService {
         }
     }
 
+    @Override
+    protected int nextWakeUp(int tick) {
+        int remainder = tick % BALANCE_INTERVAL;
+        return remainder == 0 ? tick : tick + BALANCE_INTERVAL - remainder;
+    }
+
     @Subscribe
     public void processSale(Sale sale) {
         balance += (sale.getAmountSold() * salePrice);
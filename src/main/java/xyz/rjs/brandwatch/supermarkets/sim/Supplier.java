@@ -16,7 +16,11 @@ public class Supplier extends AbstractProbabalisticTickingService {
     private int distanceFromWarehouse = 20 + (random.nextInt(10) - 5);
 
     public Supplier(EventBus eventBus) {
-        super(eventBus, 0.07);
+        this(eventBus, null);
+    }
+
+    public Supplier(EventBus eventBus, TickCalendar calendar) {
+        super(eventBus, calendar, 0.07);
         probableTick(new ClockTick(0));
     }
 
@@ -31,7 +35,7 @@ public class Supplier extends AbstractProbabalisticTickingService {
 
     @Subscribe
     public void receiveOrder(Order order) {
-        new Delivery(eventBus, distanceFromWarehouse, order.getWarehouse(), order.getVolume());
+        new Delivery(eventBus, calendar, distanceFromWarehouse, order.getWarehouse(), order.getVolume());
     }
 
 }
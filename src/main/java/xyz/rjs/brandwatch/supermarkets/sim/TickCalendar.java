@@ -0,0 +1,104 @@
+package xyz.rjs.brandwatch.supermarkets.sim;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.function.Consumer;
+
+import xyz.rjs.brandwatch.supermarkets.model.events.ClockTick;
+
+import com.google.common.eventbus.Subscribe;
+
+/**
+ * A calendar of the ticks on which the simulation has work to do. Instead of
+ * handling every ClockTick a service schedules the next tick it must be woken
+ * on, and the calendar wakes it when that tick is posted.
+ *
+ * The calendar is registered on the EventBus like any other ClockTick handler,
+ * so the events posted by the actions it wakes are delivered in the same order
+ * as those posted by handlers of every tick. Actions scheduled for the same
+ * tick are woken in the order they were scheduled.
+ *
+ * Services may be started on other threads while the clock is running, so the
+ * calendar is synchronised. The actions are run without holding the lock.
+ */
+public class TickCalendar {
+
+    private static class Entry implements Comparable<Entry> {
+        private final int tick;
+        private final long sequence;
+        private final Consumer<ClockTick> action;
+
+        Entry(int tick, long sequence, Consumer<ClockTick> action) {
+            this.tick = tick;
+            this.sequence = sequence;
+            this.action = action;
+        }
+
+        @Override
+        public int compareTo(Entry other) {
+            return tick != other.tick ? Integer.compare(tick, other.tick) : Long.compare(sequence, other.sequence);
+        }
+    }
+
+    private final PriorityQueue<Entry> entries = new PriorityQueue<>();
+    private long sequence = 0;
+    private int nextTick = 0;
+
+    /**
+     * @return - the next tick that will be posted, which is the earliest tick
+     *         that can be scheduled
+     */
+    public synchronized int nextTick() {
+        return nextTick;
+    }
+
+    /**
+     * @return - the earliest tick with an action, or -1 if there is none
+     */
+    public synchronized int nextScheduledTick() {
+        return entries.isEmpty() ? -1 : entries.peek().tick;
+    }
+
+    /**
+     * @return - the number of actions waiting for their tick
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Schedules an action to run when the tick is posted.
+     *
+     * @param tick - at or after the next tick
+     * @param action
+     */
+    public synchronized void schedule(int tick, Consumer<ClockTick> action) {
+        checkArgument(tick >= nextTick, "Tick %s has already been posted", tick);
+
+        entries.add(new Entry(tick, sequence++, action));
+    }
+
+    /**
+     * Wakes the actions scheduled for the tick, or for any earlier tick which
+     * was not posted.
+     *
+     * @param tick
+     */
+    @Subscribe
+    public void tick(ClockTick tick) {
+        List<Entry> due = new ArrayList<>();
+        synchronized (this) {
+            nextTick = Math.max(nextTick, tick.getTick() + 1);
+            while (!entries.isEmpty() && entries.peek().tick <= tick.getTick()) {
+                due.add(entries.poll());
+            }
+        }
+
+        for (Entry entry : due) {
+            entry.action.accept(tick);
+        }
+    }
+}
@@ -3,19 +3,39 @@ package xyz.rjs.brandwatch.supermarkets.sim.travel;
 import com.google.common.eventbus.EventBus;
 import com.google.common.eventbus.Subscribe;
 import xyz.rjs.brandwatch.supermarkets.model.events.ClockTick;
+import xyz.rjs.brandwatch.supermarkets.sim.TickCalendar;
 
 import java.util.Random;
 
 public abstract class AbstractTravellingAction {
     private EventBus eventBus;
     private int distance;
-    private Random random = new Random();
+    private Random random;
     private double delayProbability = 0.1;
 
     public AbstractTravellingAction(EventBus eventBus, int distance) {
+        this(eventBus, null, distance);
+    }
+
+    /**
+     * @param eventBus
+     * @param calendar - schedules the arrival, or null to count down the
+     *            distance on every tick
+     * @param distance
+     */
+    public AbstractTravellingAction(EventBus eventBus, TickCalendar calendar, int distance) {
+        this(eventBus, calendar, distance, new Random());
+    }
+
+    protected AbstractTravellingAction(EventBus eventBus, TickCalendar calendar, int distance, Random random) {
         this.eventBus = eventBus;
         this.distance = distance;
-        eventBus.register(this);
+        this.random = random;
+        if (calendar == null) {
+            eventBus.register(this);
+        } else {
+            calendar.schedule(arrival(calendar.nextTick()), tick -> arrivalAction());
+        }
     }
 
     @Subscribe
@@ -29,6 +49,24 @@ public abstract class AbstractTravellingAction {
         }
     }
 
+    /**
+     * Makes the draws that tick would make from the first tick, so the Random
+     * object produces the same values as when every tick is handled.
+     *
+     * @param tick - the first tick of the journey
+     * @return - the tick of the arrival
+     */
+    private int arrival(int tick) {
+        for (;; tick++) {
+            if (random.nextDouble() < delayProbability) {
+                continue;
+            }
+            if (distance-- <= 0) {
+                return tick;
+            }
+        }
+    }
+
     protected abstract void arrivalAction();
 
 }
@@ -2,13 +2,18 @@ package xyz.rjs.brandwatch.supermarkets.sim.travel;
 
 import com.google.common.eventbus.EventBus;
 import xyz.rjs.brandwatch.supermarkets.sim.DeliverablePlace;
+import xyz.rjs.brandwatch.supermarkets.sim.TickCalendar;
 
 public class Delivery extends AbstractTravellingAction {
     private DeliverablePlace destination;
     private int amount;
 
     public Delivery(EventBus eventBus, int distance, DeliverablePlace destination, int amount) {
-        super(eventBus, distance);
+        this(eventBus, null, distance, destination, amount);
+    }
+
+    public Delivery(EventBus eventBus, TickCalendar calendar, int distance, DeliverablePlace destination, int amount) {
+        super(eventBus, calendar, distance);
         this.destination = destination;
         this.amount = amount;
     }
@@ -0,0 +1,177 @@
+package xyz.rjs.brandwatch.supermarkets.logistics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import xyz.rjs.brandwatch.supermarkets.model.events.ClockTick;
+
+import com.google.common.eventbus.DeadEvent;
+import com.google.common.eventbus.EventBus;
+import com.google.common.eventbus.Subscribe;
+
+public class TypedEventBusTest {
+
+    public static class Recorder {
+        protected final List<String> events = new ArrayList<>();
+
+        @Subscribe
+        public void tick(ClockTick tick) {
+            events.add("tick " + tick.getTick());
+        }
+    }
+
+    /** Overrides the handler without annotating it again */
+    public static class Echo extends Recorder {
+        private final EventBus eventBus;
+
+        public Echo(EventBus eventBus) {
+            this.eventBus = eventBus;
+        }
+
+        @Override
+        public void tick(ClockTick tick) {
+            events.add("echo " + tick.getTick());
+            eventBus.post("posted by " + tick.getTick());
+            if (tick.getTick() % 50 == 0) {
+                // More events than the queue first holds
+                for (int i = 0; i < 100; i++) {
+                    eventBus.post(i);
+                }
+            }
+        }
+    }
+
+    public static class Everything {
+        private final List<Object> events = new ArrayList<>();
+
+        @Subscribe
+        public void event(Object event) {
+            events.add(event);
+        }
+    }
+
+    public static class Dead {
+        private final List<Object> events = new ArrayList<>();
+
+        @Subscribe
+        public void dead(DeadEvent event) {
+            events.add(event.getEvent());
+        }
+    }
+
+    public static class Failing {
+        @Subscribe
+        public void tick(ClockTick tick) {
+            throw new IllegalStateException("Handlers may fail");
+        }
+    }
+
+    @Test
+    public void testSupertypes() {
+        EventBus eventBus = new TypedEventBus();
+        Everything everything = new Everything();
+        Recorder recorder = new Recorder();
+        eventBus.register(everything);
+        eventBus.register(recorder);
+
+        ClockTick tick = new ClockTick(3);
+        eventBus.post(tick);
+        eventBus.post("text");
+
+        assertEquals(Arrays.asList(tick, "text"), everything.events);
+        assertEquals(Arrays.asList("tick 3"), recorder.events);
+    }
+
+    @Test
+    public void testPostedEventsAreQueued() {
+        EventBus eventBus = new TypedEventBus();
+        Echo echo = new Echo(eventBus);
+        Everything everything = new Everything();
+        eventBus.register(echo);
+        eventBus.register(everything);
+
+        ClockTick tick = new ClockTick(1);
+        eventBus.post(tick);
+
+        assertEquals("The inherited annotation is found", Arrays.asList("echo 1"), echo.events);
+        assertEquals("The posted event follows the tick", Arrays.asList(tick, "posted by 1"), everything.events);
+    }
+
+    @Test
+    public void testUnregister() {
+        EventBus eventBus = new TypedEventBus();
+        Recorder recorder = new Recorder();
+        eventBus.register(recorder);
+        eventBus.register(recorder);
+
+        eventBus.post(new ClockTick(0));
+        eventBus.unregister(recorder);
+        eventBus.post(new ClockTick(1));
+
+        assertEquals("Registering twice has no effect", Arrays.asList("tick 0"), recorder.events);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnregisterMissing() {
+        new TypedEventBus().unregister(new Recorder());
+    }
+
+    @Test
+    public void testDeadEvent() {
+        EventBus eventBus = new TypedEventBus();
+        Dead dead = new Dead();
+        eventBus.register(dead);
+
+        eventBus.post("nobody listens");
+
+        assertEquals(Arrays.asList("nobody listens"), dead.events);
+    }
+
+    @Test
+    public void testFailingHandler() {
+        EventBus eventBus = new TypedEventBus();
+        Recorder recorder = new Recorder();
+        eventBus.register(new Failing());
+        eventBus.register(recorder);
+
+        eventBus.post(new ClockTick(0));
+        eventBus.post(new ClockTick(1));
+
+        assertEquals("Other handlers are still sent events", Arrays.asList("tick 0", "tick 1"), recorder.events);
+    }
+
+    @Test
+    public void testMatchesEventBus() {
+        List<Object> expected = deliver(new EventBus());
+        List<Object> actual = deliver(new TypedEventBus());
+
+        assertTrue(expected.size() > 100);
+        assertEquals(expected, actual);
+    }
+
+    /**
+     * Posts ticks which each post another event, and some which post more
+     * events than fit in the queue at first.
+     */
+    private static List<Object> deliver(EventBus eventBus) {
+        Everything everything = new Everything();
+        eventBus.register(everything);
+        eventBus.register(new Echo(eventBus));
+
+        for (int tick = 0; tick < 100; tick++) {
+            eventBus.post(new ClockTick(tick));
+        }
+
+        List<Object> delivered = new ArrayList<>();
+        for (Object event : everything.events) {
+            delivered.add(event instanceof ClockTick ? "tick " + ((ClockTick) event).getTick() : event);
+        }
+        return delivered;
+    }
+}
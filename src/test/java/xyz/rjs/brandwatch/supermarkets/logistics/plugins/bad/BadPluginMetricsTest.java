@@ -0,0 +1,47 @@
+package xyz.rjs.brandwatch.supermarkets.logistics.plugins.bad;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Map;
+
+import org.junit.Test;
+
+/**
+ * @author matthew
+ *
+ */
+public class BadPluginMetricsTest {
+
+	@Test
+	public void testTransitions() throws Exception {
+		BadPluginMetrics metrics = new BadPluginMetrics("START");
+
+		metrics.transition("GATHER_DATA");
+		Thread.sleep(20);
+		metrics.transition("STABLE");
+		metrics.transition("GATHER_DATA");
+
+		assertEquals("The state is current", "GATHER_DATA", metrics.getState());
+		assertEquals("Every transition is counted", 3, metrics.getTransitions());
+
+		Map<String, Long> counts = metrics.getTransitionCounts();
+		assertEquals("Transitions are counted by pair", Long.valueOf(1), counts.get("START to GATHER_DATA"));
+		assertEquals("Transitions are counted by pair", Long.valueOf(1), counts.get("GATHER_DATA to STABLE"));
+		assertEquals("Transitions are counted by pair", Long.valueOf(1), counts.get("STABLE to GATHER_DATA"));
+
+		Thread.sleep(20);
+		Map<String, Long> times = metrics.getTimeInStateMillis();
+		assertTrue("Time is counted in each visit to a state", times.get("GATHER_DATA") >= 40);
+		assertTrue("The current state is counted", metrics.getTimeInCurrentStateMillis() >= 20);
+		assertTrue("Every state entered is listed", times.containsKey("START") && times.containsKey("STABLE"));
+	}
+
+	@Test
+	public void testPluginIsObservable() {
+		BadPlugin plugin = new BadPlugin();
+
+		assertEquals("The plugin starts", "START", plugin.metrics().getState());
+		assertEquals("No transitions have been made", 0, plugin.metrics().getTransitions());
+	}
+}
@@ -0,0 +1,121 @@
+package xyz.rjs.brandwatch.supermarkets.logistics.plugins.bad;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Random;
+
+import org.junit.Test;
+
+
+/**
+ * @author matthew
+ *
+ */
+public class ConstraintTest {
+
+	@Test
+	public void testConstraintMatchesRandom() {
+		Random source = new Random(3);
+
+		for (int i = 0; i < 1000; i++) {
+			long seed = source.nextLong();
+			int bound = 1 + source.nextInt(SeedKernel.MAXIMUM_BOUND);
+			int value = new Random(seed).nextInt(bound);
+
+			assertTrue("Constraint accepts the value", Constraint.nextIntEquals(bound, value).test(new Random(seed)));
+			assertTrue("Skip accepts the value", Constraint.skipNextInt(bound).test(new Random(seed)));
+			assertFalse("Except rejects the value", Constraint.nextIntExcept(bound, value).test(new Random(seed)));
+		}
+	}
+
+	@Test
+	public void testNextDoubleMatchesRandom() {
+		Random source = new Random(7);
+
+		for (int i = 0; i < 10_000; i++) {
+			long seed = source.nextLong();
+			double probability = i % 2 == 0 ? 0.1 : source.nextDouble();
+			boolean below = new Random(seed).nextDouble() < probability;
+
+			Constraint observed = Constraint.nextDouble(probability, below), other = Constraint.nextDouble(probability, !below);
+			assertTrue("Observation accepts the value", observed.test(new Random(seed)));
+			assertFalse("Opposite rejects the value", other.test(new Random(seed)));
+			assertTrue("Kernel accepts the value", observed.compile(SeedKernel.EMPTY).test(seed));
+			assertFalse("Kernel rejects the opposite", other.compile(SeedKernel.EMPTY).test(seed));
+
+			Random random = new Random(seed);
+			random.nextDouble();
+			assertEquals("Two values are consumed", random.nextInt(), new Random(observed.compile(SeedKernel.EMPTY).advance(SeedKernel.scramble(seed), 0)
+					^ RandomInspector.SCRAMBLE_MULTIPLIER).nextInt());
+		}
+	}
+
+	@Test
+	public void testNextDoubleAtTheThreshold() {
+		// The largest value below 0.1, and the smallest value at or above it
+		long below = SeedKernel.threshold(0.1) - 1, above = SeedKernel.threshold(0.1);
+
+		assertTrue("Value below the threshold", below * 0x1.0p-53 < 0.1);
+		assertFalse("Value at the threshold", above * 0x1.0p-53 < 0.1);
+		assertTrue("Below holds more information", Constraint.nextDoubleBelow(0.1).information() > Constraint.nextDoubleAtOrAbove(0.1).information());
+		assertEquals("Below a tenth holds log2(10) bits", Math.log(10) / Math.log(2), Constraint.nextDoubleBelow(0.1).information(), 1e-9);
+	}
+
+	@Test
+	public void testSeedTestIsReloaded() throws Exception {
+		Random random = new Random(5);
+		SeedTest test = new SeedTest();
+
+		test.add(Constraint.skipNextInt(10));
+		for (int i = 0; i < 10; i++) {
+			test.add(Constraint.nextIntEquals(3, random.nextInt(3)));
+		}
+		test.add(Constraint.nextIntExcept(3, 0));
+		for (int i = 0; i < 10; i++) {
+			test.add(Constraint.nextDouble(0.07, random.nextDouble() < 0.07));
+		}
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		test.write(new DataOutputStream(bytes));
+		SeedTest copy = SeedTest.read(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+
+		assertEquals("Constraints are reloaded", test.constraints(), copy.constraints());
+		assertEquals("Estimate is reloaded", test.estimatedSize(SeedGenerator.size()), copy.estimatedSize(SeedGenerator.size()));
+		assertFalse("Skips do not reduce", Constraint.skipNextInt(10).reduction() > 1);
+
+		for (int i = 0; i < 10_000; i++) {
+			long seed = random.nextLong();
+			assertEquals("Reloaded test agrees", test.test(seed), copy.test(seed));
+		}
+	}
+
+	@Test
+	public void testConstraintIsSerializable() throws Exception {
+		Constraint constraint = Constraint.nextIntExcept(3, 0);
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (ObjectOutputStream output = new ObjectOutputStream(bytes)) {
+			output.writeObject(constraint);
+		}
+		try (ObjectInputStream input = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+			assertEquals("Constraint survives serialization", constraint, input.readObject());
+		}
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testLambdaHasNoConstraints() {
+		SeedTest test = new SeedTest();
+		test.add(Constraint.nextIntEquals(6, 1));
+		test.add(r -> r.nextBoolean(), 2);
+
+		test.constraints();
+	}
+}
@@ -0,0 +1,223 @@
+package xyz.rjs.brandwatch.supermarkets.logistics.plugins.bad;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalInt;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+
+import org.junit.Test;
+
+import xyz.rjs.brandwatch.supermarkets.model.events.ArrivalNotification;
+import xyz.rjs.brandwatch.supermarkets.model.events.ClockTick;
+import xyz.rjs.brandwatch.supermarkets.model.events.Order;
+import xyz.rjs.brandwatch.supermarkets.sim.Warehouse;
+import xyz.rjs.brandwatch.supermarkets.sim.travel.Delivery;
+
+import com.google.common.eventbus.EventBus;
+import com.google.common.eventbus.Subscribe;
+import com.google.common.util.concurrent.MoreExecutors;
+
+/**
+ * @author matthew
+ *
+ */
+public class DeliveryOracleTest {
+
+	private static final int DISTANCE = 20;
+
+	private static final int ORDERS = 5;
+
+	/**
+	 * Creates a Delivery for every Order, like the Supplier.
+	 */
+	public static class TestSupplier {
+
+		private final EventBus eventBus;
+
+		TestSupplier(EventBus eventBus) {
+			this.eventBus = eventBus;
+		}
+
+		@Subscribe
+		public void receiveOrder(Order order) {
+			new Delivery(eventBus, DISTANCE, order.getWarehouse(), order.getVolume());
+		}
+	}
+
+	/**
+	 * Records the tick on which each volume arrives.
+	 */
+	public static class ArrivalRecorder {
+
+		private final Map<Integer, Integer> arrivals = new HashMap<>();
+
+		private int tick;
+
+		@Subscribe
+		public void tickListener(ClockTick tick) {
+			this.tick = tick.getTick();
+		}
+
+		@Subscribe
+		public void arrivalListener(ArrivalNotification arrival) {
+			arrivals.put(arrival.getAmount(), tick);
+		}
+	}
+
+	@Test
+	public void testDelaysFollowTheRandom() {
+		Random seeds = new Random(1);
+
+		for (int i = 0; i < 1000; i++) {
+			long seed = seeds.nextLong();
+			assertEquals("Delays match nextDouble", delays(new Random(seed)), DeliveryOracle.delays(SeedKernel.scramble(seed), DISTANCE));
+		}
+	}
+
+	@Test
+	public void testSingleSeedIsPredicted() {
+		ExecutorService executor = MoreExecutors.newDirectExecutorService();
+		long time = System.nanoTime();
+		int ordinal = SeedCascade.Sibling.CUSTOMER.creationOrdinal() + 1;
+		int arrival = 1 + DISTANCE + 1 + delays(new Random(time ^ SeedGenerator.uniquifier(ordinal)));
+
+		DeliveryOracle.InFlight delivery = new DeliveryOracle.InFlight(order(10), 1);
+		delivery.search(ordinal, time, time + 1);
+		delivery.evaluate(executor, DISTANCE);
+
+		Optional<DeliveryOracle.Prediction> prediction = delivery.predict(1);
+		assertTrue("A single seed is predicted", prediction.isPresent());
+		assertEquals("The prediction is exact", arrival, prediction.get().tick());
+	}
+
+	@Test
+	public void testOnlyExactArrivalsArePredicted() {
+		ExecutorService executor = MoreExecutors.newDirectExecutorService();
+		long time = System.nanoTime();
+		int ordinal = SeedCascade.Sibling.CUSTOMER.creationOrdinal() + 1;
+		int arrival = 1 + DISTANCE + 1 + delays(new Random(time ^ SeedGenerator.uniquifier(ordinal)));
+
+		DeliveryOracle.InFlight delivery = new DeliveryOracle.InFlight(order(10), 1);
+		delivery.search(ordinal, time - 1000, time + 1000);
+		delivery.evaluate(executor, DISTANCE);
+
+		for (int tick = 1; tick < arrival; tick++) {
+			delivery.predict(tick).ifPresent(prediction -> assertEquals("The prediction is exact", arrival, prediction.tick()));
+		}
+	}
+
+	@Test
+	public void testNoUniquifierIsUsed() {
+		EventBus eventBus = new EventBus();
+		Warehouse warehouse = new Warehouse(eventBus);
+		DeliveryOracle oracle = new DeliveryOracle(warehouse, () -> OptionalInt.of(DISTANCE), 0, MoreExecutors.newDirectExecutorService());
+		eventBus.register(oracle);
+
+		int before = nextOrdinal();
+		for (int i = 0; i < ORDERS; i++) {
+			eventBus.post(order(10 + i));
+			eventBus.post(new ClockTick(i));
+		}
+		assertEquals("The Random objects of the simulation keep their ordinals", before + 1, nextOrdinal());
+	}
+
+	@Test(timeout = 120_000)
+	public void testArrivalIsPredicted() {
+		EventBus eventBus = new EventBus();
+		Warehouse warehouse = new Warehouse(eventBus);
+
+		// Loads the Delivery so that the first Order is not slowed by it
+		eventBus.unregister(new Delivery(eventBus, DISTANCE, warehouse, 0));
+
+		DeliveryOracle oracle = new DeliveryOracle(warehouse, () -> OptionalInt.of(DISTANCE), nextOrdinal(),
+				MoreExecutors.newDirectExecutorService());
+		ArrivalRecorder recorder = new ArrivalRecorder();
+		eventBus.register(recorder);
+		eventBus.register(oracle);
+		eventBus.register(new TestSupplier(eventBus));
+
+		Map<Order, Integer> predictions = new HashMap<>();
+		Order[] orders = new Order[ORDERS];
+		int tick = 0;
+		for (int i = 0; i < ORDERS; i++) {
+			eventBus.post(new ClockTick(tick++));
+			orders[i] = order(10 + i);
+			orders[i].setWarehouse(warehouse);
+			eventBus.post(orders[i]);
+		}
+
+		while (oracle.arrivals() < ORDERS) {
+			for (Order order : orders) {
+				oracle.prediction(order).ifPresent(prediction -> predictions.putIfAbsent(order, prediction.tick()));
+			}
+			eventBus.post(new ClockTick(tick++));
+		}
+		assertTrue("Nothing is in flight", oracle.predictions().isEmpty());
+		assertEquals("Every arrival is in its window", 0, oracle.misses());
+
+		for (Map.Entry<Order, Integer> prediction : predictions.entrySet()) {
+			assertEquals("The prediction is exact", recorder.arrivals.get(prediction.getKey().getVolume()), prediction.getValue());
+		}
+	}
+
+	/**
+	 * @param random
+	 * @return - the number of ticks on which a Delivery with the Random object
+	 *         is delayed.
+	 */
+	private static int delays(Random random) {
+		int delays = 0;
+		for (int remaining = DISTANCE; delays < DeliveryOracle.MAXIMUM_DELAYS;) {
+			if (random.nextDouble() < 0.1) {
+				delays++;
+			}
+			else if (remaining-- <= 0) {
+				break;
+			}
+		}
+		return delays;
+	}
+
+	private static Order order(int volume) {
+		Order order = new Order();
+		order.setVolume(volume);
+		return order;
+	}
+
+	/**
+	 * Finds the ordinal of the uniquifier of the next Random object created
+	 * without a seed. A Random object is created to find it, and its state is
+	 * recovered from its first value.
+	 *
+	 * @return
+	 */
+	private static int nextOrdinal() {
+		final long before = System.nanoTime();
+		final long value = new Random().nextLong();
+		final long after = System.nanoTime();
+
+		final int low = (int) value;
+		final long high = ((value - low) >>> 32) & 0xFFFFFFFFL;
+		for (long bits = 0; bits < 1 << 16; bits++) {
+			final long state = (high << 16) | bits;
+			if ((int) (((state * SeedKernel.MULTIPLIER + SeedKernel.ADDEND) & SeedKernel.MASK) >>> 16) != low) {
+				continue;
+			}
+
+			final long initial = RandomJump.rewind(state, 1);
+			long uniquifier = SeedGenerator.uniquifier(0);
+			for (int ordinal = 0; ordinal < 1 << 20; ordinal++) {
+				if (((SeedKernel.extractTime(initial, uniquifier) - before) & SeedKernel.MASK) <= after - before) {
+					return ordinal + 1;
+				}
+				uniquifier = SeedGenerator.nextUniquifier(uniquifier);
+			}
+		}
+		throw new IllegalStateException("Failed to find the ordinal of the Random object");
+	}
+}
@@ -0,0 +1,87 @@
+package xyz.rjs.brandwatch.supermarkets.logistics.plugins.bad;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.junit.Test;
+
+import com.google.common.util.concurrent.MoreExecutors;
+
+/**
+ * @author matthew
+ *
+ */
+public class OracleMetricsTest {
+
+	@Test(timeout = 120_000)
+	public void testMetricsFollowOracle() throws Exception {
+		SeedSearch search = new SeedSearch(MoreExecutors.newDirectExecutorService());
+		Oracle oracle = new Oracle(search);
+		Random random = OracleTest.randomInFirstRound(oracle);
+		OracleMetrics metrics = oracle.metrics();
+
+		assertEquals("Oracle starts open", "OPEN", metrics.getState());
+		assertEquals("No calls are recorded", 0, metrics.getCalls());
+
+		long estimate = metrics.getEstimatedSize();
+		for (int i = 0; i < 5; i++) {
+			oracle.calledNextInt(random.nextInt(6), 6);
+		}
+		assertEquals("Calls are counted", 5, metrics.getCalls());
+		assertTrue("The estimate falls", metrics.getEstimatedSize() < estimate);
+		assertTrue("The calls hold information", metrics.getInformation() > 5);
+		assertTrue("Fewer seeds are expected to pass the round", metrics.getExpectedSurvivors() < SeedGenerator.batchSize());
+
+		while (!oracle.isFixed()) {
+			oracle.calledNextInt(random.nextInt(6), 6);
+		}
+		assertEquals("Oracle is fixed", "FIXED", metrics.getState());
+		assertEquals("The seed survives", 1, metrics.getSurvivors());
+		assertEquals("The seed was validated", metrics.getValidationRounds(), metrics.getValidationRound());
+		assertTrue("The generator has searched", metrics.getRound() > 0 && metrics.getRound() <= metrics.getRounds());
+		assertFalse("No search is running", metrics.isSearching());
+		assertEquals("No search is running", -1, metrics.getSearchRemainingMillis());
+	}
+
+	@Test
+	public void testMetricsAreRegistered() throws Exception {
+		Oracle oracle = new Oracle(new SeedSearch(MoreExecutors.newDirectExecutorService()));
+		ObjectName name = Metrics.register("Oracle", "OracleMetricsTest", oracle.metrics());
+		try {
+			assertNotNull("The metrics are registered", name);
+
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			assertEquals("The state is readable", "OPEN", server.getAttribute(name, "State"));
+			assertEquals("The calls are readable", 0L, server.getAttribute(name, "Calls"));
+
+			assertEquals("Registering again replaces the metrics", name, Metrics.register("Oracle", "OracleMetricsTest", oracle.metrics()));
+		}
+		finally {
+			Metrics.unregister(name);
+		}
+		assertFalse("The metrics are unregistered", ManagementFactory.getPlatformMBeanServer().isRegistered(name));
+	}
+
+	@Test
+	public void testSearchRate() throws Exception {
+		SearchProgress progress = new SearchProgress(1_000_000);
+		assertEquals("Nothing is known before any seeds are tested", -1, progress.remainingMillis());
+
+		Thread.sleep(10);
+		progress.scanned(500_000);
+
+		assertTrue("The rate is measured", progress.rate() > 0);
+		assertTrue("Half of the search remains", progress.remainingMillis() >= 0);
+
+		progress.scanned(500_000);
+		assertEquals("Nothing remains", 0, progress.remainingMillis());
+	}
+}
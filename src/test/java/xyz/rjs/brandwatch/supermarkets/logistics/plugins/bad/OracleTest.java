@@ -3,11 +3,15 @@ package xyz.rjs.brandwatch.supermarkets.logistics.plugins.bad;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.Random;
 
 import org.junit.Ignore;
 import org.junit.Test;
 
+import com.google.common.util.concurrent.MoreExecutors;
+
 
 /**
  * This tests the powers of the oracle!
@@ -54,4 +58,144 @@ public class OracleTest {
 			assertEquals("Oracle is wrong!", random.nextInt(6), copy.nextInt(6));
 		}
 	}
+
+	@Test(timeout = 120_000)
+	public void testOracleSearchesInBackground() throws Exception {
+		// Loading the classes can take longer than the search window
+		new Oracle().shutdown();
+
+		Random random = new Random();
+		Oracle oracle = new Oracle();
+
+		try {
+			// Enough calls to start the search
+			while (oracle.size() >= Oracle.SIZE_TRANSITION_LIMIT) {
+				oracle.calledNextInt(random.nextInt(6), 6);
+			}
+
+			long startTime = System.currentTimeMillis();
+			oracle.calledNextInt(random.nextInt(6), 6);
+			assertTrue("Calls do not wait for the search", System.currentTimeMillis() - startTime < 100);
+
+			while (!oracle.isFixed()) {
+				Thread.sleep(10);
+				oracle.tick();
+				oracle.calledNextInt(random.nextInt(6), 6);
+			}
+
+			Random copy = oracle.getRandom();
+			for (int i = 0; i < 100; i++) {
+				assertEquals("Oracle is wrong!", random.nextInt(6), copy.nextInt(6));
+			}
+		}
+		finally {
+			oracle.shutdown();
+		}
+	}
+
+	@Test(timeout = 120_000)
+	public void testOracleWithDirectSearch() throws Exception {
+		SeedSearch search = new SeedSearch(MoreExecutors.newDirectExecutorService());
+		new Oracle(search);
+
+		Random random = new Random();
+		Oracle oracle = new Oracle(search);
+
+		while (!oracle.isFixed()) {
+			oracle.calledNextInt(random.nextInt(6), 6);
+		}
+
+		assertEquals("Oracle is wrong!", RandomInspector.getSeed(random), RandomInspector.getSeed(oracle.getRandom()));
+	}
+
+	@Test(timeout = 120_000)
+	public void testFixedOracleFollowsCalls() throws Exception {
+		SeedSearch search = new SeedSearch(MoreExecutors.newDirectExecutorService());
+		new Oracle(search);
+
+		Random random = new Random();
+		Oracle oracle = new Oracle(search);
+
+		while (!oracle.isFixed()) {
+			oracle.calledNextInt(random.nextInt(6), 6);
+		}
+		int recorded = oracle.checkpoint().constraints().size();
+
+		for (int i = 0; i < 10_000; i++) {
+			oracle.calledNextInt(random.nextInt(6), 6);
+		}
+
+		assertEquals("Calls are not recorded once fixed", recorded, oracle.checkpoint().constraints().size());
+		assertEquals("Oracle is wrong!", RandomInspector.getSeed(random), RandomInspector.getSeed(oracle.getRandom()));
+
+		assertEquals("The checkpoint holds the cursor", RandomInspector.getSeed(random), oracle.checkpoint().cursorState());
+	}
+
+	@Test(timeout = 120_000)
+	public void testFixedOracleResynchronises() throws Exception {
+		SeedSearch search = new SeedSearch(MoreExecutors.newDirectExecutorService());
+		new Oracle(search);
+
+		Random random = new Random();
+		Oracle oracle = new Oracle(search);
+
+		while (!oracle.isFixed()) {
+			oracle.calledNextInt(random.nextInt(6), 6);
+		}
+
+		// A missed event
+		random.nextInt(6);
+		for (int i = 0; i < 40; i++) {
+			oracle.calledNextInt(random.nextInt(6), 6);
+		}
+
+		assertTrue("Oracle resynchronises after a missed event", oracle.isFixed());
+		assertEquals("Oracle is wrong!", RandomInspector.getSeed(random), RandomInspector.getSeed(oracle.getRandom()));
+
+		// An event counted twice
+		int value = random.nextInt(6);
+		oracle.calledNextInt(value, 6);
+		oracle.calledNextInt(value, 6);
+		for (int i = 0; i < 40; i++) {
+			oracle.calledNextInt(random.nextInt(6), 6);
+		}
+
+		assertTrue("Oracle resynchronises after a repeated event", oracle.isFixed());
+		assertEquals("Oracle is wrong!", RandomInspector.getSeed(random), RandomInspector.getSeed(oracle.getRandom()));
+	}
+
+	@Test(timeout = 120_000)
+	public void testCheckpointIsReadBack() throws Exception {
+		SeedSearch search = new SeedSearch(MoreExecutors.newDirectExecutorService());
+		Oracle oracle = new Oracle(search);
+		Random random = randomInFirstRound(oracle);
+
+		while (!oracle.isFixed()) {
+			oracle.calledNextInt(random.nextInt(6), 6);
+		}
+
+		Path file = Files.createTempDirectory("oracle").resolve("oracle.checkpoint");
+		Checkpoint written = oracle.checkpoint();
+		written.write(file);
+		Checkpoint read = Checkpoint.read(file);
+
+		assertEquals("The state is read back", "FIXED", read.state());
+		assertEquals("The fixed seed is read back", written.fixedSeed(), read.fixedSeed());
+		assertEquals("The cursor is read back", RandomInspector.getSeed(random), read.cursorState());
+		assertEquals("The calls are read back", written.constraints(), read.constraints());
+		assertEquals("The starting time is read back", written.startingTime(), read.startingTime());
+	}
+
+	/**
+	 * A Random object created by new Random() can have any uniquifier, as the
+	 * tests create many. This instead creates one whose seed is in the first
+	 * round the Oracle searches, so the Oracle fixes on it in a single round.
+	 *
+	 * @param oracle
+	 * @return
+	 */
+	static Random randomInFirstRound(Oracle oracle) {
+		SeedWindow window = SeedPrior.defaults().rounds(oracle.checkpoint().startingTime()).get(0).get(0);
+		return new Random((window.to() - 1) ^ window.uniquifier());
+	}
 }
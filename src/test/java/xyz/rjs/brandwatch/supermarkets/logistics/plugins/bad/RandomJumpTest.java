@@ -0,0 +1,69 @@
+package xyz.rjs.brandwatch.supermarkets.logistics.plugins.bad;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+
+/**
+ * @author matthew
+ *
+ */
+public class RandomJumpTest {
+
+	@Test
+	public void testJumpMatchesSteps() {
+		long state = SeedKernel.scramble(42), stepped = state;
+
+		for (int steps = 0; steps < 1000; steps++) {
+			assertEquals("Jump matches stepping", stepped, RandomJump.advance(state, steps));
+			assertEquals("Rewind reverses the jump", state, RandomJump.rewind(stepped, steps));
+			assertEquals("Negative jump rewinds", state, RandomJump.advance(stepped, -steps));
+			stepped = SeedKernel.step(stepped);
+		}
+
+		RandomJump jump = RandomJump.of(1L << 40);
+		assertEquals("Long jump is reversed", state, jump.invert(jump.apply(state)));
+	}
+
+	@Test
+	public void testSkipMatchesRandom() throws Exception {
+		Random random = new Random(7), copy = new Random(7);
+		for (int i = 0; i < 1000; i++) {
+			random.nextLong();
+			random.nextDouble();
+			random.nextInt(8);
+		}
+
+		assertTrue("Skip moves the Random object", Constraint.skip(5000).test(copy));
+		assertEquals("Skip moves the Random object", RandomInspector.getSeed(random), RandomInspector.getSeed(copy));
+
+		int value = random.nextInt(6);
+
+		SeedKernel kernel = Constraint.nextIntEquals(6, value).compile(Constraint.skip(5000).compile(SeedKernel.EMPTY));
+		assertTrue("Kernel skips the calls", kernel.test(7));
+		assertEquals("Kernel skips the calls", RandomInspector.getSeed(random), kernel.advance(SeedKernel.scramble(7), 0));
+	}
+
+	@Test
+	public void testSolveAcrossSkip() throws Exception {
+		Random random = new Random(0x1234_5678_9ABCL);
+		long state = RandomInspector.getSeed(random);
+		SeedKernel kernel = SeedKernel.EMPTY;
+
+		for (int i = 0; i < 30; i++) {
+			kernel = kernel.add(6, SeedKernel.only(random.nextInt(6)));
+			if (i == 10) {
+				random.nextLong();
+				kernel = kernel.skip(2);
+			}
+		}
+
+		StateSolver solver = new StateSolver(kernel);
+		assertTrue("Skip does not prevent solving", solver.canSolve());
+		assertEquals("Solver finds the initial state across the skip", state, solver.solveStates()[0]);
+	}
+}
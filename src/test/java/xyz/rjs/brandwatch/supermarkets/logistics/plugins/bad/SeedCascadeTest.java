@@ -0,0 +1,104 @@
+package xyz.rjs.brandwatch.supermarkets.logistics.plugins.bad;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.google.common.util.concurrent.MoreExecutors;
+
+import xyz.rjs.brandwatch.supermarkets.logistics.plugins.bad.SeedCascade.Sibling;
+
+
+/**
+ * @author matthew
+ *
+ */
+public class SeedCascadeTest {
+
+	/**
+	 * Creates the seed that a Random object created at the time with the
+	 * uniquifier would have.
+	 */
+	private static long seed(long time, Sibling sibling) {
+		return time ^ SeedGenerator.seedUniquifierValues.get(sibling.creationOrdinal());
+	}
+
+	@Test(timeout = 120_000)
+	public void testSiblingIsFound() {
+		long time = System.nanoTime();
+		long customer = seed(time, Sibling.CUSTOMER), supplier = seed(time - 40_000, Sibling.SUPPLIER);
+
+		Random random = new Random(supplier);
+		random.nextInt(10);
+		SeedKernel kernel = SeedKernel.EMPTY.add(10, SeedKernel.any(10));
+		for (int i = 0; i < 30; i++) {
+			kernel = kernel.add(3, SeedKernel.only(random.nextInt(3)));
+		}
+
+		SeedCascade cascade = new SeedCascade(customer, Sibling.CUSTOMER.creationOrdinal(), Sibling.CUSTOMER);
+		assertEquals("Time is recovered", time & RandomInspector.SCRAMBLE_MASK, cascade.time());
+		assertEquals("Sibling ordinal is relative", Sibling.SUPPLIER.creationOrdinal(), cascade.ordinalOf(Sibling.SUPPLIER));
+
+		long found = cascade.find(Sibling.SUPPLIER, kernel, new SearchProgress(cascade.size()));
+		assertEquals("Sibling is found", SeedKernel.scramble(supplier), SeedKernel.scramble(found));
+	}
+
+	@Test(timeout = 120_000)
+	public void testProbabilitySiblingIsFound() {
+		long time = System.nanoTime();
+		long customer = seed(time, Sibling.CUSTOMER), probability = seed(time - 2_000, Sibling.CUSTOMER_PROBABILITY);
+
+		// One observation a tick, as the ProbabilityOracle records them
+		Random random = new Random(probability);
+		SeedKernel kernel = SeedKernel.EMPTY;
+		for (int tick = 0; tick < 300; tick++) {
+			kernel = Constraint.nextDouble(0.1, random.nextDouble() < 0.1).compile(kernel);
+		}
+
+		SeedCascade cascade = new SeedCascade(customer, Sibling.CUSTOMER.creationOrdinal(), Sibling.CUSTOMER);
+		long found = cascade.find(Sibling.CUSTOMER_PROBABILITY, kernel, new SearchProgress(cascade.size()));
+		assertEquals("Probability sibling is found", SeedKernel.scramble(probability), SeedKernel.scramble(found));
+	}
+
+	@Test(timeout = 120_000)
+	public void testOracleSearchesCascade() {
+		long time = System.nanoTime();
+		long customer = seed(time, Sibling.CUSTOMER), supplier = seed(time - 40_000, Sibling.SUPPLIER);
+		SeedCascade cascade = new SeedCascade(customer, Sibling.CUSTOMER.creationOrdinal(), Sibling.CUSTOMER);
+
+		// This is far enough from the Oracle that the rounds would not find it
+		Oracle oracle = new Oracle(new SeedSearch(MoreExecutors.newDirectExecutorService()));
+		Random random = new Random(supplier);
+		oracle.called(Constraint.skipNextInt(10));
+		random.nextInt(10);
+		for (int i = 0; i < 30; i++) {
+			oracle.calledNextIntIn(SeedKernel.only(random.nextInt(3)), 3);
+		}
+
+		oracle.searchCascade(cascade, Sibling.SUPPLIER);
+		while (!oracle.isFixed()) {
+			oracle.calledNextInt(random.nextInt(3), 3);
+		}
+		assertTrue("Oracle follows the sibling", oracle.getRandom().nextInt(3) == random.nextInt(3));
+	}
+
+	@Test(timeout = 120_000)
+	public void testCascadeWaitsForCalls() {
+		long time = System.nanoTime();
+		long customer = seed(time, Sibling.CUSTOMER), supplier = seed(time - 40_000, Sibling.SUPPLIER);
+		SeedCascade cascade = new SeedCascade(customer, Sibling.CUSTOMER.creationOrdinal(), Sibling.CUSTOMER);
+
+		// The cascade is given before there are calls to pick out the seed
+		Oracle oracle = new Oracle(new SeedSearch(MoreExecutors.newDirectExecutorService()));
+		oracle.searchCascade(cascade, Sibling.SUPPLIER);
+
+		Random random = new Random(supplier);
+		while (!oracle.isFixed()) {
+			oracle.calledNextInt(random.nextInt(3), 3);
+		}
+		assertTrue("Oracle follows the sibling", oracle.getRandom().nextInt(3) == random.nextInt(3));
+	}
+}
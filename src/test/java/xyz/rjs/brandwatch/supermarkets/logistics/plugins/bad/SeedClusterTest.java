@@ -0,0 +1,130 @@
+package xyz.rjs.brandwatch.supermarkets.logistics.plugins.bad;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.Test;
+
+
+/**
+ * @author matthew
+ *
+ */
+public class SeedClusterTest {
+
+	private static final int ORDINAL = 3;
+
+	private static final long WINDOW = 1L << 23;
+
+	@Test(timeout = 120_000)
+	public void testWorkersMatchFilter() throws Exception {
+		long time = System.nanoTime();
+		SeedTest calls = calls(new Random(time ^ SeedGenerator.uniquifier(ORDINAL)));
+		List<SeedWindow> windows = windows(time);
+
+		SeedCluster cluster = new SeedCluster(0, null, SeedCluster.DEFAULT_LEASE_TIMEOUT_MILLIS);
+		SeedWorker[] workers = { new SeedWorker(InetAddress.getLoopbackAddress().getHostAddress(), cluster.port()),
+				new SeedWorker(InetAddress.getLoopbackAddress().getHostAddress(), cluster.port()) };
+		try {
+			for (SeedWorker worker : workers) {
+				new Thread(worker).start();
+			}
+			while (cluster.workers() < workers.length) {
+				Thread.sleep(1);
+			}
+
+			long[] actual = cluster.filter(windows, calls, new SearchProgress(size(windows)));
+
+			assertArrayEquals("Workers find the same seeds as the filter", expected(windows, calls), actual);
+			assertTrue("The seed is found", Arrays.stream(actual).anyMatch(seed -> seed == (time ^ SeedGenerator.uniquifier(ORDINAL))));
+			assertTrue("Workers test leases", Arrays.stream(workers).mapToInt(SeedWorker::leases).sum() > 0);
+		}
+		finally {
+			cluster.shutdown();
+		}
+	}
+
+	@Test(timeout = 120_000)
+	public void testFailedWorkersAreReleased() throws Exception {
+		long time = System.nanoTime();
+		SeedTest calls = calls(new Random(time ^ SeedGenerator.uniquifier(ORDINAL)));
+		List<SeedWindow> windows = windows(time);
+
+		SeedCluster cluster = new SeedCluster(0, null, 500);
+		try (Socket disconnects = connect(cluster); Socket stalls = connect(cluster)) {
+			while (cluster.workers() < 2) {
+				Thread.sleep(1);
+			}
+
+			CompletableFuture<long[]> actual = CompletableFuture.supplyAsync(() -> cluster.filter(windows, calls, new SearchProgress(size(windows))));
+
+			// Each takes a lease, one closes the connection and one never replies
+			assertTrue("A lease is taken", takeLease(disconnects));
+			disconnects.close();
+			assertTrue("A lease is taken", takeLease(stalls));
+
+			assertArrayEquals("Lost leases are tested", expected(windows, calls), actual.get());
+		}
+		finally {
+			cluster.shutdown();
+		}
+	}
+
+	@Test
+	public void testNotRunningWithoutPort() {
+		SeedCluster cluster = new SeedCluster(-1, null, SeedCluster.DEFAULT_LEASE_TIMEOUT_MILLIS);
+
+		assertFalse("The cluster does not listen", cluster.isRunning());
+		cluster.shutdown();
+	}
+
+	private static Socket connect(SeedCluster cluster) throws Exception {
+		Socket socket = new Socket(InetAddress.getLoopbackAddress(), cluster.port());
+		DataOutputStream output = new DataOutputStream(socket.getOutputStream());
+		output.writeInt(SeedCluster.MAGIC);
+		output.flush();
+		return socket;
+	}
+
+	private static boolean takeLease(Socket socket) throws Exception {
+		socket.setSoTimeout(10_000);
+		try {
+			new DataInputStream(socket.getInputStream()).readLong();
+			return true;
+		}
+		catch (SocketTimeoutException e) {
+			return false;
+		}
+	}
+
+	private static SeedTest calls(Random random) {
+		SeedTest calls = new SeedTest();
+		for (int i = 0; i < 10; i++) {
+			calls.add(Constraint.nextIntEquals(6, random.nextInt(6)));
+		}
+		return calls;
+	}
+
+	private static List<SeedWindow> windows(long time) {
+		return Arrays.asList(new SeedWindow(time - WINDOW, time + WINDOW, ORDINAL), new SeedWindow(time - WINDOW, time + WINDOW, ORDINAL + 1));
+	}
+
+	private static long size(List<SeedWindow> windows) {
+		return windows.stream().mapToLong(SeedWindow::size).sum();
+	}
+
+	private static long[] expected(List<SeedWindow> windows, SeedTest calls) {
+		return new SeedGenerator(0).filter(windows, calls.kernel(), new SearchProgress(size(windows)));
+	}
+}
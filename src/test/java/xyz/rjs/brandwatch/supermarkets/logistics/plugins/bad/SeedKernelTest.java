@@ -0,0 +1,96 @@
+package xyz.rjs.brandwatch.supermarkets.logistics.plugins.bad;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+
+/**
+ * @author matthew
+ *
+ */
+public class SeedKernelTest {
+
+	private static final int[] BOUNDS = { 1, 2, 3, 6, 10, 16, 61, 64 };
+
+	@Test
+	public void testKernelMatchesRandom() throws Exception {
+		Random source = new Random(42);
+
+		for (int i = 0; i < 1000; i++) {
+			long seed = source.nextLong();
+			Random random = new Random(seed);
+			SeedKernel kernel = SeedKernel.EMPTY;
+
+			for (int bound : BOUNDS) {
+				kernel = kernel.add(bound, SeedKernel.only(random.nextInt(bound)));
+			}
+			assertTrue("Kernel accepts the seed that produced the values", kernel.test(seed));
+			assertEquals("Kernel state matches Random state", RandomInspector.getSeed(new Random(seed)), SeedKernel.scramble(seed));
+		}
+	}
+
+	@Test
+	public void testExtractTimeMatchesRandomInspector() throws Exception {
+		Random source = new Random(3);
+
+		for (int i = 0; i < 1000; i++) {
+			long time = source.nextLong();
+			long uniquifier = SeedGenerator.uniquifier(i % 40);
+			long state = RandomInspector.getSeed(new Random(time ^ uniquifier));
+
+			assertEquals("The time is read back", time & SeedKernel.MASK, SeedKernel.extractTime(state, uniquifier));
+			assertEquals("The time matches RandomInspector", RandomInspector.extractTime(state, uniquifier), SeedKernel.extractTime(state, uniquifier));
+			assertEquals("The difference matches RandomInspector", RandomInspector.extractTimeDifference(state, time + 5, uniquifier),
+					SeedKernel.extractTimeDifference(state, time + 5, uniquifier));
+		}
+	}
+
+	@Test
+	public void testKernelMatchesSeedTest() {
+		Random source = new Random(7);
+		SeedKernel kernel = SeedKernel.EMPTY;
+		SeedTest test = new SeedTest();
+
+		for (int bound : BOUNDS) {
+			long accepted = source.nextLong() & SeedKernel.any(bound);
+			kernel = kernel.add(bound, accepted);
+			test.add(r -> (accepted & (1L << r.nextInt(bound))) != 0, 1);
+		}
+
+		for (int i = 0; i < 100_000; i++) {
+			long seed = source.nextLong();
+			assertEquals("Kernel and Random agree", test.test(seed), kernel.test(seed));
+		}
+	}
+
+	@Test
+	public void testFilterMatchesStream() {
+		SeedGenerator generator = new SeedGenerator(System.nanoTime());
+		SeedKernel kernel = SeedKernel.EMPTY.add(6, SeedKernel.only(3)).add(6, SeedKernel.only(1)).add(3, SeedKernel.any(3) & ~SeedKernel.only(0))
+				.add(6, SeedKernel.only(5)).add(6, SeedKernel.only(0)).add(6, SeedKernel.only(2));
+
+		long[] expected = generator.stream(1).filter(kernel::test).toArray();
+		long[] actual = generator.filter(1, kernel);
+
+		assertTrue("Some seeds pass", expected.length > 0);
+		assertArrayEquals("Filter produces seeds in stream order", expected, actual);
+	}
+
+	@Test
+	public void testBatchedMatchesScalar() {
+		long time = System.nanoTime();
+		SeedKernel kernel = SeedKernel.EMPTY.add(6, SeedKernel.only(4)).add(8, SeedKernel.only(1) | SeedKernel.only(7)).add(61, SeedKernel.any(61) & ~SeedKernel.only(3))
+				.add(6, SeedKernel.only(2)).add(64, SeedKernel.any(32));
+
+		long[] scalar = new SeedGenerator(time, SeedGenerator.Engine.SCALAR).filter(0, kernel);
+		long[] batched = new SeedGenerator(time, SeedGenerator.Engine.BATCHED).filter(0, kernel);
+
+		assertTrue("Some seeds pass", scalar.length > 0);
+		assertArrayEquals("Engines produce the same seeds", scalar, batched);
+	}
+}
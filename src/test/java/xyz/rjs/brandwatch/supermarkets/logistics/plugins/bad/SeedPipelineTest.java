@@ -0,0 +1,87 @@
+package xyz.rjs.brandwatch.supermarkets.logistics.plugins.bad;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+
+/**
+ * @author matthew
+ *
+ */
+public class SeedPipelineTest {
+
+	@Test(timeout = 120_000)
+	public void testPipelineMatchesFilter() throws Exception {
+		SeedGenerator generator = new SeedGenerator(System.nanoTime());
+		Random random = new Random(11);
+		AtomicReference<SeedKernel> kernels = new AtomicReference<>(SeedKernel.EMPTY.add(6, SeedKernel.only(random.nextInt(6))));
+
+		// The calls arrive while the batch is being scanned
+		Thread calls = new Thread(() -> {
+			for (int i = 0; i < 20; i++) {
+				try {
+					Thread.sleep(20);
+				}
+				catch (InterruptedException e) {
+					return;
+				}
+				kernels.set(kernels.get().add(6, SeedKernel.only(random.nextInt(6))));
+			}
+		});
+		calls.setDaemon(true);
+		calls.start();
+
+		// A small buffer forces the scan to wait for calls
+		SeedPipeline pipeline = new SeedPipeline(generator, kernels::get, 1 << 16, Oracle.SIZE_TRANSITION_LIMIT);
+		long[] seeds = pipeline.run(0, new SearchProgress(SeedGenerator.batchSize()));
+		calls.join();
+
+		assertTrue("Pipeline reduces to the publish limit", seeds.length <= Oracle.SIZE_TRANSITION_LIMIT);
+
+		SeedKernel kernel = kernels.get();
+		long[] actual = Arrays.stream(seeds).filter(kernel::test).sorted().toArray();
+		long[] expected = generator.filter(0, kernel);
+		Arrays.sort(expected);
+
+		assertArrayEquals("Pipeline finds the same seeds as the filter", expected, actual);
+	}
+
+	@Test(timeout = 120_000)
+	public void testFilterStatesContinueTheCalls() {
+		Random random = new Random(13);
+		SeedKernel kernel = SeedKernel.EMPTY;
+		for (int i = 0; i < 3; i++) {
+			kernel = kernel.add(6, SeedKernel.only(random.nextInt(6)));
+		}
+
+		for (SeedGenerator.Engine engine : SeedGenerator.Engine.values()) {
+			SeedGenerator generator = new SeedGenerator(0, engine);
+			long[][] found = generator.filterStates(0, 1 << 16, SeedGenerator.uniquifier(0), kernel, new SearchProgress(1 << 16));
+
+			assertTrue(engine + " finds seeds", found[0].length > 0);
+			assertEquals(found[0].length, found[1].length);
+			for (int i = 0; i < found[0].length; i++) {
+				assertEquals(engine + " holds the state after the calls", kernel.advance(SeedKernel.scramble(found[0][i]), 0), found[1][i]);
+			}
+		}
+	}
+
+	@Test
+	public void testPipelineStopsWhenCancelled() {
+		SeedGenerator generator = new SeedGenerator(System.nanoTime());
+		SearchProgress progress = new SearchProgress(SeedGenerator.batchSize());
+		SeedPipeline pipeline = new SeedPipeline(generator, () -> SeedKernel.EMPTY.add(6, SeedKernel.only(0)), 1 << 16, Oracle.SIZE_TRANSITION_LIMIT);
+
+		progress.cancel();
+		pipeline.run(0, progress);
+
+		assertTrue("Nothing is scanned after cancelling", progress.scanned() == 0);
+	}
+}
@@ -0,0 +1,65 @@
+package xyz.rjs.brandwatch.supermarkets.logistics.plugins.bad;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+
+/**
+ * @author matthew
+ *
+ */
+public class SeedPriorTest {
+
+	private static final long RANGE = SeedGenerator.DEFAULT_SEED_TIME_RANGE_NANOS;
+
+	@Test
+	public void testKnownOrdinalsAreSearchedFirst() {
+		long time = System.nanoTime();
+		List<List<SeedWindow>> rounds = SeedPrior.defaults().rounds(time);
+		SeedWindow first = rounds.get(0).get(0);
+
+		assertTrue("A known ordinal is first", first.ordinal() == 9 || first.ordinal() == 11);
+		assertEquals("The window before the Oracle is first", time, first.to());
+		assertTrue("Every uniquifier is searched close to the Oracle", rounds.subList(0, 2).stream().flatMap(List::stream)
+				.filter(w -> w.to() == time).count() == SeedGenerator.SEED_UNIQUIFIER_VALUE_COUNT);
+	}
+
+	@Test
+	public void testNothingIsSearchedBeforeTheJvm() {
+		long uptime = System.currentTimeMillis() - ManagementFactory.getRuntimeMXBean().getStartTime();
+		long start = System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(uptime + 100);
+
+		for (List<SeedWindow> round : SeedPrior.defaults().rounds(System.nanoTime())) {
+			for (SeedWindow window : round) {
+				assertTrue("Window is after the JVM start", window.from() > start);
+			}
+		}
+	}
+
+	@Test
+	public void testObservationsAreRecalled() throws Exception {
+		Path file = Files.createTempDirectory("prior").resolve("seeds.prior");
+		long offset = 30 * RANGE + RANGE / 2;
+
+		SeedPrior prior = SeedPrior.load(file);
+		prior.observe(3, offset);
+		prior.observe(3, offset + 1000);
+		prior.observe(3, 10_000 * RANGE); // Too distant to be searched
+
+		SeedPrior loaded = SeedPrior.load(file);
+		assertEquals("Observations are persisted", 2, loaded.observations());
+
+		long time = System.nanoTime();
+		SeedWindow first = loaded.rounds(time).get(0).get(0);
+		assertEquals("Observed ordinal is first", 3, first.ordinal());
+		assertTrue("Observed window is first", first.from() <= time - offset && time - offset < first.to());
+	}
+}
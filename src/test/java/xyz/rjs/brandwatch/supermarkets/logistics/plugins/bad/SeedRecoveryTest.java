@@ -0,0 +1,122 @@
+package xyz.rjs.brandwatch.supermarkets.logistics.plugins.bad;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * @author matthew
+ *
+ */
+public class SeedRecoveryTest {
+
+	private static final String PREFIX = "[ClockTickService RUNNING] INFO xyz.rjs.brandwatch.supermarkets.logistics.plugins.printers.EventsPrinter - ";
+
+	private static final int TICKS = 3000;
+
+	@Test
+	public void testRecording() throws Exception {
+		String log = PREFIX + "PriceList{currentPrice=1}\n"
+				+ PREFIX + "ClockTick{tick=0}\n"
+				+ PREFIX + "Customer{name='Robert Paulson', stuffNeeded=4, stuffReceived=0}\n"
+				+ PREFIX + "ClockTick{tick=1}\n"
+				+ PREFIX + "PriceList{currentPrice=2}\n"
+				+ PREFIX + "ClockTick{tick=2}\n";
+
+		SeedRecovery.Recording recording = SeedRecovery.Recording.read(new BufferedReader(new StringReader(log)));
+
+		assertEquals("The distance and both price lists are recorded", 3, recording.calls(SeedCascade.Sibling.SUPPLIER).size());
+		assertEquals("The customer is recorded", 1, recording.calls(SeedCascade.Sibling.CUSTOMER).size());
+		assertEquals("Only completed ticks are recorded", 2, recording.calls(SeedCascade.Sibling.CUSTOMER_PROBABILITY).size());
+		assertEquals("Only completed ticks are recorded", 2, recording.calls(SeedCascade.Sibling.SUPPLIER_PROBABILITY).size());
+	}
+
+	@Test(timeout = 120_000)
+	public void testRecover() throws Exception {
+		long time = System.nanoTime();
+		Map<SeedCascade.Sibling, Long> seeds = new EnumMap<>(SeedCascade.Sibling.class);
+		for (SeedCascade.Sibling sibling : SeedCascade.Sibling.values()) {
+			seeds.put(sibling, (time + 5_000 * sibling.creationOrdinal()) ^ SeedGenerator.uniquifier(sibling.creationOrdinal()));
+		}
+
+		List<SeedRecovery.Recovered> recovered = SeedRecovery.recover(SeedRecovery.Recording.read(new BufferedReader(new StringReader(simulate(seeds)))));
+
+		assertEquals("The Customer is solved and the others, except the balance, are found around it", 4, recovered.size());
+		for (SeedRecovery.Recovered seed : recovered) {
+			assertEquals(String.format("%s is recovered", seed.sibling()), SeedKernel.scramble(seeds.get(seed.sibling())), SeedKernel.scramble(seed.seed()));
+			assertEquals(String.format("%s has the uniquifier", seed.sibling()), seed.sibling().creationOrdinal(), seed.ordinal());
+		}
+	}
+
+	/**
+	 * The first thousand ticks of stdout.log. The Supplier was created a few
+	 * milliseconds before the CustomerService in that run, so its Random
+	 * objects are outside the window of the cascade.
+	 */
+	@Test(timeout = 120_000)
+	public void testRecoverRecordedRun() throws Exception {
+		Map<SeedCascade.Sibling, Long> seeds = new EnumMap<>(SeedCascade.Sibling.class);
+		seeds.put(SeedCascade.Sibling.SUPPLIER_PROBABILITY, -4556898139114996749L);
+		seeds.put(SeedCascade.Sibling.SUPPLIER, 7145507037497645386L);
+		seeds.put(SeedCascade.Sibling.CUSTOMER_PROBABILITY, 1022030487623058418L);
+		seeds.put(SeedCascade.Sibling.CUSTOMER, 232865816002672L);
+
+		SeedRecovery.Recording recording;
+		try (BufferedReader reader = new BufferedReader(new InputStreamReader(getClass().getResourceAsStream("stdout-excerpt.log"), StandardCharsets.UTF_8))) {
+			recording = SeedRecovery.Recording.read(reader);
+		}
+		List<SeedRecovery.Recovered> recovered = SeedRecovery.recover(recording);
+
+		assertEquals("Every Random object with calls in the log is recovered", seeds.size(), recovered.size());
+		for (SeedRecovery.Recovered seed : recovered) {
+			assertEquals(String.format("%s is recovered", seed.sibling()), SeedKernel.scramble(seeds.get(seed.sibling())), SeedKernel.scramble(seed.seed()));
+			assertEquals(String.format("%s has the uniquifier", seed.sibling()), seed.sibling().creationOrdinal(), seed.ordinal());
+		}
+	}
+
+	/**
+	 * @param seeds
+	 * @return - the log of a run of the Supplier and the CustomerService with
+	 *         the seeds, as printed by the EventsPrinter.
+	 */
+	private static String simulate(Map<SeedCascade.Sibling, Long> seeds) {
+		Random supplierProbability = new Random(seeds.get(SeedCascade.Sibling.SUPPLIER_PROBABILITY));
+		Random supplier = new Random(seeds.get(SeedCascade.Sibling.SUPPLIER));
+		Random customerProbability = new Random(seeds.get(SeedCascade.Sibling.CUSTOMER_PROBABILITY));
+		Random customer = new Random(seeds.get(SeedCascade.Sibling.CUSTOMER));
+
+		StringBuilder log = new StringBuilder();
+		supplier.nextInt(PriceOracle.DISTANCE_BOUND);
+		int price = price(supplier, 1, log);
+
+		for (int tick = 0; tick < TICKS; tick++) {
+			log.append(PREFIX).append(String.format("ClockTick{tick=%s}%n", tick));
+			if (supplierProbability.nextDouble() < PriceProbabilityOracle.PRICE_PROBABILITY) {
+				price = price(supplier, price, log);
+			}
+			if (customerProbability.nextDouble() < SaleProbabilityOracle.SALE_PROBABILITY) {
+				log.append(PREFIX).append(String.format("Customer{name='Robert Paulson', stuffNeeded=%s, stuffReceived=0}%n", customer.nextInt(SaleOracle.SALE_BOUND) + 1));
+			}
+		}
+		log.append(PREFIX).append(String.format("ClockTick{tick=%s}%n", TICKS));
+		return log.toString();
+	}
+
+	private static int price(Random supplier, int price, StringBuilder log) {
+		int change = 1 - supplier.nextInt(PriceOracle.PRICE_BOUND);
+		if (price + change >= 1) {
+			price += change;
+		}
+		log.append(PREFIX).append(String.format("PriceList{currentPrice=%s}%n", price));
+		return price;
+	}
+}
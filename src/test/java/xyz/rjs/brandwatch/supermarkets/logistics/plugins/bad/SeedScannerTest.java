@@ -0,0 +1,59 @@
+package xyz.rjs.brandwatch.supermarkets.logistics.plugins.bad;
+
+import static org.junit.Assert.assertArrayEquals;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.Test;
+
+
+/**
+ * @author matthew
+ *
+ */
+public class SeedScannerTest {
+
+	@Test(timeout = 120_000)
+	public void testSharedScanMatchesFilter() throws Exception {
+		SeedScanner scanner = new SeedScanner(SeedPrior.defaults());
+		SeedGenerator generator = new SeedGenerator(scanner.startingTime());
+		List<SeedWindow> windows = scanner.rounds().get(0);
+		long size = windows.stream().mapToLong(SeedWindow::size).sum();
+
+		SeedKernel[] kernels = { kernel(new Random(11)), kernel(new Random(13)) };
+
+		try {
+			// Both targets join the same pass over the round
+			@SuppressWarnings("unchecked")
+			CompletableFuture<long[]>[] results = new CompletableFuture[kernels.length];
+			for (int i = 0; i < kernels.length; i++) {
+				SeedKernel kernel = kernels[i];
+				SeedPipeline pipeline = new SeedPipeline(generator, () -> kernel, 1 << 16, Oracle.SIZE_TRANSITION_LIMIT);
+				results[i] = CompletableFuture.supplyAsync(() -> scanner.scan(0, pipeline, new SearchProgress(size)));
+			}
+
+			for (int i = 0; i < kernels.length; i++) {
+				long[] actual = results[i].get();
+				long[] expected = generator.filter(windows, kernels[i], new SearchProgress(size));
+				Arrays.sort(actual);
+				Arrays.sort(expected);
+
+				assertArrayEquals("Shared scan finds the same seeds as the filter", expected, actual);
+			}
+		}
+		finally {
+			scanner.shutdown();
+		}
+	}
+
+	private static SeedKernel kernel(Random random) {
+		SeedKernel kernel = SeedKernel.EMPTY;
+		for (int i = 0; i < 10; i++) {
+			kernel = kernel.add(6, SeedKernel.only(random.nextInt(6)));
+		}
+		return kernel;
+	}
+}
@@ -0,0 +1,84 @@
+package xyz.rjs.brandwatch.supermarkets.logistics.plugins.bad;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import org.junit.Test;
+
+import com.google.common.util.concurrent.MoreExecutors;
+
+/**
+ * @author matthew
+ *
+ */
+public class SeedSearchTest {
+
+	@Test
+	public void testResultCollectedOnce() {
+		SeedSearch search = new SeedSearch(MoreExecutors.newDirectExecutorService());
+
+		search.submit(3, 10, progress -> new long[] { 1, 2 }, 2);
+
+		SeedSearch.Result result = search.collect();
+		assertEquals(3, result.round());
+		assertEquals(10, result.calls());
+		assertArrayEquals(new long[] { 1, 2 }, result.seeds());
+		assertNull("The result is only returned once", search.collect());
+	}
+
+	@Test(timeout = 10_000)
+	public void testCancelledSearchDoesNotPublish() throws Exception {
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		SeedSearch search = new SeedSearch(executor, true);
+		CountDownLatch started = new CountDownLatch(1), release = new CountDownLatch(1);
+
+		// The search completes after the cancel, ignoring it
+		search.submit(0, 1, blocking(started, release, 7), 1);
+		started.await();
+		search.cancel();
+		search.collect();
+		release.countDown();
+
+		executor.shutdown();
+		executor.awaitTermination(5, TimeUnit.SECONDS);
+		assertNull("A cancelled search does not publish", search.collect());
+	}
+
+	@Test(timeout = 10_000)
+	public void testSupersededSearchDoesNotPublish() throws Exception {
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		SeedSearch search = new SeedSearch(executor, true);
+		CountDownLatch started = new CountDownLatch(1), release = new CountDownLatch(1);
+
+		search.submit(0, 1, blocking(started, release, 7), 1);
+		started.await();
+		search.submit(1, 2, progress -> new long[] { 8 }, 1);
+		release.countDown();
+
+		executor.shutdown();
+		executor.awaitTermination(5, TimeUnit.SECONDS);
+		SeedSearch.Result result = search.collect();
+		assertEquals("Only the later search publishes", 1, result.round());
+		assertArrayEquals(new long[] { 8 }, result.seeds());
+	}
+
+	private static Function<SearchProgress, long[]> blocking(CountDownLatch started, CountDownLatch release, long seed) {
+		return progress -> {
+			started.countDown();
+			try {
+				release.await();
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			return new long[] { seed };
+		};
+	}
+}
@@ -0,0 +1,56 @@
+package xyz.rjs.brandwatch.supermarkets.logistics.plugins.bad;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+import java.util.function.LongPredicate;
+import java.util.stream.LongStream;
+
+import org.junit.Test;
+
+
+/**
+ * @author matthew
+ *
+ */
+public class SeedStoreTest {
+
+	@Test
+	public void testStoreReducesInPlace() {
+		long[] seeds = new Random(1).longs(500_000).toArray();
+		LongPredicate test = SeedKernel.EMPTY.add(6, SeedKernel.only(2))::test;
+
+		try (SeedStore store = new SeedStore(1 << 20)) {
+			store.addAll(seeds);
+			store.reduce(test);
+
+			assertFalse("Store is held on the heap", store.isSpilled());
+			assertArrayEquals("Reduction keeps the passing seeds in order", LongStream.of(seeds).filter(test).toArray(), store.toArray());
+		}
+	}
+
+	@Test
+	public void testStoreSpillsToFile() {
+		long[] seeds = new Random(2).longs(300_000).toArray();
+		LongPredicate test = SeedKernel.EMPTY.add(3, SeedKernel.only(0) | SeedKernel.only(1))::test;
+
+		try (SeedStore store = new SeedStore(1000)) {
+			store.addAll(LongStream.of(seeds).limit(500).toArray());
+			assertFalse("Store is held on the heap", store.isSpilled());
+
+			store.addAll(LongStream.of(seeds).skip(500).toArray());
+			assertTrue("Store is held in a file", store.isSpilled());
+			assertEquals("Store holds every seed", seeds.length, store.size());
+
+			store.reduce(test);
+			assertArrayEquals("Reduction keeps the passing seeds in order", LongStream.of(seeds).filter(test).toArray(), store.toArray());
+
+			store.set(new long[] { 42 });
+			assertEquals("Store is replaced", 42, store.get(0));
+			assertEquals("Store is replaced", 1, store.size());
+		}
+	}
+}
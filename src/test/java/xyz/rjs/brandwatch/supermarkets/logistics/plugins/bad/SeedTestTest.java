@@ -50,6 +50,46 @@ public class SeedTestTest {
 		assertEquals("Single valid seed found", 1, valid.size());
 	}
 
+	@Test
+	public void testEstimatedSize() throws Exception {
+		SeedTest test = new SeedTest();
+		assertEquals("Every seed passes no calls", SeedGenerator.size(), test.estimatedSize(SeedGenerator.size()));
+
+		test.add(Constraint.nextIntExcept(3, 0));
+		assertEquals("Two of three values pass", 2_000_000, test.estimatedSize(3_000_000));
+
+		test.add(Constraint.skipNextInt(10));
+		assertEquals("Skips hold no information", 2_000_000, test.estimatedSize(3_000_000));
+
+		SeedTest doubles = new SeedTest();
+		doubles.add(Constraint.nextDouble(0.1, false));
+		assertEquals("The threshold is exact", (1L << 53) - SeedKernel.threshold(0.1), doubles.estimatedSize(1L << 53), 1e-12 * (1L << 53));
+
+		long size = Long.MAX_VALUE;
+		for (int i = 0; i < 100; i++) {
+			test.add(Constraint.nextIntEquals(6, i % 6));
+			assertTrue("The estimate never increases", test.estimatedSize(SeedGenerator.size()) <= size);
+			size = test.estimatedSize(SeedGenerator.size());
+		}
+		assertEquals("The estimate does not overflow", 0, size);
+		assertEquals("Information is summed", 100 * Math.log(6) / Math.log(2) + Math.log(1.5) / Math.log(2), test.information(), 1e-9);
+	}
+
+	@Test
+	public void testSelectivity() throws Exception {
+		SeedTest test = new SeedTest();
+		test.add(Constraint.nextIntEquals(6, 2));
+		test.add(Constraint.nextIntExcept(3, 1));
+		test.add(Constraint.nextDouble(0.1, true));
+		test.add(Constraint.nextInt(10, SeedKernel.only(1) | SeedKernel.only(7)));
+
+		int samples = 4_000_000;
+		long passed = new Random(1).longs(samples).filter(test::test).count();
+
+		double expected = samples * test.selectivity();
+		assertEquals("Seeds pass with the modelled probability", expected, passed, 5 * Math.sqrt(expected));
+	}
+
 	private long getSeed(Random random) {
 		try {
 			return RandomInspector.getSeed(random);
@@ -0,0 +1,58 @@
+package xyz.rjs.brandwatch.supermarkets.logistics.plugins.bad;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+
+/**
+ * @author matthew
+ *
+ */
+public class StateSolverTest {
+
+	@Test
+	public void testSolveSales() throws Exception {
+		// A seed which is nowhere near the current time
+		Random random = new Random(0x1234_5678_9ABCL);
+		long state = RandomInspector.getSeed(random);
+		SeedKernel kernel = SeedKernel.EMPTY;
+
+		StateSolver solver = new StateSolver(kernel);
+		while (!solver.canSolve()) {
+			kernel = kernel.add(6, SeedKernel.only(random.nextInt(6)));
+			solver = new StateSolver(kernel);
+		}
+
+		assertTrue("Solving requires a number of calls", kernel.calls() > 20);
+		long[] states = solver.solveStates();
+		assertArrayEquals("Solver finds the initial state", new long[] { state }, states);
+
+		Random copy = new Random(SeedKernel.scramble(states[0]));
+		for (int i = 0; i < kernel.calls(); i++) {
+			copy.nextInt(6);
+		}
+		for (int i = 0; i < 100; i++) {
+			assertTrue("Solved seed predicts the Random", random.nextInt(6) == copy.nextInt(6));
+		}
+	}
+
+	@Test
+	public void testUnsolvable() {
+		Random random = new Random();
+		SeedKernel prices = SeedKernel.EMPTY.add(10, SeedKernel.any(10));
+		SeedKernel powers = SeedKernel.EMPTY;
+
+		for (int i = 0; i < 100; i++) {
+			prices = prices.add(3, SeedKernel.only(random.nextInt(3)));
+			powers = powers.add(8, SeedKernel.only(random.nextInt(8)));
+		}
+
+		assertFalse("Odd bounds reveal no low bits", new StateSolver(prices).canSolve());
+		assertFalse("Power of two bounds reveal no low bits", new StateSolver(powers).canSolve());
+	}
+}
@@ -0,0 +1,110 @@
+package xyz.rjs.brandwatch.supermarkets.logistics.plugins.cheater;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import xyz.rjs.brandwatch.supermarkets.logistics.plugins.cheater.Oracle.Constraint;
+
+/**
+ * This tests that every method of the Random object consumes the same bits as
+ * java.util.Random, by mixing them in a single stream.
+ *
+ * @author matthew
+ */
+public class ObservationTest {
+
+	private static final long UNIQUIFIER = 181783497276652981L * 8682522807148012L;
+
+	private static final long WINDOW = 1 << 20;
+
+	@Test(timeout = 120_000)
+	public void testEveryMethod() {
+		long time = System.nanoTime();
+		Random random = new Random(time ^ UNIQUIFIER);
+		Oracle oracle = new Oracle(time - WINDOW, time + WINDOW, UNIQUIFIER, UNIQUIFIER * 181783497276652981L);
+
+		for (int call = 0;oracle.size() > 1;call++) {
+			int oldSize = oracle.size();
+
+			switch (call % 9) {
+				case 0: {
+					long value = random.nextLong();
+					oracle.calledNextLong(l -> l == value);
+					break;
+				}
+				case 1: {
+					boolean value = random.nextBoolean();
+					oracle.calledNextBoolean(b -> b == value);
+					break;
+				}
+				case 2: {
+					float value = random.nextFloat();
+					oracle.calledNextFloat(f -> f < 0.5f == value < 0.5f);
+					break;
+				}
+				case 3: {
+					double value = random.nextDouble();
+					oracle.calledNextDouble(d -> d < 0.25 == value < 0.25);
+					break;
+				}
+				case 4: {
+					int value = random.nextInt();
+					oracle.calledNextInt(i -> i % 3 == value % 3);
+					break;
+				}
+				case 5: {
+					int value = random.nextInt(8);
+					oracle.calledNextInt(i -> i == value, 8);
+					break;
+				}
+				case 6: {
+					// Rejects almost half of the values from next(31)
+					int bound = (1 << 30) + 1, value = random.nextInt(bound);
+					oracle.calledNextInt(i -> i % 2 == value % 2, bound);
+					break;
+				}
+				case 7: {
+					random.nextInt(1 << 30 | 1);
+					random.nextDouble();
+					random.nextLong();
+					oracle.calledNextInt(Constraint.any(), 1 << 30 | 1);
+					oracle.calledNextDouble(Constraint.any());
+					oracle.calledNextLong(Constraint.any());
+					assertEquals("Unobserved calls do not filter", oldSize, oracle.size());
+					break;
+				}
+				default: {
+					random.nextBoolean();
+					random.nextFloat();
+					random.nextInt();
+					random.nextInt(16);
+					oracle.calledNextBoolean(Constraint.any());
+					oracle.calledNextFloat(Constraint.any());
+					oracle.calledNextInt(Constraint.any());
+					oracle.calledNextInt(Constraint.any(), 16);
+					assertEquals("Unobserved calls do not filter", oldSize, oracle.size());
+					break;
+				}
+			}
+			assertTrue("Oracle is less sure about things", oracle.size() <= oldSize);
+		}
+		assertEquals("The seed is found", 1, oracle.size());
+
+		Random copy = oracle.getRandom();
+		for (int i = 0;i < 100;i++) {
+			assertEquals("Oracle is wrong!", random.nextLong(), copy.nextLong());
+			assertEquals("Oracle is wrong!", random.nextInt(1 << 30 | 1), copy.nextInt(1 << 30 | 1));
+			assertEquals("Oracle is wrong!", random.nextDouble(), copy.nextDouble(), 0);
+		}
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testUnsureOracle() {
+		long time = System.nanoTime();
+		new Oracle(time - WINDOW, time + WINDOW, UNIQUIFIER).getRandom();
+	}
+}
@@ -0,0 +1,117 @@
+package xyz.rjs.brandwatch.supermarkets.sim;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import xyz.rjs.brandwatch.supermarkets.model.events.ClockTick;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.eventbus.EventBus;
+import com.google.common.eventbus.Subscribe;
+import com.google.common.util.concurrent.AbstractIdleService;
+import com.google.common.util.concurrent.ServiceManager;
+
+public class ClockTickServiceTest {
+
+    public static class TickCounter {
+        private final AtomicInteger ticks = new AtomicInteger();
+        private volatile boolean ordered = true;
+
+        @Subscribe
+        public void tick(ClockTick tick) {
+            if (tick.getTick() != ticks.getAndIncrement()) {
+                ordered = false;
+            }
+        }
+
+        public int getTicks() {
+            return ticks.get();
+        }
+    }
+
+    @Test(timeout = 60_000)
+    public void testVirtualClockRunsToLimit() throws Exception {
+        EventBus eventBus = new EventBus();
+        TickCounter counter = new TickCounter();
+        eventBus.register(counter);
+
+        ClockTickService clock = new ClockTickService(eventBus);
+        clock.setVirtualClock(true);
+        clock.setTickLimit(100_000);
+        assertTrue("The clock stops itself", clock.isBounded());
+
+        clock.startAsync().awaitTerminated(30, TimeUnit.SECONDS);
+
+        assertEquals("Every tick is posted", 100_000, counter.ticks.get());
+        assertEquals("Every tick is counted", 100_000, clock.getTicks());
+        assertTrue("Each tick follows the last", counter.ordered);
+    }
+
+    /** Registers the counter only after a while, like a slow service */
+    public static class SlowService extends AbstractIdleService {
+        private final EventBus eventBus;
+        private final TickCounter counter;
+
+        public SlowService(EventBus eventBus, TickCounter counter) {
+            this.eventBus = eventBus;
+            this.counter = counter;
+        }
+
+        @Override
+        protected void startUp() throws Exception {
+            Thread.sleep(200);
+            eventBus.register(counter);
+        }
+
+        @Override
+        protected void shutDown() throws Exception {
+            eventBus.unregister(counter);
+        }
+    }
+
+    @Test(timeout = 60_000)
+    public void testHeldUntilHealthy() throws Exception {
+        EventBus eventBus = new EventBus();
+        TickCounter counter = new TickCounter();
+
+        ClockTickService clock = new ClockTickService(eventBus);
+        clock.setVirtualClock(true);
+        clock.setTickLimit(1_000);
+        ServiceManager services = new ServiceManager(ImmutableList.of(clock, new SlowService(eventBus, counter)));
+        clock.holdUntilHealthy(services);
+
+        services.startAsync();
+        clock.awaitTerminated(30, TimeUnit.SECONDS);
+
+        assertEquals("The slow service is sent every tick", 1_000, counter.getTicks());
+        assertTrue("The first tick is not missed", counter.ordered);
+    }
+
+    @Test(timeout = 60_000)
+    public void testStopCondition() throws Exception {
+        EventBus eventBus = new EventBus();
+        TickCounter counter = new TickCounter();
+        eventBus.register(counter);
+
+        ClockTickService clock = new ClockTickService(eventBus);
+        clock.setVirtualClock(true);
+        clock.setStopCondition(tick -> tick == 41);
+
+        clock.startAsync().awaitTerminated(30, TimeUnit.SECONDS);
+
+        assertEquals("The clock stops after the tick", 42, counter.ticks.get());
+    }
+
+    @Test
+    public void testUnboundedByDefault() {
+        ClockTickService clock = new ClockTickService(new EventBus());
+
+        assertFalse("The clock runs until it is stopped", clock.isBounded());
+    }
+}
@@ -0,0 +1,172 @@
+package xyz.rjs.brandwatch.supermarkets.sim;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import xyz.rjs.brandwatch.supermarkets.model.events.Balance;
+import xyz.rjs.brandwatch.supermarkets.model.events.ClockTick;
+import xyz.rjs.brandwatch.supermarkets.sim.ClockTickServiceTest.TickCounter;
+import xyz.rjs.brandwatch.supermarkets.sim.travel.AbstractTravellingAction;
+
+import com.google.common.eventbus.EventBus;
+import com.google.common.eventbus.Subscribe;
+
+public class TickCalendarTest {
+
+    private static final int TICKS = 10_000;
+
+    public static class Recorder extends AbstractProbabalisticTickingService {
+        private final List<Integer> ticks = new ArrayList<>();
+
+        public Recorder(EventBus eventBus, TickCalendar calendar, long seed) {
+            super(eventBus, calendar, 0.1, new Random(seed));
+        }
+
+        @Override
+        protected void probableTick(ClockTick tick) {
+            ticks.add(tick.getTick());
+        }
+    }
+
+    public static class BalanceCounter {
+        private int balances = 0;
+
+        @Subscribe
+        public void balance(Balance balance) {
+            balances++;
+        }
+    }
+
+    private static TickCalendar calendar(EventBus eventBus) {
+        TickCalendar calendar = new TickCalendar();
+        eventBus.register(calendar);
+        return calendar;
+    }
+
+    private static void run(EventBus eventBus, TickCalendar calendar, int ticks) throws Exception {
+        ClockTickService clock = new ClockTickService(eventBus);
+        clock.setVirtualClock(true);
+        clock.setTickLimit(ticks);
+        clock.setCalendar(calendar);
+        clock.setSkipIdleTicks(calendar != null);
+        clock.startAsync().awaitTerminated(30, TimeUnit.SECONDS);
+    }
+
+    private static int arrival(TickCalendar calendar, long seed) {
+        EventBus eventBus = new EventBus();
+        if (calendar != null) {
+            eventBus.register(calendar);
+        }
+        AtomicInteger arrival = new AtomicInteger(-1);
+        AtomicInteger tick = new AtomicInteger();
+        new AbstractTravellingAction(eventBus, calendar, 20, new Random(seed)) {
+            @Override
+            protected void arrivalAction() {
+                arrival.set(tick.get());
+            }
+        };
+
+        while (arrival.get() < 0) {
+            eventBus.post(new ClockTick(tick.get()));
+            tick.incrementAndGet();
+        }
+        return arrival.get();
+    }
+
+    @Test
+    public void testWakesInOrder() {
+        EventBus eventBus = new EventBus();
+        TickCalendar calendar = calendar(eventBus);
+        List<String> woken = new ArrayList<>();
+        calendar.schedule(3, tick -> woken.add("c"));
+        calendar.schedule(1, tick -> woken.add("a"));
+        calendar.schedule(3, tick -> woken.add("d"));
+        calendar.schedule(2, tick -> woken.add("b"));
+        assertEquals(1, calendar.nextScheduledTick());
+
+        eventBus.post(new ClockTick(0));
+        assertTrue("Nothing is due", woken.isEmpty());
+
+        // A skipped tick is woken with the next one posted
+        eventBus.post(new ClockTick(2));
+        assertEquals(Arrays.asList("a", "b"), woken);
+        assertEquals(3, calendar.nextTick());
+
+        eventBus.post(new ClockTick(3));
+        assertEquals(Arrays.asList("a", "b", "c", "d"), woken);
+        assertEquals(-1, calendar.nextScheduledTick());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testCannotSchedulePostedTick() {
+        EventBus eventBus = new EventBus();
+        TickCalendar calendar = calendar(eventBus);
+        eventBus.post(new ClockTick(5));
+
+        calendar.schedule(5, tick -> {});
+    }
+
+    @Test(timeout = 60_000)
+    public void testProbableTicksMatchEveryTick() throws Exception {
+        EventBus everyTickBus = new EventBus();
+        Recorder everyTick = new Recorder(everyTickBus, null, 42);
+        everyTick.startAsync().awaitRunning();
+        run(everyTickBus, null, TICKS);
+
+        EventBus calendarBus = new EventBus();
+        TickCounter posted = new TickCounter();
+        calendarBus.register(posted);
+        TickCalendar calendar = calendar(calendarBus);
+        Recorder calendarTick = new Recorder(calendarBus, calendar, 42);
+        calendarTick.startAsync().awaitRunning();
+        run(calendarBus, calendar, TICKS);
+
+        assertTrue("The service was woken", everyTick.ticks.size() > 0);
+        assertEquals("The same ticks are probable", everyTick.ticks, calendarTick.ticks);
+        assertTrue("Idle ticks are skipped", posted.getTicks() < TICKS / 5);
+    }
+
+    @Test(timeout = 60_000)
+    public void testClockStartedBeforeServices() throws Exception {
+        EventBus eventBus = new EventBus();
+        TickCounter posted = new TickCounter();
+        eventBus.register(posted);
+
+        // Nothing has been scheduled yet, so no tick is known to be idle
+        run(eventBus, calendar(eventBus), 50);
+
+        assertEquals("Every tick is posted", 50, posted.getTicks());
+    }
+
+    @Test
+    public void testArrivalMatchesEveryTick() {
+        for (long seed = 0; seed < 100; seed++) {
+            assertEquals("Seed " + seed, arrival(null, seed), arrival(new TickCalendar(), seed));
+        }
+    }
+
+    @Test(timeout = 60_000)
+    public void testBalanceMatchesEveryTick() throws Exception {
+        EventBus eventBus = new EventBus();
+        BalanceCounter counter = new BalanceCounter();
+        eventBus.register(counter);
+        TickCounter posted = new TickCounter();
+        eventBus.register(posted);
+        TickCalendar calendar = calendar(eventBus);
+        new Supermarket(eventBus, calendar).startAsync().awaitRunning();
+
+        run(eventBus, calendar, 101);
+
+        assertEquals("A balance every 20 ticks", 6, counter.balances);
+        assertEquals("Only the balance ticks are posted", 6, posted.getTicks());
+    }
+}